@@ -0,0 +1,44 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.client.audio.output.AudioPlayback;
+import com.voicechat.client.audio.processing.NoiseGate;
+import com.voicechat.common.audio.AudioConstants;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame client DSP: playback volume scaling and the capture noise gate,
+ * on one 20 ms frame of 16-bit mono PCM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class AudioDspBenchmark {
+
+    private byte[] frame;
+    private ByteBuffer frameBuffer;
+    private byte[] output;
+    private NoiseGate noiseGate;
+
+    @Setup
+    public void setup() {
+        frame = new byte[AudioConstants.FRAME_SIZE * 2];
+        new Random(42).nextBytes(frame);
+        frameBuffer = ByteBuffer.wrap(frame);
+        output = new byte[frame.length];
+        noiseGate = new NoiseGate(0.02f, 200);
+    }
+
+    @Benchmark
+    public int adjustVolume() {
+        return AudioPlayback.adjustVolume(frameBuffer, 0.75f, output);
+    }
+
+    @Benchmark
+    public boolean noiseGate() {
+        return noiseGate.process(frame);
+    }
+}
@@ -0,0 +1,78 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.common.network.packet.CompactBroadcastTemplate;
+import com.voicechat.common.network.packet.VoiceBroadcastPacket;
+import com.voicechat.common.network.packet.VoiceBroadcastTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of one voice frame to a crowd of receivers: a new VoiceBroadcastPacket
+ * per receiver versus a shared template patched per receiver. Compare
+ * gc.alloc.rate.norm between the two.
+ *
+ * <p>{@code compactTemplate} is the protocol v2 encoding. For a 60-byte frame a
+ * broadcast is 76 bytes on the wire instead of 118, since the header shrinks from
+ * {@value VoiceBroadcastTemplate#OVERHEAD} to 16 bytes.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class BroadcastEncodingBenchmark {
+
+    @Param({"10", "60"})
+    public int receivers;
+
+    @Param({"60"})
+    public int opusBytes;
+
+    private UUID senderId;
+    private byte[] opusData;
+    private ByteBuffer opusPayload;
+    private VoiceBroadcastTemplate template;
+    private CompactBroadcastTemplate compactTemplate;
+
+    @Setup
+    public void setup() {
+        senderId = UUID.randomUUID();
+        opusData = new byte[opusBytes];
+        new Random(42).nextBytes(opusData);
+        opusPayload = ByteBuffer.wrap(opusData);
+        template = new VoiceBroadcastTemplate(opusBytes + VoiceBroadcastTemplate.OVERHEAD);
+        compactTemplate = new CompactBroadcastTemplate(opusBytes + CompactBroadcastTemplate.OVERHEAD);
+    }
+
+    @Benchmark
+    public void packetPerReceiver(Blackhole bh) {
+        for (int i = 0; i < receivers; i++) {
+            VoiceBroadcastPacket packet = new VoiceBroadcastPacket(
+                senderId, opusData, volumeFor(i), 1.0, 64.0, -3.0, false, 0L);
+            bh.consume(packet.serialize());
+        }
+    }
+
+    @Benchmark
+    public void sharedTemplate(Blackhole bh) {
+        template.encode(senderId, opusPayload, 1.0, 64.0, -3.0, 0L);
+        for (int i = 0; i < receivers; i++) {
+            bh.consume(template.forReceiver(volumeFor(i), false));
+        }
+    }
+
+    @Benchmark
+    public void compactTemplate(Blackhole bh) {
+        compactTemplate.encode(1, opusPayload, 0L);
+        for (int i = 0; i < receivers; i++) {
+            bh.consume(compactTemplate.forReceiver(volumeFor(i), false, i, 0.5, -i));
+        }
+    }
+
+    private static float volumeFor(int receiver) {
+        return 1.0f - (receiver % 10) * 0.05f;
+    }
+}
@@ -0,0 +1,79 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.server.data.spatial.DistanceCuller;
+import com.voicechat.server.data.spatial.ScalarDistanceCuller;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Culling one speaker's spatial index candidates down to a 48-block voice radius.
+ * {@code sqrtLoop} is the per-receiver distance check the router used before:
+ * a square root per candidate compared against the radius. {@code vectorCull}
+ * uses whatever {@link DistanceCuller#create()} picks, so it only measures the
+ * SIMD kernel when the fork runs with {@code --add-modules jdk.incubator.vector}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class DistanceCullingBenchmark {
+
+    private static final double RANGE = 48;
+
+    @Param({"64", "256", "1024"})
+    public int candidates;
+
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;
+    private int[] hits;
+    private DistanceCuller scalar;
+    private DistanceCuller vector;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        xs = new double[candidates];
+        ys = new double[candidates];
+        zs = new double[candidates];
+        hits = new int[candidates];
+        // Candidates from the cells a 48-block radius overlaps; roughly half are in range
+        for (int i = 0; i < candidates; i++) {
+            xs[i] = random.nextDouble() * 128 - 64;
+            ys[i] = 64 + random.nextDouble() * 16 - 8;
+            zs[i] = random.nextDouble() * 128 - 64;
+        }
+        scalar = new ScalarDistanceCuller();
+        vector = DistanceCuller.create();
+    }
+
+    @Benchmark
+    public int sqrtLoop() {
+        int count = 0;
+        for (int i = 0; i < candidates; i++) {
+            double distance = calculateDistance(0, 64, 0, xs[i], ys[i], zs[i]);
+            if (distance <= RANGE) {
+                hits[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int scalarCull() {
+        return scalar.cull(xs, ys, zs, candidates, 0, 64, 0, RANGE * RANGE, hits);
+    }
+
+    @Benchmark
+    public int vectorCull() {
+        return vector.cull(xs, ys, zs, candidates, 0, 64, 0, RANGE * RANGE, hits);
+    }
+
+    private static double calculateDistance(double x1, double y1, double z1, double x2, double y2, double z2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double dz = z2 - z1;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
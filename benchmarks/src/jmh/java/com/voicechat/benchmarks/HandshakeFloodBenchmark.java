@@ -0,0 +1,129 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.common.network.packet.AudioCodec;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.common.network.protocol.ProtocolConstants;
+import com.voicechat.common.network.serialization.PacketDeserializer;
+import com.voicechat.server.audio.OcclusionEngine;
+import com.voicechat.server.manager.PlayerPositionManager;
+import com.voicechat.server.manager.PlayerVoiceManager;
+import com.voicechat.server.network.DatagramSender;
+import com.voicechat.server.network.VoicePacketRouter;
+import com.voicechat.server.security.HandshakeCookies;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local handshake flood from spoofed source addresses, screened the way the receive
+ * threads do it: the cookie check first, and only an admitted handshake is decoded
+ * and handed to the router. cookielessFlood sends bare handshakes, each answered
+ * with a challenge; forgedCookieFlood guesses cookies, which are rejected and
+ * re-challenged. Both should report gc.alloc.rate.norm of 0 B/op; that no session is
+ * opened and no reply outweighs its request is checked by HandshakeScreeningTest.
+ * For scale, SessionChurnBenchmark.handshakeAndLeave is what each unchecked
+ * handshake would have cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class HandshakeFloodBenchmark {
+
+    private static final int SOURCES_PER_THREAD = 1024;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        VoicePacketRouter router;
+        HandshakeCookies cookies;
+        final DatagramSender replies = (reply, target) -> { };
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup
+        public void setup() {
+            VoiceChatConfig config = new VoiceChatConfig();
+            PlayerVoiceManager playerManager = new PlayerVoiceManager();
+            PlayerPositionManager positionManager = new PlayerPositionManager(config.getAudio().getNormalDistance());
+            OcclusionEngine occlusion = new OcclusionEngine(config::getOcclusion, (x, y, z) -> false);
+
+            router = new VoicePacketRouter(() -> config, playerManager, positionManager, occlusion,
+                (datagram, target) -> { });
+            cookies = new HandshakeCookies();
+
+            for (int i = 0; i < 100; i++) {
+                router.handleHandshake(
+                    new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION, new UUID(0, i), 0, AudioCodec.OPUS),
+                    new InetSocketAddress("127.0.0.1", 30000 + i));
+            }
+        }
+
+        /**
+         * One datagram through the receive path.
+         */
+        boolean receive(ByteBuffer datagram, SocketAddress source) {
+            if (!cookies.admit(datagram, source, replies)) {
+                return false;
+            }
+            byte[] data = new byte[datagram.remaining()];
+            datagram.get(datagram.position(), data);
+            try {
+                router.handleHandshake((HandshakePacket) PacketDeserializer.deserialize(data), source);
+            } catch (IOException e) {
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * One attacker thread: spoofed sources, each with its own player id.
+     */
+    @State(Scope.Thread)
+    public static class Attacker {
+        SocketAddress[] sources;
+        ByteBuffer[] bare;
+        ByteBuffer[] forged;
+        int next;
+
+        @Setup
+        public void setup(Server server) {
+            int thread = server.threads.getAndIncrement();
+            Random random = new Random(thread);
+            sources = new SocketAddress[SOURCES_PER_THREAD];
+            bare = new ByteBuffer[SOURCES_PER_THREAD];
+            forged = new ByteBuffer[SOURCES_PER_THREAD];
+            for (int i = 0; i < SOURCES_PER_THREAD; i++) {
+                sources[i] = new InetSocketAddress("10." + thread + "." + (i >> 8) + "." + (i & 0xFF),
+                    1024 + random.nextInt(60000));
+                UUID playerId = new UUID(random.nextLong(), random.nextLong());
+                bare[i] = ByteBuffer.wrap(new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION, playerId, 0,
+                    AudioCodec.OPUS).serialize());
+                forged[i] = ByteBuffer.wrap(new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION, playerId, 0,
+                    AudioCodec.OPUS, random.nextLong() | 1).serialize());
+            }
+        }
+
+        int nextSource() {
+            return next++ & (SOURCES_PER_THREAD - 1);
+        }
+    }
+
+    @Benchmark
+    public boolean cookielessFlood(Server server, Attacker attacker) {
+        int i = attacker.nextSource();
+        return server.receive(attacker.bare[i], attacker.sources[i]);
+    }
+
+    @Benchmark
+    public boolean forgedCookieFlood(Server server, Attacker attacker) {
+        int i = attacker.nextSource();
+        return server.receive(attacker.forged[i], attacker.sources[i]);
+    }
+}
@@ -0,0 +1,78 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.server.audio.BlockAccess;
+import com.voicechat.server.audio.BlockSnapshot;
+import com.voicechat.server.audio.OcclusionEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Occlusion raycasts between random points in a synthetic 128^3 voxel world
+ * with a configurable fraction of solid blocks, read from a chunk snapshot.
+ * traceBlockedBlocks is the raw walk; countBlockedBlocks goes through the result
+ * cache, which holds every ray here after warm-up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class OcclusionBenchmark {
+
+    private static final int WORLD_SIZE = 128;
+    private static final int RAYS = 1024;
+
+    @Param({"0.05", "0.3"})
+    public double solidFraction;
+
+    private OcclusionEngine engine;
+    private double[] rays;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        BitSet solid = new BitSet(WORLD_SIZE * WORLD_SIZE * WORLD_SIZE);
+        for (int i = 0; i < WORLD_SIZE * WORLD_SIZE * WORLD_SIZE; i++) {
+            if (random.nextDouble() < solidFraction) {
+                solid.set(i);
+            }
+        }
+
+        VoiceChatConfig.OcclusionConfig config = new VoiceChatConfig.OcclusionConfig();
+        BlockAccess world = (x, y, z) -> {
+            if (x < 0 || y < 0 || z < 0 || x >= WORLD_SIZE || y >= WORLD_SIZE || z >= WORLD_SIZE) {
+                return false;
+            }
+            return solid.get((y * WORLD_SIZE + z) * WORLD_SIZE + x);
+        };
+        engine = new OcclusionEngine(() -> config, world);
+        engine.setSnapshot(BlockSnapshot.capture(world, 0, 0, 0, WORLD_SIZE - 1, WORLD_SIZE - 1, WORLD_SIZE - 1));
+
+        // Rays up to the normal voice distance, in random directions
+        rays = new double[RAYS * 6];
+        for (int i = 0; i < rays.length; i += 6) {
+            for (int axis = 0; axis < 3; axis++) {
+                double from = 32 + random.nextDouble() * 64;
+                rays[i + axis] = from;
+                rays[i + 3 + axis] = from + (random.nextDouble() - 0.5) * 64;
+            }
+        }
+    }
+
+    @Benchmark
+    public int traceBlockedBlocks() {
+        int i = next;
+        next = (next + 6) % rays.length;
+        return engine.traceBlockedBlocks(rays[i], rays[i + 1], rays[i + 2], rays[i + 3], rays[i + 4], rays[i + 5]);
+    }
+
+    @Benchmark
+    public int countBlockedBlocks() {
+        int i = next;
+        next = (next + 6) % rays.length;
+        return engine.countBlockedBlocks(rays[i], rays[i + 1], rays[i + 2], rays[i + 3], rays[i + 4], rays[i + 5]);
+    }
+}
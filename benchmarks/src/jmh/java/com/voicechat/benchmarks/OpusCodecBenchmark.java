@@ -0,0 +1,71 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.common.audio.AudioConstants;
+import com.voicechat.common.audio.OpusCodec;
+import com.voicechat.common.exception.AudioException;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One 20 ms frame through OpusCodec, encoded then decoded. The array API allocates
+ * per frame; the buffer API should report gc.alloc.rate.norm of ~0 B/op after warm-up.
+ * Runs in pass-through stub mode when the native binding is not on java.library.path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class OpusCodecBenchmark {
+
+    private OpusCodec codec;
+    private short[] pcm;
+    private ShortBuffer pcmBuffer;
+    private ByteBuffer packetBuffer;
+    private ShortBuffer decodedBuffer;
+
+    @Setup
+    public void setup() throws AudioException {
+        codec = new OpusCodec();
+
+        pcm = new short[AudioConstants.FRAME_SIZE];
+        Random random = new Random(42);
+        for (int i = 0; i < pcm.length; i++) {
+            // Speech-like tone with a little noise, so the encoder does real work
+            pcm[i] = (short) (8000 * Math.sin(i * 2 * Math.PI * 220 / AudioConstants.SAMPLE_RATE)
+                + random.nextGaussian() * 300);
+        }
+
+        pcmBuffer = directShorts(pcm.length);
+        pcmBuffer.put(pcm).flip();
+        packetBuffer = ByteBuffer.allocateDirect(4000);
+        decodedBuffer = directShorts(AudioConstants.FRAME_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        codec.close();
+    }
+
+    @Benchmark
+    public short[] arrayEncodeDecode() throws AudioException {
+        return codec.decode(codec.encode(pcm));
+    }
+
+    @Benchmark
+    public int bufferEncodeDecode() throws AudioException {
+        pcmBuffer.rewind();
+        packetBuffer.clear();
+        codec.encode(pcmBuffer, packetBuffer);
+        packetBuffer.flip();
+        decodedBuffer.clear();
+        return codec.decode(packetBuffer, decodedBuffer);
+    }
+
+    private static ShortBuffer directShorts(int samples) {
+        return ByteBuffer.allocateDirect(samples * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+    }
+}
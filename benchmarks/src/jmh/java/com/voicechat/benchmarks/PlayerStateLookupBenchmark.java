@@ -0,0 +1,89 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.common.data.player.PlayerVoiceState;
+import com.voicechat.server.manager.PlayerVoiceManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-receiver checks of one routed frame: deafen, mute and occlusion preference
+ * for each receiver in range. mapLookup is the old path, a map lookup and a mute set
+ * probe per receiver; snapshotLookup reads the published snapshot once and probes its
+ * arrays. Some players have muted others, as on a live server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PlayerStateLookupBenchmark {
+
+    private static final int RECEIVERS_PER_FRAME = 32;
+
+    @Param({"100", "2000"})
+    public int players;
+
+    private PlayerVoiceManager manager;
+    private UUID[] playerIds;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        manager = new PlayerVoiceManager();
+        playerIds = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            playerIds[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        for (int i = 0; i < players; i++) {
+            PlayerVoiceState state = manager.getState(playerIds[i]);
+            if (i % 4 == 0) {
+                state.mutePlayer(playerIds[random.nextInt(players)]);
+            }
+            if (i % 50 == 0) {
+                state.setDeafened(true);
+            }
+        }
+    }
+
+    private int nextSpeaker() {
+        next = (next + 1) % players;
+        return next;
+    }
+
+    @Benchmark
+    public int mapLookup() {
+        int speaker = nextSpeaker();
+        UUID speakerId = playerIds[speaker];
+        int audible = 0;
+        for (int r = 1; r <= RECEIVERS_PER_FRAME; r++) {
+            PlayerVoiceState state = manager.getStateIfPresent(playerIds[(speaker + r) % players]);
+            if (state == null || state.isDeafened() || state.isPlayerMuted(speakerId)) {
+                continue;
+            }
+            if (state.isOcclusionEnabled()) {
+                audible++;
+            }
+        }
+        return audible;
+    }
+
+    @Benchmark
+    public int snapshotLookup() {
+        int speaker = nextSpeaker();
+        UUID speakerId = playerIds[speaker];
+        PlayerVoiceManager.Snapshot snapshot = manager.getSnapshot();
+        int audible = 0;
+        for (int r = 1; r <= RECEIVERS_PER_FRAME; r++) {
+            int receiver = snapshot.indexOf(playerIds[(speaker + r) % players]);
+            if (receiver < 0 || snapshot.isDeafened(receiver) || snapshot.hasMuted(receiver, speakerId)) {
+                continue;
+            }
+            if (snapshot.isOcclusionEnabled(receiver)) {
+                audible++;
+            }
+        }
+        return audible;
+    }
+}
@@ -0,0 +1,51 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.server.manager.PlayerPositionManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One 20 Hz position update for a tracked player, moving within its spatial index
+ * cell. Should report gc.alloc.rate.norm of ~0 B/op, since positions are written
+ * into the primitive store in place.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PositionUpdateBenchmark {
+
+    @Param({"100", "1000"})
+    public int players;
+
+    private PlayerPositionManager positionManager;
+    private UUID[] playerIds;
+    private double[] origins;
+    private int next;
+    private double step;
+
+    @Setup
+    public void setup() {
+        positionManager = new PlayerPositionManager(64);
+        Random random = new Random(42);
+        playerIds = new UUID[players];
+        origins = new double[players * 2];
+        for (int i = 0; i < players; i++) {
+            playerIds[i] = new UUID(0, i);
+            // Cell centres, so the small moves below never change cell
+            origins[i * 2] = random.nextInt(16) * 32 + 16;
+            origins[i * 2 + 1] = random.nextInt(16) * 32 + 16;
+            positionManager.updatePosition(playerIds[i], origins[i * 2], 64, origins[i * 2 + 1], "world");
+        }
+    }
+
+    @Benchmark
+    public void updatePosition() {
+        int i = next;
+        next = (next + 1) % players;
+        step = (step + 0.25) % 8;
+        positionManager.updatePosition(playerIds[i], origins[i * 2] + step, 64, origins[i * 2 + 1] - step, "world");
+    }
+}
@@ -0,0 +1,77 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.server.security.RateLimiter;
+import com.voicechat.server.util.CoarseClock;
+import com.voicechat.server.util.TimingWheel;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission check from eight receive threads at once. distinctEndpoints gives every
+ * thread its own clients under the maximum budget, so it measures lookup and CAS;
+ * sharedEndpoint sends all threads at one bucket to show CAS contention, and will
+ * also hit the reject path once that bucket runs dry. Both should report
+ * gc.alloc.rate.norm of 0 B/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(8)
+public class RateLimiterBenchmark {
+
+    private static final int ENDPOINTS_PER_THREAD = 256;
+
+    @State(Scope.Benchmark)
+    public static class Limiter {
+        TimingWheel timers;
+        CoarseClock clock;
+        RateLimiter limiter;
+        long sharedKey;
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup
+        public void setup() {
+            timers = new TimingWheel("Benchmark-Timer", 1, 64);
+            timers.start();
+            clock = new CoarseClock();
+            clock.start(timers);
+            limiter = new RateLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 8 * ENDPOINTS_PER_THREAD * 2, clock);
+            sharedKey = RateLimiter.endpointKey(new InetSocketAddress("10.0.0.1", 40000));
+        }
+
+        @TearDown
+        public void tearDown() {
+            limiter.clear();
+            clock.stop();
+            timers.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Endpoints {
+        long[] keys;
+        int next;
+
+        @Setup
+        public void setup(Limiter limiter) {
+            int thread = limiter.threads.getAndIncrement();
+            keys = new long[ENDPOINTS_PER_THREAD];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = RateLimiter.endpointKey(new InetSocketAddress("10.1." + thread + "." + (i & 0xFF), 30000 + i));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean distinctEndpoints(Limiter limiter, Endpoints endpoints) {
+        long key = endpoints.keys[endpoints.next++ & (ENDPOINTS_PER_THREAD - 1)];
+        return limiter.limiter.allowPacket(key, 80);
+    }
+
+    @Benchmark
+    public boolean sharedEndpoint(Limiter limiter) {
+        return limiter.limiter.allowPacket(limiter.sharedKey, 80);
+    }
+}
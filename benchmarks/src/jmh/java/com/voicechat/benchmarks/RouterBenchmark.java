@@ -0,0 +1,85 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.common.network.packet.VoiceMode;
+import com.voicechat.common.network.packet.VoicePacket;
+import com.voicechat.server.audio.OcclusionEngine;
+import com.voicechat.server.manager.PlayerPositionManager;
+import com.voicechat.server.manager.PlayerVoiceManager;
+import com.voicechat.server.network.VoicePacketRouter;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One voice frame routed from a random speaker to everyone in range. Players are
+ * spread over a 512x512 area so the normal-mode radius covers a realistic share.
+ * With audibilityGraph the receivers come from the per-tick graph instead of a
+ * spatial query and per-receiver distance and volume math.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RouterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int players;
+
+    @Param({"false", "true"})
+    public boolean audibilityGraph;
+
+    private VoicePacketRouter router;
+    private VoicePacket[] packets;
+    private SocketAddress[] addresses;
+    private long sent;
+    private int next;
+
+    @Setup
+    public void setup() {
+        VoiceChatConfig config = new VoiceChatConfig();
+        // Speakers are legacy clients that never handshake
+        config.getSecurity().setRequireHandshake(false);
+        PlayerVoiceManager playerManager = new PlayerVoiceManager();
+        PlayerPositionManager positionManager = new PlayerPositionManager(config.getAudio().getNormalDistance());
+        OcclusionEngine occlusion = new OcclusionEngine(config::getOcclusion, (x, y, z) -> false);
+
+        router = new VoicePacketRouter(() -> config, playerManager, positionManager, occlusion,
+            (datagram, target) -> sent += datagram.remaining());
+
+        Random random = new Random(42);
+        byte[] opusData = new byte[60];
+        random.nextBytes(opusData);
+
+        packets = new VoicePacket[players];
+        addresses = new SocketAddress[players];
+        for (int i = 0; i < players; i++) {
+            UUID playerId = new UUID(0, i);
+            playerManager.getState(playerId);
+            positionManager.updatePosition(playerId,
+                random.nextDouble() * 512, 64, random.nextDouble() * 512, "world");
+            packets[i] = new VoicePacket(playerId, opusData, VoiceMode.NORMAL, 0);
+            addresses[i] = new InetSocketAddress("127.0.0.1", 30000 + i);
+        }
+
+        // Register every player's address before measuring
+        for (int i = 0; i < players; i++) {
+            router.routeVoicePacket(packets[i], addresses[i]);
+        }
+
+        if (audibilityGraph) {
+            router.getAudibilityGraph().rebuild();
+        }
+    }
+
+    @Benchmark
+    public long routeVoicePacket() {
+        int speaker = next;
+        next = (next + 1) % players;
+        router.routeVoicePacket(packets[speaker], addresses[speaker]);
+        return sent;
+    }
+}
@@ -0,0 +1,145 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.common.network.packet.VoiceMode;
+import com.voicechat.common.network.packet.VoicePacket;
+import com.voicechat.server.audio.OcclusionEngine;
+import com.voicechat.server.manager.PlayerPositionManager;
+import com.voicechat.server.manager.PlayerVoiceManager;
+import com.voicechat.server.network.RoutingExecutor;
+import com.voicechat.server.network.VoicePacketRouter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ingress-to-egress latency of one voice frame under synthetic traffic from 500
+ * speakers spread over a 512x512 area. Four benchmark threads stand in for receive
+ * threads; each replays its share of the speakers round-robin, and an operation
+ * lasts from handing the frame off until its last receiver datagram is sent.
+ * Sample mode reports the p50/p99/p999 of that interval.
+ *
+ * <p>lanes=0 routes on the receiving thread itself, as the legacy listener does;
+ * otherwise frames go through a {@link RoutingExecutor} with that many lanes.</p>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RoutingLatencyBenchmark {
+
+    static final int SPEAKERS = 500;
+
+    @Param({"0", "1", "4"})
+    public int lanes;
+
+    private VoicePacketRouter router;
+    private RoutingExecutor executor;
+    private VoicePacket[] packets;
+    private SocketAddress[] addresses;
+    private final LongAdder sent = new LongAdder();
+
+    @Setup
+    public void setup() {
+        VoiceChatConfig config = new VoiceChatConfig();
+        // Speakers are legacy clients that never handshake
+        config.getSecurity().setRequireHandshake(false);
+        PlayerVoiceManager playerManager = new PlayerVoiceManager();
+        PlayerPositionManager positionManager = new PlayerPositionManager(config.getAudio().getNormalDistance());
+        OcclusionEngine occlusion = new OcclusionEngine(config::getOcclusion, (x, y, z) -> false);
+
+        router = new VoicePacketRouter(() -> config, playerManager, positionManager, occlusion,
+            (datagram, target) -> sent.add(datagram.remaining()));
+
+        Random random = new Random(42);
+        byte[] opusData = new byte[60];
+        random.nextBytes(opusData);
+
+        packets = new VoicePacket[SPEAKERS];
+        addresses = new SocketAddress[SPEAKERS];
+        for (int i = 0; i < SPEAKERS; i++) {
+            UUID playerId = new UUID(0, i);
+            playerManager.getState(playerId);
+            positionManager.updatePosition(playerId,
+                random.nextDouble() * 512, 64, random.nextDouble() * 512, "world");
+            packets[i] = new VoicePacket(playerId, opusData, VoiceMode.NORMAL, 0);
+            addresses[i] = new InetSocketAddress("127.0.0.1", 30000 + i);
+        }
+
+        // Register every player's address before measuring
+        for (int i = 0; i < SPEAKERS; i++) {
+            router.routeVoicePacket(packets[i], addresses[i]);
+        }
+        router.getAudibilityGraph().rebuild();
+
+        if (lanes > 0) {
+            executor = new RoutingExecutor("Bench-Lane", lanes, 1024);
+            executor.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * One receive thread: its speakers and the completion flag its frames signal.
+     */
+    @State(Scope.Thread)
+    public static class Receiver {
+        int first;
+        int stride;
+        int next;
+        volatile boolean routed;
+
+        @Setup
+        public void setup(ThreadParams params) {
+            first = params.getThreadIndex();
+            stride = params.getThreadCount();
+            next = first;
+        }
+
+        int nextSpeaker() {
+            int speaker = next;
+            next += stride;
+            if (next >= SPEAKERS) {
+                next = first;
+            }
+            return speaker;
+        }
+    }
+
+    @Benchmark
+    public boolean ingressToEgress(Receiver receiver) {
+        int speaker = receiver.nextSpeaker();
+        VoicePacket packet = packets[speaker];
+        SocketAddress address = addresses[speaker];
+
+        if (executor == null) {
+            router.routeVoicePacket(packet, address);
+            return true;
+        }
+
+        receiver.routed = false;
+        Runnable task = () -> {
+            router.routeVoicePacket(packet, address);
+            receiver.routed = true;
+        };
+        if (!executor.execute(RoutingExecutor.speakerKey(packet.getSenderId()), task)) {
+            return false;
+        }
+        while (!receiver.routed) {
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+}
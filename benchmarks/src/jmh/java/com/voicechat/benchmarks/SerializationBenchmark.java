@@ -0,0 +1,61 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.common.network.packet.BasePacket;
+import com.voicechat.common.network.packet.VoiceMode;
+import com.voicechat.common.network.packet.VoicePacket;
+import com.voicechat.common.network.packet.VoicePacketView;
+import com.voicechat.common.network.serialization.PacketDeserializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of a single VoicePacket, plus the in-place view parse
+ * for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    @Param({"60", "1920"})
+    public int opusBytes;
+
+    private VoicePacket packet;
+    private byte[] serialized;
+    private ByteBuffer datagram;
+    private VoicePacketView view;
+
+    @Setup
+    public void setup() {
+        byte[] opusData = new byte[opusBytes];
+        new Random(42).nextBytes(opusData);
+        packet = new VoicePacket(UUID.randomUUID(), opusData, VoiceMode.NORMAL, System.currentTimeMillis());
+        serialized = packet.serialize();
+        datagram = ByteBuffer.allocateDirect(serialized.length);
+        datagram.put(serialized).flip();
+        view = new VoicePacketView();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return packet.serialize();
+    }
+
+    @Benchmark
+    public BasePacket deserialize() throws IOException {
+        return PacketDeserializer.deserialize(serialized);
+    }
+
+    @Benchmark
+    public int wrapView() {
+        view.wrap(datagram);
+        int length = view.getOpusLength();
+        view.release();
+        return length;
+    }
+}
@@ -0,0 +1,118 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.common.network.packet.AudioCodec;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.common.network.protocol.ProtocolConstants;
+import com.voicechat.server.audio.OcclusionEngine;
+import com.voicechat.server.manager.PlayerPositionManager;
+import com.voicechat.server.manager.PlayerVoiceManager;
+import com.voicechat.server.network.VoicePacketRouter;
+import com.voicechat.server.network.connection.SessionRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Session table under churn. {@code handshakeAndLeave} is one full join and leave
+ * through the router, announcements to every resident compact client included.
+ * The {@code underChurn} group resolves senders the way the packet path does
+ * (session id array lookup plus bound-address check) on three threads while a
+ * fourth joins and leaves players at 2,000 per minute.
+ */
+@State(Scope.Group)
+public class SessionChurnBenchmark {
+
+    // 2,000 joins/leaves per minute
+    static final long CHURN_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1) / 2000;
+
+    @Param({"100", "1000"})
+    public int residents;
+
+    private VoicePacketRouter router;
+    private SessionRegistry sessions;
+    private SocketAddress[] addresses;
+    private int[] sessionIds;
+    private UUID churnPlayer;
+    private SocketAddress churnAddress;
+    private final LongAdder sent = new LongAdder();
+    private boolean joined;
+
+    @Setup
+    public void setup() {
+        VoiceChatConfig config = new VoiceChatConfig();
+        PlayerVoiceManager playerManager = new PlayerVoiceManager();
+        PlayerPositionManager positionManager = new PlayerPositionManager(config.getAudio().getNormalDistance());
+        OcclusionEngine occlusion = new OcclusionEngine(config::getOcclusion, (x, y, z) -> false);
+
+        router = new VoicePacketRouter(() -> config, playerManager, positionManager, occlusion,
+            (datagram, target) -> sent.add(datagram.remaining()));
+        sessions = router.getSessions();
+
+        addresses = new SocketAddress[residents];
+        sessionIds = new int[residents];
+        for (int i = 0; i < residents; i++) {
+            UUID playerId = new UUID(0, i);
+            addresses[i] = new InetSocketAddress("127.0.0.1", 30000 + i);
+            router.handleHandshake(
+                new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION, playerId, 0, AudioCodec.OPUS), addresses[i]);
+            sessionIds[i] = sessions.get(playerId).getId();
+        }
+
+        churnPlayer = new UUID(1, 0);
+        churnAddress = new InetSocketAddress("127.0.0.1", 29999);
+    }
+
+    private void joinOrLeave() {
+        if (joined) {
+            router.removePlayer(churnPlayer);
+        } else {
+            router.handleHandshake(
+                new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION, churnPlayer, 0, AudioCodec.OPUS), churnAddress);
+        }
+        joined = !joined;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Group("handshakeAndLeave")
+    public void handshakeAndLeave() {
+        joinOrLeave();
+    }
+
+    /**
+     * Per-thread cursor over the resident sessions.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Group("underChurn")
+    @GroupThreads(3)
+    public UUID resolveSender(Cursor cursor) {
+        int i = cursor.next;
+        cursor.next = (i + 1) % residents;
+        SessionRegistry.Session session = sessions.getSession(sessionIds[i]);
+        return session != null && session.isBoundTo(addresses[i]) ? session.getPlayerId() : null;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Group("underChurn")
+    @GroupThreads(1)
+    public void churn() {
+        joinOrLeave();
+        LockSupport.parkNanos(CHURN_INTERVAL_NANOS);
+    }
+}
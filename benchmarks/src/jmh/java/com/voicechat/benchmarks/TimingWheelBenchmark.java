@@ -0,0 +1,65 @@
+package com.voicechat.benchmarks;
+
+import com.voicechat.server.util.TimingWheel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule and cancel of one session-style timer while many others are pending,
+ * as when a keep-alive is re-armed. The timing wheel does both in O(1); the
+ * executor's delay heap pays O(log n) for each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TimingWheelBenchmark {
+
+    private static final Runnable NOOP = () -> { };
+
+    @Param({"1000", "50000"})
+    public int pendingTimers;
+
+    private TimingWheel wheel;
+    private ScheduledThreadPoolExecutor executor;
+    private int next;
+
+    @Setup
+    public void setup() {
+        wheel = new TimingWheel("Bench-Timer", 5, 512);
+        wheel.start();
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+
+        // Spread over a few minutes, like per-session timers; none fire during the run
+        for (int i = 0; i < pendingTimers; i++) {
+            long delay = TimeUnit.MINUTES.toMillis(10) + i % 60_000;
+            wheel.schedule(NOOP, delay);
+            executor.schedule(NOOP, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        wheel.stop();
+        executor.shutdownNow();
+    }
+
+    private long nextDelay() {
+        next = (next + 7919) % 60_000;
+        return TimeUnit.MINUTES.toMillis(5) + next;
+    }
+
+    @Benchmark
+    public boolean wheelScheduleCancel() {
+        return wheel.schedule(NOOP, nextDelay()).cancel();
+    }
+
+    @Benchmark
+    public boolean executorScheduleCancel() {
+        ScheduledFuture<?> future = executor.schedule(NOOP, nextDelay(), TimeUnit.MILLISECONDS);
+        return future.cancel(false);
+    }
+}
@@ -1,11 +1,24 @@
 package com.voicechat.client.audio.codec;
 
+import com.voicechat.common.audio.OpusCodec;
+import com.voicechat.common.exception.AudioException;
+import com.voicechat.common.network.packet.AudioCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
 /**
- * Stub implementation of Opus decoder
- * TODO: Replace with actual Opus implementation when library is available
+ * Opus decoder backed by the libopus binding in {@link OpusCodec}, one per remote
+ * speaker since concealment depends on stream state. Falls back to treating the
+ * payload as PCM (STUB) when the native library is not available, in which case
+ * the client announced {@link AudioCodec#PCM} and is only sent PCM frames. If the
+ * library loaded but the decoder could not be created, frames decode to nothing.
+ *
+ * <p>The buffer-based methods decode into a buffer owned by this decoder and return
+ * a view that stays valid until the next call.</p>
  */
 public class VoiceOpusDecoder {
 
@@ -14,19 +27,51 @@ public class VoiceOpusDecoder {
     private static final int CHANNELS = 1;
     private static final int FRAME_SIZE = 960; // 20ms at 48kHz
 
+    private OpusCodec codec;
+    // Matches the codec the client announced, so incoming frames are in this format
+    private final AudioCodec format = VoiceOpusEncoder.getCodec();
+    private boolean destroyed = false;
+    // Little-endian PCM output; on little-endian hosts libopus decodes straight into it
+    private final ByteBuffer output = ByteBuffer.allocateDirect(FRAME_SIZE * 2).order(ByteOrder.LITTLE_ENDIAN);
+    private final ShortBuffer outputSamples = output.asShortBuffer();
+    private final ByteBuffer silence = ByteBuffer.allocate(FRAME_SIZE * 2);
+
     public VoiceOpusDecoder() {
+        if (OpusCodec.isNativeLibraryLoaded()) {
+            try {
+                codec = new OpusCodec(false, true);
+                LOGGER.debug("VoiceOpusDecoder initialized");
+                return;
+            } catch (AudioException e) {
+                LOGGER.error("Failed to create Opus decoder, this speaker will not be heard: {}", e.getMessage());
+                codec = null;
+                return;
+            }
+        }
         LOGGER.info("VoiceOpusDecoder initialized (STUB - no actual decoding)");
     }
 
     /**
-     * Decode Opus audio data to PCM format (STUB)
-     * Currently returns the input data as-is
+     * Decode Opus audio data to PCM format
+     * Returns the input data as-is in STUB mode
      */
-    public short[] decode(byte[] opusData) {
+    public synchronized short[] decode(byte[] opusData) {
         if (opusData == null || opusData.length == 0) {
             return new short[0];
         }
 
+        if (codec != null) {
+            try {
+                return codec.decode(opusData);
+            } catch (AudioException e) {
+                LOGGER.debug("Failed to decode audio: {}", e.getMessage());
+                return new short[0];
+            }
+        }
+        if (format != AudioCodec.PCM) {
+            return new short[0];
+        }
+
         // STUB: Convert byte[] to short[] without actual Opus decoding
         short[] output = new short[opusData.length / 2];
         for (int i = 0; i < output.length; i++) {
@@ -37,28 +82,124 @@ public class VoiceOpusDecoder {
     }
 
     /**
-     * Decode Opus audio data to PCM format (STUB)
-     * Currently returns the input data as-is
+     * Decode Opus audio data to PCM format
+     * Returns the input data as-is in STUB mode
      */
     public byte[] decodeBytes(byte[] opusData) {
         if (opusData == null || opusData.length == 0) {
             return new byte[0];
         }
 
+        if (codec != null) {
+            return OpusCodec.shortsToBytes(decode(opusData));
+        }
+
         // STUB: Return input as-is
-        return opusData;
+        return format == AudioCodec.PCM ? opusData : new byte[0];
+    }
+
+    /**
+     * Decode the packet between the buffer's position and limit into little-endian PCM
+     * @return decoded frame, or null if the packet could not be decoded
+     */
+    public synchronized ByteBuffer decode(ByteBuffer opusData) {
+        if (destroyed) {
+            return null;
+        }
+
+        if (codec == null) {
+            // STUB: Payload already is little-endian PCM
+            return format == AudioCodec.PCM ? opusData : null;
+        }
+
+        int position = opusData.position();
+        try {
+            return toOutput(codec.decode(opusData, outputSamples.clear()));
+        } catch (AudioException e) {
+            LOGGER.debug("Failed to decode audio: {}", e.getMessage());
+            return null;
+        } finally {
+            opusData.position(position);
+        }
+    }
+
+    /**
+     * Conceal one lost frame from decoder state (PLC)
+     * Returns silence in STUB mode; the result is valid until the next call
+     */
+    public synchronized ByteBuffer decodeLost() {
+        if (destroyed) {
+            return null;
+        }
+
+        if (codec == null) {
+            // STUB: Return silence
+            return silence.clear();
+        }
+
+        try {
+            return toOutput(codec.decodeLostPacket(outputSamples.clear()));
+        } catch (AudioException e) {
+            LOGGER.debug("Failed to conceal lost frame: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Recover a lost frame from the in-band FEC data carried by the frame after it
+     * Falls back to {@link #decodeLost()} in STUB mode
+     */
+    public synchronized ByteBuffer decodeFEC(ByteBuffer nextFrame) {
+        if (destroyed) {
+            return null;
+        }
+
+        if (codec == null) {
+            // STUB: The raw PCM payload carries no redundancy
+            return decodeLost();
+        }
+
+        int position = nextFrame.position();
+        try {
+            return toOutput(codec.decodeFEC(nextFrame, outputSamples.clear()));
+        } catch (AudioException e) {
+            LOGGER.debug("Failed to decode FEC: {}", e.getMessage());
+            return decodeLost();
+        } finally {
+            nextFrame.position(position);
+        }
     }
 
     /**
-     * Decode packet loss concealment (STUB)
+     * Decode packet loss concealment
+     * Returns silence in STUB mode
      */
     public short[] decodeFEC() {
-        // STUB: Return silence
-        return new short[FRAME_SIZE];
+        ByteBuffer concealed = decodeLost();
+        short[] samples = new short[FRAME_SIZE];
+        if (concealed != null) {
+            concealed.asShortBuffer().get(samples, 0, Math.min(FRAME_SIZE, concealed.remaining() / 2));
+        }
+        return samples;
+    }
+
+    private ByteBuffer toOutput(int samples) {
+        return output.clear().limit(samples * 2);
     }
 
-    public void destroy() {
-        // STUB: No-op
+    public synchronized void destroy() {
+        destroyed = true;
+        if (codec != null) {
+            codec.close();
+            codec = null;
+        }
+    }
+
+    /**
+     * @return true if packets are Opus-decoded rather than passed through
+     */
+    public boolean isNative() {
+        return codec != null;
     }
 
     public int getSampleRate() {
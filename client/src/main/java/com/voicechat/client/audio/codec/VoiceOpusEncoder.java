@@ -1,11 +1,20 @@
 package com.voicechat.client.audio.codec;
 
+import com.voicechat.common.audio.OpusCodec;
+import com.voicechat.common.exception.AudioException;
+import com.voicechat.common.network.packet.AudioCodec;
+import com.voicechat.common.network.protocol.ProtocolConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+
 /**
- * Stub implementation of Opus encoder
- * TODO: Replace with actual Opus implementation when library is available
+ * Opus encoder backed by the libopus binding in {@link OpusCodec}.
+ * Falls back to PCM pass-through (STUB) when the native library is not available;
+ * the client then announces {@link AudioCodec#PCM} at handshake, so the server only
+ * pairs it with other PCM clients. If the library loaded but the encoder could not
+ * be created, nothing is sent rather than PCM under an Opus announcement.
  */
 public class VoiceOpusEncoder {
 
@@ -14,23 +23,99 @@ public class VoiceOpusEncoder {
     private static final int CHANNELS = 1;
     private static final int FRAME_SIZE = 960; // 20ms at 48kHz
     private static final int BITRATE = 24000;
+    private static final int EXPECTED_PACKET_LOSS = 10; // percent, sizes the in-band FEC
 
+    private OpusCodec codec;
+    // Fixed at construction: what this client announces and must therefore send
+    private final AudioCodec format = getCodec();
+    private final short[] pcmScratch = new short[FRAME_SIZE];
     private boolean vbrEnabled = true;
-    private boolean dtxEnabled = false;
+    // Silence goes out as 1-2 byte DTX frames, which the server recognises and thins before fan-out
+    private boolean dtxEnabled = true;
 
     public VoiceOpusEncoder() {
-        LOGGER.info("VoiceOpusEncoder initialized (STUB - no actual encoding)");
+        if (OpusCodec.isNativeLibraryLoaded()) {
+            try {
+                codec = new OpusCodec(true, false);
+                codec.setBitrate(BITRATE);
+                codec.setVBR(vbrEnabled);
+                codec.setDTX(dtxEnabled);
+                codec.setInbandFEC(true);
+                codec.setPacketLossPercentage(EXPECTED_PACKET_LOSS);
+                LOGGER.info("VoiceOpusEncoder initialized ({} kbps)", BITRATE / 1000);
+                return;
+            } catch (AudioException e) {
+                LOGGER.error("Failed to create Opus encoder, voice will not be sent: {}", e.getMessage());
+                codec = null;
+                return;
+            }
+        }
+        LOGGER.warn("libopus not available, sending raw PCM; only other clients without it will hear this one");
+    }
+
+    /**
+     * Codec this client encodes with and announces at handshake: Opus when libopus
+     * is loaded, raw PCM otherwise. Decoders follow the same rule.
+     */
+    public static AudioCodec getCodec() {
+        return OpusCodec.isNativeLibraryLoaded() ? AudioCodec.OPUS : AudioCodec.PCM;
+    }
+
+    /**
+     * Encode one frame of little-endian PCM into a caller-owned array without allocating
+     * @param output must hold at least {@link #getMaxPacketSize()} bytes
+     * @return number of bytes written, or -1 if encoding failed
+     */
+    public int encode(byte[] pcmData, byte[] output) {
+        if (pcmData == null || pcmData.length == 0) {
+            return 0;
+        }
+
+        if (codec == null) {
+            if (format != AudioCodec.PCM) {
+                return -1;
+            }
+            // STUB: Copy input as-is
+            int length = Math.min(pcmData.length, output.length);
+            System.arraycopy(pcmData, 0, output, 0, length);
+            return length;
+        }
+
+        int samples = Math.min(pcmData.length / 2, FRAME_SIZE);
+        for (int i = 0; i < samples; i++) {
+            pcmScratch[i] = (short) ((pcmData[i * 2] & 0xFF) | ((pcmData[i * 2 + 1] & 0xFF) << 8));
+        }
+        Arrays.fill(pcmScratch, samples, FRAME_SIZE, (short) 0);
+
+        try {
+            return codec.encode(pcmScratch, output);
+        } catch (AudioException e) {
+            LOGGER.warn("Failed to encode audio: {}", e.getMessage());
+            return -1;
+        }
     }
 
     /**
-     * Encode PCM audio data to Opus format (STUB)
-     * Currently returns the input data as-is
+     * Encode PCM audio data to Opus format
+     * Returns the input data as-is in STUB mode
      */
     public byte[] encode(short[] pcmData) {
         if (pcmData == null || pcmData.length == 0) {
             return new byte[0];
         }
 
+        if (codec != null) {
+            try {
+                return codec.encode(pcmData);
+            } catch (AudioException e) {
+                LOGGER.warn("Failed to encode audio: {}", e.getMessage());
+                return null;
+            }
+        }
+        if (format != AudioCodec.PCM) {
+            return null;
+        }
+
         // STUB: Convert short[] to byte[] without actual Opus encoding
         byte[] output = new byte[pcmData.length * 2];
         for (int i = 0; i < pcmData.length; i++) {
@@ -42,36 +127,69 @@ public class VoiceOpusEncoder {
     }
 
     /**
-     * Encode PCM audio data to Opus format (STUB)
-     * Currently returns the input data as-is
+     * Encode PCM audio data to Opus format
+     * Returns the input data as-is in STUB mode
      */
     public byte[] encode(byte[] pcmData) {
         if (pcmData == null || pcmData.length == 0) {
             return new byte[0];
         }
 
-        // STUB: Return input as-is
-        return pcmData;
+        if (codec == null) {
+            // STUB: Return input as-is
+            return format == AudioCodec.PCM ? pcmData : null;
+        }
+
+        byte[] output = new byte[getMaxPacketSize()];
+        int length = encode(pcmData, output);
+        return length < 0 ? null : Arrays.copyOf(output, length);
     }
 
     public void setVBR(boolean enabled) {
         this.vbrEnabled = enabled;
+        if (codec != null) {
+            codec.setVBR(enabled);
+        }
     }
 
     public void setDTX(boolean enabled) {
         this.dtxEnabled = enabled;
+        if (codec != null) {
+            codec.setDTX(enabled);
+        }
     }
 
     public void setBitrate(int bitrate) {
-        // STUB: No-op
+        if (codec != null) {
+            codec.setBitrate(bitrate);
+        }
     }
 
     public void setComplexity(int complexity) {
-        // STUB: No-op
+        if (codec != null) {
+            codec.setComplexity(complexity);
+        }
     }
 
     public void destroy() {
-        // STUB: No-op
+        if (codec != null) {
+            codec.close();
+            codec = null;
+        }
+    }
+
+    /**
+     * @return true if frames are Opus-encoded rather than passed through
+     */
+    public boolean isNative() {
+        return codec != null;
+    }
+
+    /**
+     * Largest packet {@link #encode(byte[], byte[])} can produce
+     */
+    public int getMaxPacketSize() {
+        return codec != null ? ProtocolConstants.MAX_PAYLOAD_SIZE : getFrameSizeBytes();
     }
 
     public int getSampleRate() {
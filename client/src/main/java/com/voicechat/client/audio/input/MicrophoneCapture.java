@@ -14,6 +14,7 @@ import java.util.logging.Logger;
 public class MicrophoneCapture {
 
     private static final Logger LOGGER = Logger.getLogger(MicrophoneCapture.class.getName());
+    private static final long FRAME_MS = AudioConstants.FRAME_SIZE * 1000L / AudioConstants.SAMPLE_RATE;
 
     private final VoiceChatClientMod mod;
     private VoiceOpusEncoder encoder;
@@ -68,11 +69,18 @@ public class MicrophoneCapture {
 
     private void captureLoop() {
         byte[] buffer = new byte[encoder.getFrameSizeBytes()];
+        byte[] encoded = new byte[encoder.getMaxPacketSize()];
+
+        // Timestamps advance by exactly one frame per captured frame, so receivers
+        // can derive frame sequence numbers from them regardless of scheduling jitter
+        long captureStart = System.currentTimeMillis();
+        long framesCaptured = 0;
 
         while (running) {
             int read = microphone.read(buffer, 0, buffer.length);
 
             if (read > 0) {
+                long timestamp = captureStart + framesCaptured++ * FRAME_MS;
                 boolean shouldTransmit = false;
 
                 if (mod.getConfigManager().getConfig().getActivationMode() == ActivationMode.PUSH_TO_TALK) {
@@ -82,9 +90,9 @@ public class MicrophoneCapture {
                 }
 
                 if (shouldTransmit) {
-                    byte[] encoded = encoder.encode(buffer);
-                    if (encoded != null) {
-                        mod.getVoiceClient().sendVoiceData(encoded);
+                    int length = encoder.encode(buffer, encoded);
+                    if (length > 0) {
+                        mod.getVoiceClient().sendVoiceData(encoded, length, timestamp);
                     }
                 }
             }
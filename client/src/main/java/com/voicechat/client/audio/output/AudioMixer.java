@@ -0,0 +1,166 @@
+package com.voicechat.client.audio.output;
+
+import com.voicechat.common.audio.AudioConstants;
+
+import javax.sound.sampled.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Software mixer that sums every active speaker into a single output line.
+ * A dedicated high-priority thread renders one {@link AudioConstants#FRAME_SIZE}
+ * period at a time into pre-allocated float accumulators, soft-clips the sum and
+ * writes it to the line. The blocking write paces the loop at the device rate.
+ */
+public class AudioMixer {
+
+    private static final Logger LOGGER = Logger.getLogger(AudioMixer.class.getName());
+
+    // Periods of buffering on the output line; bounds added output latency
+    private static final int LINE_BUFFER_FRAMES = 3;
+    // Normalized level above which the soft clipper starts compressing
+    private static final float CLIP_KNEE = 0.75f;
+
+    /**
+     * Supplies the sources for each mix period by calling {@link AudioMixer#mix}.
+     */
+    @FunctionalInterface
+    public interface FrameRenderer {
+        void render(AudioMixer mixer);
+    }
+
+    private final FrameRenderer renderer;
+    private final float[] accumulator = new float[AudioConstants.FRAME_SIZE];
+    private final byte[] output = new byte[AudioConstants.FRAME_SIZE * 2];
+    private SourceDataLine line;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    public AudioMixer(FrameRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Opens the output line and starts the mix thread.
+     * @return false if no output line could be opened
+     */
+    public boolean start() {
+        try {
+            AudioFormat format = new AudioFormat(
+                    AudioConstants.SAMPLE_RATE,
+                    16, // 16-bit
+                    AudioConstants.CHANNELS,
+                    true, // signed
+                    false // little-endian
+            );
+
+            DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+
+            if (!AudioSystem.isLineSupported(info)) {
+                LOGGER.severe("Audio output line not supported");
+                return false;
+            }
+
+            line = (SourceDataLine) AudioSystem.getLine(info);
+            line.open(format, output.length * LINE_BUFFER_FRAMES);
+            line.start();
+
+        } catch (LineUnavailableException e) {
+            LOGGER.log(Level.SEVERE, "Failed to open audio output line", e);
+            return false;
+        }
+
+        running = true;
+        thread = new Thread(this::mixLoop, "AudioPlayback-Mixer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        return true;
+    }
+
+    public void stop() {
+        running = false;
+
+        if (line != null && line.isOpen()) {
+            // Unblocks a pending write
+            line.stop();
+            line.flush();
+        }
+
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+    }
+
+    private void mixLoop() {
+        while (running) {
+            try {
+                Arrays.fill(accumulator, 0f);
+                renderer.render(this);
+                int length = writeOutput();
+                line.write(output, 0, length);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error mixing voice", e);
+            }
+        }
+    }
+
+    /**
+     * Adds one speaker's little-endian 16-bit PCM into the current period.
+     * Only valid from within {@link FrameRenderer#render}.
+     */
+    public void mix(ByteBuffer samples, float gain) {
+        if (gain <= 0) {
+            return;
+        }
+
+        int start = samples.position();
+        int count = Math.min(samples.remaining() / 2, accumulator.length);
+        float scale = gain / 32768f;
+
+        for (int i = 0; i < count; i++) {
+            int offset = start + i * 2;
+            short sample = (short) ((samples.get(offset + 1) << 8) | (samples.get(offset) & 0xFF));
+            accumulator[i] += sample * scale;
+        }
+    }
+
+    private int writeOutput() {
+        for (int i = 0; i < accumulator.length; i++) {
+            short sample = (short) (softClip(accumulator[i]) * 32767f);
+            output[i * 2] = (byte) sample;
+            output[i * 2 + 1] = (byte) (sample >> 8);
+        }
+        return output.length;
+    }
+
+    /**
+     * Linear below the knee, then tanh-compressed towards full scale, so
+     * overlapping speakers saturate smoothly instead of wrapping or hard clipping.
+     */
+    static float softClip(float x) {
+        float magnitude = Math.abs(x);
+        if (magnitude <= CLIP_KNEE) {
+            return x;
+        }
+        float headroom = 1f - CLIP_KNEE;
+        float compressed = CLIP_KNEE + headroom * (float) Math.tanh((magnitude - CLIP_KNEE) / headroom);
+        return Math.copySign(compressed, x);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -2,33 +2,39 @@ package com.voicechat.client.audio.output;
 
 import com.voicechat.client.VoiceChatClientMod;
 import com.voicechat.client.audio.codec.VoiceOpusDecoder;
-import com.voicechat.common.audio.AudioConstants;
 import com.voicechat.common.network.packet.VoiceBroadcastPacket;
+import com.voicechat.common.network.packet.VoicePacketView;
 
-import javax.sound.sampled.*;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Plays received voice through per-speaker jitter buffers. Frames are queued on
+ * arrival and the {@link AudioMixer} thread drains one frame per speaker each
+ * period, concealing gaps with Opus FEC (when the next frame is buffered) or PLC,
+ * and sums all speakers into a single output line.
+ */
 public class AudioPlayback {
 
     private static final Logger LOGGER = Logger.getLogger(AudioPlayback.class.getName());
 
     private final VoiceChatClientMod mod;
-    private VoiceOpusDecoder decoder;
-    private final Map<UUID, SourceDataLine> playerLines = new ConcurrentHashMap<>();
+    private final Map<UUID, SpeakerStream> speakers = new ConcurrentHashMap<>();
+    private AudioMixer mixer;
     private volatile boolean running = false;
 
     public AudioPlayback(VoiceChatClientMod mod) {
         this.mod = mod;
-        this.decoder = new VoiceOpusDecoder();
     }
 
     public void start() {
-        if (decoder == null) {
-            LOGGER.severe("Cannot start audio playback: decoder not initialized");
+        mixer = new AudioMixer(this::renderFrame);
+        if (!mixer.start()) {
+            LOGGER.severe("Cannot start audio playback: no output line");
+            mixer = null;
             return;
         }
         running = true;
@@ -37,88 +43,90 @@ public class AudioPlayback {
 
     public void stop() {
         running = false;
-        playerLines.values().forEach(line -> {
-            if (line.isOpen()) {
-                line.stop();
-                line.close();
-            }
-        });
-        playerLines.clear();
+        if (mixer != null) {
+            mixer.stop();
+            mixer = null;
+        }
+        speakers.values().forEach(SpeakerStream::close);
+        speakers.clear();
         LOGGER.info("Audio playback stopped");
     }
 
     public void playVoice(VoiceBroadcastPacket packet) {
-        if (!running || decoder == null) {
-            return;
-        }
+        playVoice(packet.getSenderId(), packet.getOpusPayload(), packet.getVolume(), packet.getTimestamp());
+    }
 
-        try {
-            SourceDataLine line = playerLines.computeIfAbsent(packet.getSenderId(), this::createLine);
-            if (line == null) {
-                LOGGER.warning("Failed to get audio line for player: " + packet.getSenderId());
-                return;
-            }
+    /**
+     * Queues a broadcast straight from its receive buffer; the payload is copied
+     * once into the speaker's jitter buffer.
+     */
+    public void playVoice(VoicePacketView view) {
+        playVoice(view.getSenderId(), view);
+    }
 
-            byte[] decoded = decoder.decodeBytes(packet.getOpusData());
-            if (decoded == null) {
-                LOGGER.warning("Failed to decode audio data");
-                return;
-            }
+    /**
+     * Queues a broadcast whose speaker was resolved by the caller, as compact
+     * broadcasts only carry a session id.
+     */
+    public void playVoice(UUID senderId, VoicePacketView view) {
+        playVoice(senderId, view.getOpusData(), view.getVolume(), view.getTimestamp());
+    }
 
-            // Apply volume adjustments
-            float volume = packet.getVolume() * mod.getConfigManager().getConfig().getOutputVolume();
-            byte[] adjusted = adjustVolume(decoded, volume);
+    private void playVoice(UUID senderId, ByteBuffer opusData, float packetVolume, long timestamp) {
+        if (!running) {
+            return;
+        }
 
-            // Write to audio line
-            line.write(adjusted, 0, adjusted.length);
+        SpeakerStream stream = speakers.computeIfAbsent(senderId, id -> new SpeakerStream());
+        stream.volume = packetVolume;
+        stream.jitterBuffer.offer(timestamp, System.currentTimeMillis(), opusData);
+    }
 
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Error playing voice", e);
+    /**
+     * Called on the mixer thread once per period.
+     */
+    private void renderFrame(AudioMixer mixer) {
+        float outputVolume = mod.getConfigManager().getConfig().getOutputVolume();
+        for (SpeakerStream stream : speakers.values()) {
+            ByteBuffer decoded = nextFrame(stream);
+            if (decoded != null) {
+                // Clamp volume to reasonable range
+                float gain = Math.max(0.0f, Math.min(2.0f, stream.volume * outputVolume));
+                mixer.mix(decoded, gain);
+            }
         }
     }
 
-    private SourceDataLine createLine(UUID playerId) {
-        try {
-            AudioFormat format = new AudioFormat(
-                    AudioConstants.SAMPLE_RATE,
-                    16, // 16-bit
-                    AudioConstants.CHANNELS,
-                    true, // signed
-                    false // little-endian
-            );
-
-            DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
-
-            if (!AudioSystem.isLineSupported(info)) {
-                LOGGER.warning("Audio line not supported for player: " + playerId);
+    private ByteBuffer nextFrame(SpeakerStream stream) {
+        JitterBuffer.Frame frame = stream.frame;
+
+        switch (stream.jitterBuffer.poll(frame)) {
+            case FRAME:
+                return stream.decoder.decode(ByteBuffer.wrap(frame.data, 0, frame.length));
+            case LOST:
+                // Prefer in-band FEC from the following frame, otherwise let the decoder extrapolate
+                return stream.jitterBuffer.peekNext(frame)
+                    ? stream.decoder.decodeFEC(ByteBuffer.wrap(frame.data, 0, frame.length))
+                    : stream.decoder.decodeLost();
+            default:
                 return null;
-            }
-
-            SourceDataLine line = (SourceDataLine) AudioSystem.getLine(info);
-            line.open(format);
-            line.start();
-
-            LOGGER.info("Created audio line for player: " + playerId);
-            return line;
-
-        } catch (LineUnavailableException e) {
-            LOGGER.log(Level.WARNING, "Failed to create audio line for player: " + playerId, e);
-            return null;
         }
     }
 
     /**
-     * Adjust volume of PCM samples
+     * Adjust volume of little-endian PCM samples into a caller-owned array
+     * @return number of bytes written
      */
-    private byte[] adjustVolume(byte[] samples, float volume) {
+    public static int adjustVolume(ByteBuffer samples, float volume, byte[] result) {
         // Clamp volume to reasonable range
         volume = Math.max(0.0f, Math.min(2.0f, volume));
 
-        byte[] result = new byte[samples.length];
+        int start = samples.position();
+        int length = Math.min(samples.remaining() & ~1, result.length);
 
-        for (int i = 0; i < samples.length; i += 2) {
+        for (int i = 0; i < length; i += 2) {
             // Convert little-endian 16-bit samples to short
-            short sample = (short) ((samples[i + 1] << 8) | (samples[i] & 0xFF));
+            short sample = (short) ((samples.get(start + i + 1) << 8) | (samples.get(start + i) & 0xFF));
 
             // Apply volume and clamp
             sample = (short) Math.max(-32768, Math.min(32767, sample * volume));
@@ -128,17 +136,14 @@ public class AudioPlayback {
             result[i + 1] = (byte) (sample >> 8);
         }
 
-        return result;
+        return length;
     }
 
     public void removePlayer(UUID playerId) {
-        SourceDataLine line = playerLines.remove(playerId);
-        if (line != null) {
-            if (line.isOpen()) {
-                line.stop();
-                line.close();
-            }
-            LOGGER.info("Removed audio line for player: " + playerId);
+        SpeakerStream stream = speakers.remove(playerId);
+        if (stream != null) {
+            stream.close();
+            LOGGER.info("Removed audio stream for player: " + playerId);
         }
     }
 
@@ -147,9 +152,33 @@ public class AudioPlayback {
     }
 
     /**
-     * Get the number of active player audio lines
+     * Get the number of active speaker streams
      */
     public int getActivePlayerCount() {
-        return playerLines.size();
+        return speakers.size();
+    }
+
+    /**
+     * Jitter buffer of a speaker, exposing its latency and loss statistics
+     * @return null if nothing has been received from the player
+     */
+    public JitterBuffer getJitterBuffer(UUID playerId) {
+        SpeakerStream stream = speakers.get(playerId);
+        return stream == null ? null : stream.jitterBuffer;
+    }
+
+    /**
+     * Playout state for one speaker. Opus decoders carry inter-frame state,
+     * so concealment only works with one decoder per stream.
+     */
+    private static final class SpeakerStream {
+        private final JitterBuffer jitterBuffer = new JitterBuffer();
+        private final JitterBuffer.Frame frame = new JitterBuffer.Frame();
+        private final VoiceOpusDecoder decoder = new VoiceOpusDecoder();
+        private volatile float volume = 1.0f;
+
+        void close() {
+            decoder.destroy();
+        }
     }
 }
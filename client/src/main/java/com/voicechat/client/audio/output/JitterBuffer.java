@@ -0,0 +1,279 @@
+package com.voicechat.client.audio.output;
+
+import com.voicechat.common.audio.AudioConstants;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Adaptive per-speaker jitter buffer keyed on the sender's 20 ms frame index.
+ * Frames are reordered into a fixed ring, playout starts once the target delay
+ * is buffered, and the target follows measured inter-arrival jitter (RFC 3550
+ * estimator): underruns stretch the delay, excess buffering skips a frame.
+ * Gaps are reported to the caller for loss concealment.
+ *
+ * <p>Thread-safe; all methods synchronize on the buffer.</p>
+ */
+public class JitterBuffer {
+
+    private static final int FRAME_MS = AudioConstants.FRAME_SIZE * 1000 / AudioConstants.SAMPLE_RATE;
+    private static final int CAPACITY = 64;
+    private static final int MIN_DELAY_FRAMES = 2;
+    private static final int MAX_DELAY_FRAMES = 25;
+    // Underrun frames after which the speaker is treated as silent
+    private static final int MAX_CONSECUTIVE_LOSS = 5;
+
+    private final byte[][] payloads = new byte[CAPACITY][];
+    private final int[] lengths = new int[CAPACITY];
+    private final long[] sequences = new long[CAPACITY];
+
+    private long nextSequence = -1;
+    private long highestSequence = -1;
+    private int buffered = 0;
+    private int targetDelay = MIN_DELAY_FRAMES;
+    private boolean playing = false;
+    private int consecutiveLoss = 0;
+
+    // Jitter estimate in milliseconds
+    private double jitterMs = 0;
+    private long lastArrivalMs = -1;
+    private long lastTimestampMs = -1;
+
+    // Statistics
+    private long framesReceived = 0;
+    private long framesPlayed = 0;
+    private long framesConcealed = 0;
+    private long framesLate = 0;
+    private long framesDuplicate = 0;
+    private long framesSkipped = 0;
+
+    public JitterBuffer() {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences[i] = -1;
+        }
+    }
+
+    /**
+     * Queues a received frame, copying the payload between the buffer's position and limit.
+     * @param timestampMs sender capture timestamp of the frame
+     * @param arrivalMs local receive time
+     * @return false if the frame was late or a duplicate and was dropped
+     */
+    public synchronized boolean offer(long timestampMs, long arrivalMs, ByteBuffer payload) {
+        framesReceived++;
+        long sequence = Math.floorDiv(timestampMs, FRAME_MS);
+        updateJitter(timestampMs, arrivalMs);
+
+        if (nextSequence >= 0 && sequence < nextSequence) {
+            if (playing || highestSequence - sequence >= CAPACITY - 1) {
+                framesLate++;
+                return false;
+            }
+            // Reordered ahead of playout start: begin from the earlier frame instead
+            nextSequence = sequence;
+        }
+
+        // The window spans one slot less than the ring, keeping late and resync checks unambiguous
+        if (nextSequence < 0 || sequence - nextSequence >= CAPACITY - 1) {
+            // First frame, or the sender jumped too far ahead: resync
+            reset();
+            nextSequence = sequence;
+        }
+
+        int slot = slot(sequence);
+        if (sequences[slot] == sequence) {
+            framesDuplicate++;
+            return false;
+        }
+
+        int length = payload.remaining();
+        byte[] data = payloads[slot];
+        if (data == null || data.length < length) {
+            data = new byte[Math.max(length, 256)];
+            payloads[slot] = data;
+        }
+        payload.get(payload.position(), data, 0, length);
+        lengths[slot] = length;
+        sequences[slot] = sequence;
+        buffered++;
+        highestSequence = Math.max(highestSequence, sequence);
+        return true;
+    }
+
+    /**
+     * Takes the next frame for playout, called once per 20 ms tick.
+     * @param out receives the payload when the result is {@link Result#FRAME}
+     */
+    public synchronized Result poll(Frame out) {
+        if (nextSequence < 0) {
+            return Result.EMPTY;
+        }
+
+        if (!playing) {
+            // Wait until the target delay is buffered before starting playout
+            if (highestSequence - nextSequence + 1 < targetDelay) {
+                return Result.EMPTY;
+            }
+            playing = true;
+        }
+
+        int slot = slot(nextSequence);
+        if (sequences[slot] == nextSequence) {
+            sequences[slot] = -1;
+            buffered--;
+            nextSequence++;
+            consecutiveLoss = 0;
+            framesPlayed++;
+            out.copyFrom(payloads[slot], lengths[slot]);
+
+            // Shrink the delay by skipping a frame when running well ahead of the target
+            if (highestSequence - nextSequence + 1 > targetDelay + 2 && isBuffered(nextSequence)) {
+                skipNext();
+            }
+            return Result.FRAME;
+        }
+
+        if (highestSequence < nextSequence) {
+            // Underrun: conceal without advancing so the late frame can still play,
+            // which grows the effective delay by one frame
+            if (++consecutiveLoss > MAX_CONSECUTIVE_LOSS) {
+                // Speaker stopped talking; wait for the next talk spurt
+                reset();
+                nextSequence = -1;
+                return Result.EMPTY;
+            }
+            framesConcealed++;
+            return Result.LOST;
+        }
+
+        // Gap with later frames already buffered: the frame is lost
+        nextSequence++;
+        framesConcealed++;
+        return Result.LOST;
+    }
+
+    /**
+     * @return true if the frame after a loss is buffered, so its FEC data can be decoded
+     */
+    public synchronized boolean peekNext(Frame out) {
+        if (nextSequence < 0 || !isBuffered(nextSequence)) {
+            return false;
+        }
+        int slot = slot(nextSequence);
+        out.copyFrom(payloads[slot], lengths[slot]);
+        return true;
+    }
+
+    private boolean isBuffered(long sequence) {
+        return sequences[slot(sequence)] == sequence;
+    }
+
+    private void skipNext() {
+        sequences[slot(nextSequence)] = -1;
+        buffered--;
+        nextSequence++;
+        framesSkipped++;
+    }
+
+    private void updateJitter(long timestampMs, long arrivalMs) {
+        if (lastArrivalMs >= 0) {
+            long transitDelta = (arrivalMs - lastArrivalMs) - (timestampMs - lastTimestampMs);
+            jitterMs += (Math.abs(transitDelta) - jitterMs) / 16.0;
+        }
+        lastArrivalMs = arrivalMs;
+        lastTimestampMs = timestampMs;
+
+        // Cover roughly three jitter deviations plus one frame of scheduling slack
+        int target = (int) Math.ceil(3 * jitterMs / FRAME_MS) + 1;
+        targetDelay = Math.max(MIN_DELAY_FRAMES, Math.min(MAX_DELAY_FRAMES, target));
+    }
+
+    private void reset() {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences[i] = -1;
+        }
+        buffered = 0;
+        playing = false;
+        highestSequence = -1;
+        consecutiveLoss = 0;
+    }
+
+    private static int slot(long sequence) {
+        return (int) Math.floorMod(sequence, (long) CAPACITY);
+    }
+
+    public synchronized int getTargetDelayMs() {
+        return targetDelay * FRAME_MS;
+    }
+
+    public synchronized double getJitterMs() {
+        return jitterMs;
+    }
+
+    public synchronized int getBufferedFrames() {
+        return buffered;
+    }
+
+    public synchronized long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public synchronized long getFramesPlayed() {
+        return framesPlayed;
+    }
+
+    public synchronized long getFramesConcealed() {
+        return framesConcealed;
+    }
+
+    public synchronized long getFramesLate() {
+        return framesLate;
+    }
+
+    public synchronized long getFramesDuplicate() {
+        return framesDuplicate;
+    }
+
+    public synchronized long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    /**
+     * Current buffering delay: frames queued ahead of the playout point.
+     */
+    public synchronized int getBufferedDelayMs() {
+        return nextSequence < 0 ? 0 : (int) Math.max(0, highestSequence - nextSequence + 1) * FRAME_MS;
+    }
+
+    /**
+     * Fraction of played-out frames that had to be concealed.
+     */
+    public synchronized float getLossRate() {
+        long total = framesPlayed + framesConcealed;
+        return total == 0 ? 0f : (float) framesConcealed / total;
+    }
+
+    public enum Result {
+        FRAME,
+        LOST,
+        EMPTY
+    }
+
+    /**
+     * Output slot for {@link #poll(Frame)}. The payload is copied into the frame's own
+     * array under the buffer's lock, so the consumer can decode it while the receive
+     * thread keeps offering, or resyncs, the ring. Keep one frame per consumer and
+     * reuse it; the array only grows.
+     */
+    public static final class Frame {
+        public byte[] data;
+        public int length;
+
+        void copyFrom(byte[] source, int sourceLength) {
+            if (data == null || data.length < sourceLength) {
+                data = new byte[Math.max(sourceLength, 256)];
+            }
+            System.arraycopy(source, 0, data, 0, sourceLength);
+            length = sourceLength;
+        }
+    }
+}
@@ -1,32 +1,65 @@
 package com.voicechat.client.network;
 
 import com.voicechat.client.VoiceChatClientMod;
-import com.voicechat.common.network.packet.VoiceBroadcastPacket;
+import com.voicechat.client.audio.codec.VoiceOpusEncoder;
+import com.voicechat.common.network.packet.BasePacket;
+import com.voicechat.common.network.packet.HandshakeCookiePacket;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.common.network.packet.KeepAlivePacket;
+import com.voicechat.common.network.packet.PlayerSessionPacket;
+import com.voicechat.common.network.packet.VoiceBundle;
 import com.voicechat.common.network.packet.VoiceMode;
 import com.voicechat.common.network.packet.VoicePacket;
+import com.voicechat.common.network.packet.VoicePacketView;
+import com.voicechat.common.network.protocol.PacketType;
+import com.voicechat.common.network.protocol.ProtocolConstants;
 import com.voicechat.common.network.serialization.PacketDeserializer;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.util.Arrays;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class VoiceClient {
 
     private static final Logger LOGGER = Logger.getLogger(VoiceClient.class.getName());
+    // Handshakes are resent by the handshake timer until the server answers
+    private static final long HANDSHAKE_RETRY_MS = 1000;
+    // Finer than the retry interval, so a retry is never a whole interval late
+    private static final long HANDSHAKE_CHECK_MS = 250;
 
     private final VoiceChatClientMod mod;
-    private DatagramSocket socket;
-    private InetAddress serverAddress;
+    private DatagramChannel channel;
+    private InetSocketAddress serverAddress;
     private int serverPort = 24454;
     private ExecutorService executor;
+    // Retries the handshake and notices an expired session, whether or not we are talking
+    private ScheduledExecutorService handshakeTimer;
     private volatile boolean connected = false;
     private VoiceMode currentMode = VoiceMode.NORMAL;
     private UUID localPlayerId;
+    // Reused by the capture thread for every outgoing frame
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(2048);
+
+    // Negotiated by handshake; 0 until the server assigns a session
+    private volatile int sessionId;
+    private volatile boolean handshakeComplete;
+    private volatile long lastHandshakeMs;
+    // Last cookie the server challenged us with, echoed in every handshake; 0 until then
+    private volatile long handshakeCookie;
+    // Last handshake reply or keep-alive; the server probes live sessions every few seconds
+    private volatile long lastServerContactMs;
+    // Speakers by session id; receive thread only
+    private UUID[] sessionPlayers = new UUID[64];
 
     public VoiceClient(VoiceChatClientMod mod) {
         this.mod = mod;
@@ -37,13 +70,17 @@ public class VoiceClient {
     public void connect(String address) {
         try {
             String[] parts = address.split(":");
-            serverAddress = InetAddress.getByName(parts[0]);
+            InetAddress host = InetAddress.getByName(parts[0]);
             if (parts.length > 1)
                 serverPort = Integer.parseInt(parts[1]);
+            serverAddress = new InetSocketAddress(host, serverPort);
 
-            socket = new DatagramSocket();
-            socket.setSoTimeout(5000); // 5 second timeout
+            // Blocking channel; disconnect() closes it to wake the receiver
+            channel = DatagramChannel.open();
+            channel.connect(serverAddress);
             connected = true;
+            // Cookies are tied to the local address, which a new channel does not keep
+            handshakeCookie = 0;
 
             executor = Executors.newSingleThreadExecutor(r -> {
                 Thread t = new Thread(r, "VoiceClient-Receiver");
@@ -51,6 +88,15 @@ public class VoiceClient {
                 return t;
             });
             executor.submit(this::receiveLoop);
+            sendHandshake();
+
+            handshakeTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "VoiceClient-Handshake");
+                t.setDaemon(true);
+                return t;
+            });
+            handshakeTimer.scheduleWithFixedDelay(this::checkHandshake,
+                HANDSHAKE_CHECK_MS, HANDSHAKE_CHECK_MS, TimeUnit.MILLISECONDS);
 
             LOGGER.info("Connected to voice server at " + address);
         } catch (IOException e) {
@@ -60,52 +106,225 @@ public class VoiceClient {
 
     public void disconnect() {
         connected = false;
-        if (socket != null && !socket.isClosed()) {
-            socket.close();
+        resetSession();
+        if (channel != null && channel.isOpen()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error closing voice channel", e);
+            }
         }
         if (executor != null && !executor.isShutdown()) {
             executor.shutdown();
         }
+        if (handshakeTimer != null) {
+            handshakeTimer.shutdownNow();
+            handshakeTimer = null;
+        }
         LOGGER.info("Disconnected from voice server");
     }
 
     public void sendVoiceData(byte[] opusData) {
-        if (!connected || socket == null || socket.isClosed())
+        sendVoiceData(opusData, System.currentTimeMillis());
+    }
+
+    /**
+     * @param timestamp capture time of the frame; receivers key their jitter buffers on it
+     */
+    public void sendVoiceData(byte[] opusData, long timestamp) {
+        sendVoiceData(opusData, opusData.length, timestamp);
+    }
+
+    /**
+     * Sends the first {@code length} bytes of an encoder-owned array without allocating.
+     * Not thread-safe; called from the capture thread only.
+     */
+    public void sendVoiceData(byte[] opusData, int length, long timestamp) {
+        if (!connected || channel == null || !channel.isOpen())
+            return;
+
+        int session = sessionId;
+        int size = session != 0 ? VoicePacket.getCompactSerializedSize(length) : VoicePacket.getSerializedSize(length);
+        if (size > sendBuffer.capacity()) {
+            LOGGER.warning("Voice frame too large to send: " + length + " bytes");
             return;
+        }
 
         try {
-            VoicePacket packet = new VoicePacket(localPlayerId, opusData, currentMode, System.currentTimeMillis());
-            byte[] data = packet.serialize();
-            socket.send(new DatagramPacket(data, data.length, serverAddress, serverPort));
+            sendBuffer.clear();
+            if (session != 0) {
+                VoicePacket.writeCompact(sendBuffer, session, opusData, 0, length, currentMode, timestamp);
+            } else {
+                VoicePacket.write(sendBuffer, localPlayerId, opusData, 0, length, currentMode, timestamp);
+            }
+            sendBuffer.flip();
+            channel.write(sendBuffer);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Failed to send voice data", e);
         }
     }
 
+    /**
+     * Runs on the handshake timer: resends the handshake until the server answers,
+     * and starts over once the server has stopped probing the session.
+     */
+    private void checkHandshake() {
+        if (!connected || channel == null || !channel.isOpen()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (handshakeComplete && now - lastServerContactMs > ProtocolConstants.CONNECTION_TIMEOUT) {
+            // The server has most likely expired the session; negotiate a new one
+            LOGGER.info("No keep-alive from voice server, handshaking again");
+            resetSession();
+        }
+        if (!handshakeComplete && now - lastHandshakeMs >= HANDSHAKE_RETRY_MS) {
+            sendHandshake();
+        }
+    }
+
+    private void sendHandshake() {
+        lastHandshakeMs = System.currentTimeMillis();
+        try {
+            HandshakePacket handshake = new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION, localPlayerId, 0,
+                VoiceOpusEncoder.getCodec(), handshakeCookie);
+            channel.write(ByteBuffer.wrap(handshake.serialize()));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to send handshake", e);
+        }
+    }
+
     private void receiveLoop() {
-        byte[] buffer = new byte[2048]; // Increased buffer size
+        // One direct buffer and view reused for every datagram; playback runs inline
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2048);
+        VoicePacketView view = new VoicePacketView();
 
         while (connected) {
             try {
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                socket.receive(packet);
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
 
-                byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
-                VoiceBroadcastPacket broadcast = (VoiceBroadcastPacket) PacketDeserializer.deserialize(data);
+                if (!buffer.hasRemaining()) {
+                    continue;
+                }
 
-                if (broadcast != null && mod.getAudioPlayback() != null) {
-                    mod.getAudioPlayback().playVoice(broadcast);
+                byte type = buffer.get(0);
+                if (type == PacketType.VOICE_BUNDLE) {
+                    // Each entry is parsed in place by narrowing the buffer to it
+                    int end = buffer.limit();
+                    int offset = VoiceBundle.HEADER_SIZE;
+                    while ((offset = VoiceBundle.nextEntry(buffer, offset, end)) > 0) {
+                        playBroadcast(buffer, view);
+                        view.release();
+                        buffer.limit(end);
+                    }
+                    continue;
+                }
+                if (type != PacketType.VOICE_BROADCAST && type != PacketType.VOICE_BROADCAST_COMPACT) {
+                    handleControlPacket(buffer);
+                    continue;
                 }
-            } catch (SocketTimeoutException e) {
-                // Normal timeout, continue
+                playBroadcast(buffer, view);
+            } catch (ClosedChannelException e) {
+                // Channel closed by disconnect()
+                break;
             } catch (IOException e) {
                 if (connected) {
                     LOGGER.log(Level.WARNING, "Error receiving voice data", e);
                 }
+            } finally {
+                view.release();
             }
         }
     }
 
+    private void playBroadcast(ByteBuffer datagram, VoicePacketView view) {
+        if (!view.wrap(datagram) || mod.getAudioPlayback() == null) {
+            return;
+        }
+        byte type = view.getType();
+        if (type != PacketType.VOICE_BROADCAST && type != PacketType.VOICE_BROADCAST_COMPACT) {
+            return;
+        }
+        UUID speakerId = view.isCompact() ? getSessionPlayer(view.getSenderSession()) : view.getSenderId();
+        mod.getAudioPlayback().playVoice(speakerId, view);
+    }
+
+    private void handleControlPacket(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(0, data);
+
+        BasePacket packet;
+        try {
+            packet = PacketDeserializer.deserialize(data);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.fine("Ignoring unreadable packet from voice server: " + e.getMessage());
+            return;
+        }
+
+        if (packet instanceof HandshakePacket) {
+            HandshakePacket handshake = (HandshakePacket) packet;
+            if (!handshake.getPlayerId().equals(localPlayerId)) {
+                return;
+            }
+            boolean compact = handshake.getProtocolVersion() >= ProtocolConstants.COMPACT_PROTOCOL_VERSION
+                && handshake.getSessionId() != 0;
+            sessionId = compact ? handshake.getSessionId() : 0;
+            lastServerContactMs = System.currentTimeMillis();
+            handshakeComplete = true;
+            LOGGER.info("Voice protocol v" + handshake.getProtocolVersion() + " negotiated"
+                + (compact ? ", session " + handshake.getSessionId() : ""));
+        } else if (packet instanceof HandshakeCookiePacket) {
+            // The server wants proof we receive on this address before it opens a session
+            handshakeCookie = ((HandshakeCookiePacket) packet).getCookie();
+            if (!handshakeComplete) {
+                sendHandshake();
+            }
+        } else if (packet instanceof PlayerSessionPacket) {
+            PlayerSessionPacket session = (PlayerSessionPacket) packet;
+            int id = session.getSessionId();
+            if (id >= sessionPlayers.length) {
+                sessionPlayers = Arrays.copyOf(sessionPlayers, Math.max(id + 1, sessionPlayers.length * 2));
+            }
+            sessionPlayers[id] = session.isJoin() ? session.getPlayerId() : null;
+        } else if (packet instanceof KeepAlivePacket) {
+            if (!((KeepAlivePacket) packet).getPlayerId().equals(localPlayerId)) {
+                return;
+            }
+            lastServerContactMs = System.currentTimeMillis();
+            try {
+                // Echoed unchanged so the server sees the session is alive
+                channel.write(ByteBuffer.wrap(data));
+            } catch (IOException e) {
+                LOGGER.fine("Failed to answer keep-alive: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Resolves a compact broadcast's speaker. Until the server's announcement for a
+     * session arrives, a placeholder id derived from the session keeps its audio
+     * in one stream.
+     */
+    private UUID getSessionPlayer(int session) {
+        if (session >= sessionPlayers.length) {
+            sessionPlayers = Arrays.copyOf(sessionPlayers, Math.max(session + 1, sessionPlayers.length * 2));
+        }
+        UUID playerId = sessionPlayers[session];
+        if (playerId == null) {
+            playerId = new UUID(0, session);
+            sessionPlayers[session] = playerId;
+        }
+        return playerId;
+    }
+
+    private void resetSession() {
+        sessionId = 0;
+        handshakeComplete = false;
+        lastHandshakeMs = 0;
+    }
+
     public void setVoiceMode(VoiceMode mode) {
         this.currentMode = mode;
         LOGGER.info("Voice mode changed to: " + mode);
@@ -125,5 +344,14 @@ public class VoiceClient {
 
     public void setLocalPlayerId(UUID playerId) {
         this.localPlayerId = playerId;
+        // The session belongs to the old id; the handshake timer negotiates a new one
+        resetSession();
+    }
+
+    /**
+     * @return the session id assigned by the server, or 0 when using the legacy protocol
+     */
+    public int getSessionId() {
+        return sessionId;
     }
 }
@@ -4,6 +4,11 @@ import com.voicechat.common.exception.AudioException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
 /**
  * Opus audio codec implementation using JNI (Java Native Interface).
  * Provides high-quality, low-latency audio encoding and decoding.
@@ -14,12 +19,12 @@ import org.slf4j.LoggerFactory;
  * </p>
  * 
  * <p>
- * <strong>Note:</strong> This implementation requires native Opus libraries to
- * be present:
+ * <strong>Note:</strong> This implementation requires the JNI binding in
+ * {@code src/main/native/opus_jni.c}, linked against libopus, to be present:
  * <ul>
- * <li>Windows: opus.dll</li>
- * <li>Linux: libopus.so</li>
- * <li>macOS: libopus.dylib</li>
+ * <li>Windows: voicechat-opus.dll</li>
+ * <li>Linux: libvoicechat-opus.so</li>
+ * <li>macOS: libvoicechat-opus.dylib</li>
  * </ul>
  * If native libraries are not available, the codec operates in stub mode
  * (pass-through).
@@ -38,6 +43,7 @@ public class OpusCodec {
     private static final int FRAME_SIZE = AudioConstants.FRAME_SIZE; // 960 samples (20ms at 48kHz)
     private static final int BITRATE = 64000; // 64 kbps (good quality for voice)
     private static final int MAX_PACKET_SIZE = 4000; // Maximum encoded packet size
+    private static final String LIBRARY_NAME = "voicechat-opus"; // JNI binding, links libopus
 
     // Opus application types
     private static final int OPUS_APPLICATION_VOIP = 2048;
@@ -50,6 +56,10 @@ public class OpusCodec {
     private boolean isInitialized = false;
     private static boolean nativeLibraryLoaded = false;
 
+    // Staging for heap or non-native-order buffers, allocated on first use
+    private short[] pcmScratch;
+    private byte[] packetScratch;
+
     static {
         try {
             loadNativeLibrary();
@@ -66,23 +76,11 @@ public class OpusCodec {
      * Loads the native Opus library based on the operating system.
      */
     private static void loadNativeLibrary() {
-        String osName = System.getProperty("os.name").toLowerCase();
-        String osArch = System.getProperty("os.arch").toLowerCase();
-
-        String libraryName;
-        if (osName.contains("win")) {
-            libraryName = "opus";
-        } else if (osName.contains("mac")) {
-            libraryName = "opus";
-        } else {
-            libraryName = "opus";
-        }
-
         try {
-            System.loadLibrary(libraryName);
+            System.loadLibrary(LIBRARY_NAME);
         } catch (UnsatisfiedLinkError e) {
             // Try loading from natives directory
-            String nativesPath = "natives/" + getPlatformName() + "/" + System.mapLibraryName(libraryName);
+            String nativesPath = "natives/" + getPlatformName() + "/" + System.mapLibraryName(LIBRARY_NAME);
             System.load(new java.io.File(nativesPath).getAbsolutePath());
         }
     }
@@ -107,6 +105,16 @@ public class OpusCodec {
      * @throws AudioException if codec initialization fails
      */
     public OpusCodec() throws AudioException {
+        this(true, true);
+    }
+
+    /**
+     * Creates a codec with only the halves that are needed, e.g. one decoder per
+     * remote speaker without carrying an unused encoder.
+     *
+     * @throws AudioException if codec initialization fails
+     */
+    public OpusCodec(boolean withEncoder, boolean withDecoder) throws AudioException {
         if (!nativeLibraryLoaded) {
             LOGGER.warn("Creating OpusCodec in stub mode (native library not loaded)");
             isInitialized = true; // Allow stub mode
@@ -117,23 +125,26 @@ public class OpusCodec {
             LOGGER.info("Initializing Opus codec ({}Hz, {} channels, {}ms frames, {} kbps)",
                     SAMPLE_RATE, CHANNELS, (FRAME_SIZE * 1000 / SAMPLE_RATE), BITRATE / 1000);
 
-            // Create encoder
-            encoderHandle = nativeCreateEncoder(SAMPLE_RATE, CHANNELS, OPUS_APPLICATION_VOIP);
-            if (encoderHandle == 0) {
-                throw new AudioException("Failed to create Opus encoder");
+            if (withEncoder) {
+                // Create encoder
+                encoderHandle = nativeCreateEncoder(SAMPLE_RATE, CHANNELS, OPUS_APPLICATION_VOIP);
+                if (encoderHandle == 0) {
+                    throw new AudioException("Failed to create Opus encoder");
+                }
+
+                // Configure encoder
+                nativeEncoderSetBitrate(encoderHandle, BITRATE);
+                nativeEncoderSetComplexity(encoderHandle, 10); // Maximum quality
+                nativeEncoderSetVBR(encoderHandle, true);
+                nativeEncoderSetDTX(encoderHandle, true);
             }
 
-            // Configure encoder
-            nativeEncoderSetBitrate(encoderHandle, BITRATE);
-            nativeEncoderSetComplexity(encoderHandle, 10); // Maximum quality
-            nativeEncoderSetVBR(encoderHandle, true);
-            nativeEncoderSetDTX(encoderHandle, true);
-
-            // Create decoder
-            decoderHandle = nativeCreateDecoder(SAMPLE_RATE, CHANNELS);
-            if (decoderHandle == 0) {
-                nativeDestroyEncoder(encoderHandle);
-                throw new AudioException("Failed to create Opus decoder");
+            if (withDecoder) {
+                // Create decoder
+                decoderHandle = nativeCreateDecoder(SAMPLE_RATE, CHANNELS);
+                if (decoderHandle == 0) {
+                    throw new AudioException("Failed to create Opus decoder");
+                }
             }
 
             isInitialized = true;
@@ -153,9 +164,7 @@ public class OpusCodec {
      * @throws AudioException if encoding fails
      */
     public byte[] encode(short[] pcmData) throws AudioException {
-        if (!isInitialized) {
-            throw new AudioException("Opus codec not initialized");
-        }
+        requireEncoder();
 
         if (pcmData == null || pcmData.length == 0) {
             throw new AudioException("PCM data is null or empty");
@@ -199,9 +208,7 @@ public class OpusCodec {
      * @throws AudioException if decoding fails
      */
     public short[] decode(byte[] opusData) throws AudioException {
-        if (!isInitialized) {
-            throw new AudioException("Opus codec not initialized");
-        }
+        requireDecoder();
 
         if (opusData == null || opusData.length == 0) {
             throw new AudioException("Opus data is null or empty");
@@ -239,9 +246,7 @@ public class OpusCodec {
      * @throws AudioException if decoding fails
      */
     public short[] decodeLostPacket() throws AudioException {
-        if (!isInitialized) {
-            throw new AudioException("Opus codec not initialized");
-        }
+        requireDecoder();
 
         if (!nativeLibraryLoaded) {
             // Stub mode: return silence
@@ -263,6 +268,280 @@ public class OpusCodec {
         }
     }
 
+    /**
+     * Encodes one frame into a caller-owned array without allocating.
+     *
+     * @param pcmData one frame of PCM audio data (16-bit signed integers)
+     * @param encoded receives the Opus packet from index 0
+     * @return number of bytes written to {@code encoded}
+     * @throws AudioException if encoding fails
+     */
+    public int encode(short[] pcmData, byte[] encoded) throws AudioException {
+        requireEncoder();
+
+        if (pcmData == null || pcmData.length < FRAME_SIZE) {
+            throw new AudioException("PCM data must hold " + FRAME_SIZE + " samples");
+        }
+
+        if (!nativeLibraryLoaded) {
+            // Stub mode: little-endian PCM pass-through
+            if (encoded.length < FRAME_SIZE * 2) {
+                throw new AudioException("Output buffer too small for stub frame");
+            }
+            for (int i = 0; i < FRAME_SIZE; i++) {
+                encoded[i * 2] = (byte) pcmData[i];
+                encoded[i * 2 + 1] = (byte) (pcmData[i] >> 8);
+            }
+            return FRAME_SIZE * 2;
+        }
+
+        int encodedLength = nativeEncode(encoderHandle, pcmData, FRAME_SIZE, encoded, encoded.length);
+        if (encodedLength < 0) {
+            throw new AudioException("Encoding failed with error code: " + encodedLength);
+        }
+        return encodedLength;
+    }
+
+    /**
+     * Decodes one packet into a caller-owned array without allocating.
+     *
+     * @param opusData encoded packet, read from index 0
+     * @param length packet length in bytes
+     * @param pcmData receives the decoded samples; must hold a full frame
+     * @return number of samples decoded
+     * @throws AudioException if decoding fails
+     */
+    public int decode(byte[] opusData, int length, short[] pcmData) throws AudioException {
+        return decode(opusData, length, pcmData, false);
+    }
+
+    /**
+     * Recovers a lost frame from the in-band FEC data of the packet that followed it.
+     *
+     * @param nextOpusData the packet after the lost one, read from index 0
+     * @return number of samples decoded
+     * @throws AudioException if decoding fails
+     */
+    public int decodeFEC(byte[] nextOpusData, int length, short[] pcmData) throws AudioException {
+        return decode(nextOpusData, length, pcmData, true);
+    }
+
+    /**
+     * Packet loss concealment into a caller-owned array.
+     *
+     * @return number of samples generated
+     * @throws AudioException if decoding fails
+     */
+    public int decodeLostPacket(short[] pcmData) throws AudioException {
+        return decode(null, 0, pcmData, false);
+    }
+
+    private int decode(byte[] opusData, int length, short[] pcmData, boolean fec) throws AudioException {
+        requireDecoder();
+
+        if (pcmData == null || pcmData.length < FRAME_SIZE) {
+            throw new AudioException("PCM buffer must hold " + FRAME_SIZE + " samples");
+        }
+
+        if (!nativeLibraryLoaded) {
+            // Stub mode: payload is little-endian PCM, losses decode to silence
+            if (opusData == null || fec) {
+                Arrays.fill(pcmData, 0, FRAME_SIZE, (short) 0);
+                return FRAME_SIZE;
+            }
+            int samples = Math.min(length / 2, pcmData.length);
+            for (int i = 0; i < samples; i++) {
+                pcmData[i] = (short) ((opusData[i * 2] & 0xFF) | ((opusData[i * 2 + 1] & 0xFF) << 8));
+            }
+            return samples;
+        }
+
+        int decodedLength = nativeDecode(decoderHandle, opusData, length, pcmData, FRAME_SIZE, fec);
+        if (decodedLength < 0) {
+            throw new AudioException("Decoding failed with error code: " + decodedLength);
+        }
+        return decodedLength;
+    }
+
+    /**
+     * Encodes one frame between buffers without allocating. Direct buffers in native
+     * byte order are handed to libopus in place; other buffers are staged through
+     * arrays owned by this codec.
+     *
+     * @param pcm {@link #getFrameSize()} samples, read from its position (which is advanced)
+     * @param encoded receives the packet at its position (which is advanced)
+     * @return encoded length in bytes
+     * @throws AudioException if encoding fails
+     */
+    public int encode(ShortBuffer pcm, ByteBuffer encoded) throws AudioException {
+        requireEncoder();
+
+        if (pcm.remaining() < FRAME_SIZE) {
+            throw new AudioException("PCM buffer must hold " + FRAME_SIZE + " samples");
+        }
+
+        int encodedLength;
+        if (!nativeLibraryLoaded) {
+            // Stub mode: little-endian PCM pass-through
+            if (encoded.remaining() < FRAME_SIZE * 2) {
+                throw new AudioException("Output buffer too small for stub frame");
+            }
+            int base = encoded.position();
+            int start = pcm.position();
+            for (int i = 0; i < FRAME_SIZE; i++) {
+                short sample = pcm.get(start + i);
+                encoded.put(base + i * 2, (byte) sample);
+                encoded.put(base + i * 2 + 1, (byte) (sample >> 8));
+            }
+            encodedLength = FRAME_SIZE * 2;
+
+        } else if (isNativeDirect(pcm) && encoded.isDirect()) {
+            encodedLength = nativeEncodeDirect(encoderHandle, pcm, pcm.position(), FRAME_SIZE,
+                    encoded, encoded.position(), encoded.remaining());
+
+        } else {
+            short[] samples = pcmScratch();
+            pcm.get(pcm.position(), samples, 0, FRAME_SIZE);
+            byte[] packet = packetScratch();
+            encodedLength = nativeEncode(encoderHandle, samples, FRAME_SIZE, packet,
+                    Math.min(packet.length, encoded.remaining()));
+            if (encodedLength > 0) {
+                encoded.put(encoded.position(), packet, 0, encodedLength);
+            }
+        }
+
+        if (encodedLength < 0) {
+            throw new AudioException("Encoding failed with error code: " + encodedLength);
+        }
+        pcm.position(pcm.position() + FRAME_SIZE);
+        encoded.position(encoded.position() + encodedLength);
+        return encodedLength;
+    }
+
+    /**
+     * Decodes the packet between the buffer's position and limit without allocating.
+     *
+     * @param pcm receives the samples at its position (which is advanced)
+     * @return number of samples decoded
+     * @throws AudioException if decoding fails
+     */
+    public int decode(ByteBuffer opusData, ShortBuffer pcm) throws AudioException {
+        return decode(opusData, pcm, false);
+    }
+
+    /**
+     * Recovers a lost frame from the in-band FEC data of the packet that followed it.
+     *
+     * @return number of samples decoded
+     * @throws AudioException if decoding fails
+     */
+    public int decodeFEC(ByteBuffer nextOpusData, ShortBuffer pcm) throws AudioException {
+        return decode(nextOpusData, pcm, true);
+    }
+
+    /**
+     * Packet loss concealment into a caller-owned buffer.
+     *
+     * @return number of samples generated
+     * @throws AudioException if decoding fails
+     */
+    public int decodeLostPacket(ShortBuffer pcm) throws AudioException {
+        return decode(null, pcm, false);
+    }
+
+    private int decode(ByteBuffer opusData, ShortBuffer pcm, boolean fec) throws AudioException {
+        requireDecoder();
+
+        if (pcm.remaining() < FRAME_SIZE) {
+            throw new AudioException("PCM buffer must hold " + FRAME_SIZE + " samples");
+        }
+
+        int length = opusData == null ? 0 : opusData.remaining();
+        int decodedLength;
+        if (!nativeLibraryLoaded) {
+            // Stub mode: payload is little-endian PCM, losses decode to silence
+            int start = pcm.position();
+            if (opusData == null || fec) {
+                for (int i = 0; i < FRAME_SIZE; i++) {
+                    pcm.put(start + i, (short) 0);
+                }
+                decodedLength = FRAME_SIZE;
+            } else {
+                int base = opusData.position();
+                decodedLength = Math.min(length / 2, pcm.remaining());
+                for (int i = 0; i < decodedLength; i++) {
+                    pcm.put(start + i, (short) ((opusData.get(base + i * 2) & 0xFF)
+                            | ((opusData.get(base + i * 2 + 1) & 0xFF) << 8)));
+                }
+            }
+
+        } else if (isNativeDirect(pcm) && (opusData == null || opusData.isDirect())) {
+            decodedLength = nativeDecodeDirect(decoderHandle, opusData,
+                    opusData == null ? 0 : opusData.position(), length,
+                    pcm, pcm.position(), FRAME_SIZE, fec);
+
+        } else {
+            byte[] packet = null;
+            if (opusData != null) {
+                packet = packetScratch();
+                if (length > packet.length) {
+                    throw new AudioException("Opus packet too large: " + length + " bytes");
+                }
+                opusData.get(opusData.position(), packet, 0, length);
+            }
+            short[] samples = pcmScratch();
+            decodedLength = nativeDecode(decoderHandle, packet, length, samples, FRAME_SIZE, fec);
+            if (decodedLength > 0) {
+                pcm.put(pcm.position(), samples, 0, decodedLength);
+            }
+        }
+
+        if (decodedLength < 0) {
+            throw new AudioException("Decoding failed with error code: " + decodedLength);
+        }
+        if (opusData != null) {
+            opusData.position(opusData.limit());
+        }
+        pcm.position(pcm.position() + decodedLength);
+        return decodedLength;
+    }
+
+    private static boolean isNativeDirect(ShortBuffer buffer) {
+        return buffer.isDirect() && buffer.order() == ByteOrder.nativeOrder();
+    }
+
+    private short[] pcmScratch() {
+        if (pcmScratch == null) {
+            pcmScratch = new short[FRAME_SIZE];
+        }
+        return pcmScratch;
+    }
+
+    private byte[] packetScratch() {
+        if (packetScratch == null) {
+            packetScratch = new byte[MAX_PACKET_SIZE];
+        }
+        return packetScratch;
+    }
+
+    private void requireEncoder() throws AudioException {
+        if (!isInitialized) {
+            throw new AudioException("Opus codec not initialized");
+        }
+        if (nativeLibraryLoaded && encoderHandle == 0) {
+            throw new AudioException("Opus codec was created without an encoder");
+        }
+    }
+
+    private void requireDecoder() throws AudioException {
+        if (!isInitialized) {
+            throw new AudioException("Opus codec not initialized");
+        }
+        if (nativeLibraryLoaded && decoderHandle == 0) {
+            throw new AudioException("Opus codec was created without a decoder");
+        }
+    }
+
     /**
      * Creates stub encoded data for testing (when native library is not available).
      */
@@ -316,6 +595,55 @@ public class OpusCodec {
         return bytes;
     }
 
+    /**
+     * Sets the target bitrate in bits per second.
+     */
+    public void setBitrate(int bitrate) {
+        if (nativeLibraryLoaded && encoderHandle != 0) {
+            nativeEncoderSetBitrate(encoderHandle, bitrate);
+        }
+    }
+
+    /**
+     * Sets the encoder complexity (0-10).
+     */
+    public void setComplexity(int complexity) {
+        if (nativeLibraryLoaded && encoderHandle != 0) {
+            nativeEncoderSetComplexity(encoderHandle, complexity);
+        }
+    }
+
+    public void setVBR(boolean enabled) {
+        if (nativeLibraryLoaded && encoderHandle != 0) {
+            nativeEncoderSetVBR(encoderHandle, enabled);
+        }
+    }
+
+    public void setDTX(boolean enabled) {
+        if (nativeLibraryLoaded && encoderHandle != 0) {
+            nativeEncoderSetDTX(encoderHandle, enabled);
+        }
+    }
+
+    /**
+     * Enables in-band forward error correction, letting receivers rebuild a lost
+     * frame from the packet that follows it.
+     */
+    public void setInbandFEC(boolean enabled) {
+        if (nativeLibraryLoaded && encoderHandle != 0) {
+            nativeEncoderSetInbandFEC(encoderHandle, enabled);
+        }
+    }
+
+    /**
+     * Expected packet loss (0-100); the encoder spends FEC bits accordingly.
+     */
+    public void setPacketLossPercentage(int percentage) {
+        if (nativeLibraryLoaded && encoderHandle != 0) {
+            nativeEncoderSetPacketLossPerc(encoderHandle, percentage);
+        }
+    }
+
     /**
      * Resets the encoder state.
      */
@@ -411,10 +739,21 @@ public class OpusCodec {
 
     private native void nativeEncoderSetDTX(long handle, boolean dtx);
 
+    private native void nativeEncoderSetInbandFEC(long handle, boolean fec);
+
+    private native void nativeEncoderSetPacketLossPerc(long handle, int percentage);
+
     private native int nativeEncode(long handle, short[] pcm, int frameSize, byte[] encoded, int maxSize);
 
     private native int nativeDecode(long handle, byte[] encoded, int length, short[] pcm, int frameSize, boolean fec);
 
+    // Direct-buffer variants; positions are in elements of each buffer
+    private native int nativeEncodeDirect(long handle, ShortBuffer pcm, int pcmPosition, int frameSize,
+            ByteBuffer encoded, int encodedPosition, int maxSize);
+
+    private native int nativeDecodeDirect(long handle, ByteBuffer encoded, int encodedPosition, int length,
+            ShortBuffer pcm, int pcmPosition, int frameSize, boolean fec);
+
     private native void nativeEncoderReset(long handle);
 
     private native void nativeDecoderReset(long handle);
@@ -32,6 +32,16 @@ public class VoiceChatConfig {
         private int voicePort = 24454;
         private int maxPacketSize = 2048;
         private int keepAliveInterval = 5000;
+        private int sessionTimeout = 15000;
+        private IoEngine ioEngine = IoEngine.LEGACY;
+        private int receiveThreads = 2;
+        private int workerThreads = 4;
+        private int workerQueueCapacity = 4096;
+        private int routingLanes = 4;
+        private int routingLaneCapacity = 1024;
+        private boolean bundleDatagrams = true;
+        private int bundleMtu = 1200;
+        private int bundleIntervalMs = 20;
 
         public int getVoicePort() {
             return voicePort;
@@ -56,6 +66,113 @@ public class VoiceChatConfig {
         public void setKeepAliveInterval(int keepAliveInterval) {
             this.keepAliveInterval = keepAliveInterval;
         }
+
+        /**
+         * Milliseconds without any packet from a handshaken client before its session
+         * is expired; checked once per keep-alive interval
+         */
+        public int getSessionTimeout() {
+            return sessionTimeout;
+        }
+
+        public void setSessionTimeout(int sessionTimeout) {
+            this.sessionTimeout = sessionTimeout;
+        }
+
+        public IoEngine getIoEngine() {
+            return ioEngine;
+        }
+
+        public void setIoEngine(IoEngine ioEngine) {
+            this.ioEngine = ioEngine;
+        }
+
+        public int getReceiveThreads() {
+            return receiveThreads;
+        }
+
+        public void setReceiveThreads(int receiveThreads) {
+            this.receiveThreads = receiveThreads;
+        }
+
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+
+        public int getWorkerQueueCapacity() {
+            return workerQueueCapacity;
+        }
+
+        public void setWorkerQueueCapacity(int workerQueueCapacity) {
+            this.workerQueueCapacity = workerQueueCapacity;
+        }
+
+        /**
+         * Single-threaded lanes voice frames are routed on, sharded by speaker.
+         * 0 routes on the legacy listener thread or the NIO worker pool instead.
+         */
+        public int getRoutingLanes() {
+            return routingLanes;
+        }
+
+        public void setRoutingLanes(int routingLanes) {
+            this.routingLanes = routingLanes;
+        }
+
+        /**
+         * Frames each lane can queue before new ones are dropped
+         */
+        public int getRoutingLaneCapacity() {
+            return routingLaneCapacity;
+        }
+
+        public void setRoutingLaneCapacity(int routingLaneCapacity) {
+            this.routingLaneCapacity = routingLaneCapacity;
+        }
+
+        /**
+         * Whether broadcasts to protocol v2 clients are queued and sent as one
+         * datagram per receiver every {@link #getBundleIntervalMs()}.
+         */
+        public boolean isBundleDatagrams() {
+            return bundleDatagrams;
+        }
+
+        public void setBundleDatagrams(boolean bundleDatagrams) {
+            this.bundleDatagrams = bundleDatagrams;
+        }
+
+        /**
+         * Largest bundled datagram in bytes, excluding IP and UDP headers
+         */
+        public int getBundleMtu() {
+            return bundleMtu;
+        }
+
+        public void setBundleMtu(int bundleMtu) {
+            this.bundleMtu = bundleMtu;
+        }
+
+        public int getBundleIntervalMs() {
+            return bundleIntervalMs;
+        }
+
+        public void setBundleIntervalMs(int bundleIntervalMs) {
+            this.bundleIntervalMs = bundleIntervalMs;
+        }
+
+        /**
+         * UDP receive engine: LEGACY is a single blocking DatagramSocket listener,
+         * NIO uses DatagramChannel receive threads feeding a bounded worker pool.
+         */
+        public enum IoEngine {
+            LEGACY,
+            NIO
+        }
     }
 
     public static class AudioConfig {
@@ -64,6 +181,10 @@ public class VoiceChatConfig {
         private int shoutDistance = 128;
         private float fadeStartPercent = 0.5f;
         private int bitrate = 24000;
+        private boolean silenceSuppression = true;
+        private float silenceThreshold = 0.01f;
+        private int silenceHangoverFrames = 5;
+        private int silenceForwardInterval = 25;
 
         public int getNormalDistance() {
             return normalDistance;
@@ -104,12 +225,45 @@ public class VoiceChatConfig {
         public void setBitrate(int bitrate) {
             this.bitrate = bitrate;
         }
+
+        public boolean isSilenceSuppression() {
+            return silenceSuppression;
+        }
+
+        public void setSilenceSuppression(boolean silenceSuppression) {
+            this.silenceSuppression = silenceSuppression;
+        }
+
+        public float getSilenceThreshold() {
+            return silenceThreshold;
+        }
+
+        public void setSilenceThreshold(float silenceThreshold) {
+            this.silenceThreshold = silenceThreshold;
+        }
+
+        public int getSilenceHangoverFrames() {
+            return silenceHangoverFrames;
+        }
+
+        public void setSilenceHangoverFrames(int silenceHangoverFrames) {
+            this.silenceHangoverFrames = silenceHangoverFrames;
+        }
+
+        public int getSilenceForwardInterval() {
+            return silenceForwardInterval;
+        }
+
+        public void setSilenceForwardInterval(int silenceForwardInterval) {
+            this.silenceForwardInterval = silenceForwardInterval;
+        }
     }
 
     public static class OcclusionConfig {
         private boolean enabled = true;
         private int maxBlocksChecked = 16;
         private float attenuationPerBlock = 0.15f;
+        private int cacheSize = 16384;
 
         public boolean isEnabled() {
             return enabled;
@@ -134,6 +288,14 @@ public class VoiceChatConfig {
         public void setAttenuationPerBlock(float attenuationPerBlock) {
             this.attenuationPerBlock = attenuationPerBlock;
         }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
     }
 
     public static class PerformanceConfig {
@@ -169,7 +331,12 @@ public class VoiceChatConfig {
     public static class SecurityConfig {
         private boolean enableRateLimiting = true;
         private int maxPacketsPerSecond = 100;
+        private int maxBytesPerSecond = 262144;
         private int banDuration = 300000;
+        // Handshakes must echo a stateless cookie before a session is created
+        private boolean handshakeCookies = true;
+        // Drop voice frames from clients without a session instead of fanning them out
+        private boolean requireHandshake = true;
 
         public boolean isEnableRateLimiting() {
             return enableRateLimiting;
@@ -187,6 +354,14 @@ public class VoiceChatConfig {
             this.maxPacketsPerSecond = maxPacketsPerSecond;
         }
 
+        public int getMaxBytesPerSecond() {
+            return maxBytesPerSecond;
+        }
+
+        public void setMaxBytesPerSecond(int maxBytesPerSecond) {
+            this.maxBytesPerSecond = maxBytesPerSecond;
+        }
+
         public int getBanDuration() {
             return banDuration;
         }
@@ -194,5 +369,21 @@ public class VoiceChatConfig {
         public void setBanDuration(int banDuration) {
             this.banDuration = banDuration;
         }
+
+        public boolean isHandshakeCookies() {
+            return handshakeCookies;
+        }
+
+        public void setHandshakeCookies(boolean handshakeCookies) {
+            this.handshakeCookies = handshakeCookies;
+        }
+
+        public boolean isRequireHandshake() {
+            return requireHandshake;
+        }
+
+        public void setRequireHandshake(boolean requireHandshake) {
+            this.requireHandshake = requireHandshake;
+        }
     }
 }
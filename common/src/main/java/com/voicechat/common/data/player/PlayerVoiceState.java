@@ -1,6 +1,7 @@
 package com.voicechat.common.data.player;
 
 import com.voicechat.common.network.packet.ActivationMode;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
@@ -14,7 +15,10 @@ public class PlayerVoiceState {
     private boolean deafened = false;
     private boolean occlusionEnabled = true;
     private ActivationMode activationMode = ActivationMode.PUSH_TO_TALK;
-    private final Set<UUID> mutedPlayers = new HashSet<>();
+    // Copy-on-write, so readers on other threads never see a set mid-update
+    private volatile Set<UUID> mutedPlayers = new HashSet<>();
+    // Told after every change; not persisted
+    private transient Runnable changeListener;
 
     public PlayerVoiceState(UUID playerId) {
         this.playerId = playerId;
@@ -30,6 +34,7 @@ public class PlayerVoiceState {
 
     public void setMicrophoneVolume(float vol) {
         this.microphoneVolume = vol;
+        changed();
     }
 
     public float getOutputVolume() {
@@ -38,6 +43,7 @@ public class PlayerVoiceState {
 
     public void setOutputVolume(float vol) {
         this.outputVolume = vol;
+        changed();
     }
 
     public boolean isMuted() {
@@ -46,6 +52,7 @@ public class PlayerVoiceState {
 
     public void setMuted(boolean muted) {
         this.muted = muted;
+        changed();
     }
 
     public boolean isDeafened() {
@@ -54,6 +61,7 @@ public class PlayerVoiceState {
 
     public void setDeafened(boolean deafened) {
         this.deafened = deafened;
+        changed();
     }
 
     public boolean isOcclusionEnabled() {
@@ -62,6 +70,7 @@ public class PlayerVoiceState {
 
     public void setOcclusionEnabled(boolean enabled) {
         this.occlusionEnabled = enabled;
+        changed();
     }
 
     public ActivationMode getActivationMode() {
@@ -70,21 +79,53 @@ public class PlayerVoiceState {
 
     public void setActivationMode(ActivationMode mode) {
         this.activationMode = mode;
+        changed();
     }
 
     public Set<UUID> getMutedPlayers() {
-        return mutedPlayers;
+        return Collections.unmodifiableSet(mutedPlayers);
     }
 
     public void mutePlayer(UUID id) {
-        mutedPlayers.add(id);
+        synchronized (this) {
+            if (mutedPlayers.contains(id)) {
+                return;
+            }
+            Set<UUID> updated = new HashSet<>(mutedPlayers);
+            updated.add(id);
+            mutedPlayers = updated;
+        }
+        changed();
     }
 
     public void unmutePlayer(UUID id) {
-        mutedPlayers.remove(id);
+        synchronized (this) {
+            if (!mutedPlayers.contains(id)) {
+                return;
+            }
+            Set<UUID> updated = new HashSet<>(mutedPlayers);
+            updated.remove(id);
+            mutedPlayers = updated;
+        }
+        changed();
     }
 
     public boolean isPlayerMuted(UUID id) {
         return mutedPlayers.contains(id);
     }
+
+    /**
+     * Sets the callback run after any setter or mute change, on the thread that made it.
+     * The server uses it to republish its routing snapshot.
+     */
+    public void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    private void changed() {
+        Runnable listener = changeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
 }
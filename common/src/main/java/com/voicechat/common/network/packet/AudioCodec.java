@@ -0,0 +1,35 @@
+package com.voicechat.common.network.packet;
+
+/**
+ * Payload format of a client's voice frames, announced in its handshake. Frames are
+ * only forwarded between clients that use the same codec, since neither side can
+ * tell the formats apart from the payload.
+ */
+public enum AudioCodec {
+    // libopus frames
+    OPUS((byte) 0),
+    // Raw 16-bit little-endian PCM, sent by clients without the native codec
+    PCM((byte) 1);
+
+    private final byte value;
+
+    AudioCodec(byte value) {
+        this.value = value;
+    }
+
+    public byte getValue() {
+        return value;
+    }
+
+    /**
+     * @return the codec with the wire value, or null if the value is unknown
+     */
+    public static AudioCodec fromValue(byte value) {
+        for (AudioCodec codec : values()) {
+            if (codec.value == value) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
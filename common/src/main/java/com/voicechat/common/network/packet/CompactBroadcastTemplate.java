@@ -0,0 +1,87 @@
+package com.voicechat.common.network.packet;
+
+import com.voicechat.common.network.protocol.CompactEncoding;
+import com.voicechat.common.network.protocol.PacketType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Protocol v2 counterpart of {@link VoiceBroadcastTemplate}. The speaker is named by
+ * its session id, the volume is a one-byte gain and the position is sent relative to
+ * each listener, so the per-receiver patch covers flags, gain and offsets.
+ *
+ * <p>Layout: type, session id (2), flags (1), gain (1), offset x/y/z (2 each),
+ * truncated timestamp (4), varint payload length, Opus payload.</p>
+ *
+ * <p>Not thread-safe: each routing thread should own its template.</p>
+ */
+public class CompactBroadcastTemplate {
+
+    /** Fixed bytes before the varint payload length. */
+    public static final int HEADER_SIZE = 1 + 2 + 1 + 1 + 6 + 4;
+    /** Most bytes a compact broadcast adds around its Opus payload. */
+    public static final int OVERHEAD = HEADER_SIZE + CompactEncoding.MAX_VARINT_SIZE;
+
+    static final int FLAGS_OFFSET = 3;
+    static final int GAIN_OFFSET = 4;
+    static final int POSITION_OFFSET = 5;
+    static final int TIMESTAMP_OFFSET = 11;
+    static final int FLAG_OCCLUDED = 1;
+
+    private final ByteBuffer buffer;
+    private boolean encoded;
+
+    public CompactBroadcastTemplate(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Writes the shared part of a broadcast. Copies the payload between the
+     * buffer's position and limit exactly once.
+     */
+    public void encode(int speakerSession, ByteBuffer opusData, long timestamp) {
+        int length = opusData.remaining();
+
+        buffer.clear();
+        buffer.put(PacketType.VOICE_BROADCAST_COMPACT);
+        buffer.putShort((short) speakerSession);
+        buffer.put((byte) 0);
+        buffer.put((byte) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putInt(CompactEncoding.truncateTimestamp(timestamp));
+        CompactEncoding.putVarInt(buffer, length);
+        buffer.put(buffer.position(), opusData, opusData.position(), length);
+        buffer.position(buffer.position() + length);
+
+        buffer.flip();
+        encoded = true;
+    }
+
+    /**
+     * Patches the per-receiver fields and returns the datagram, positioned for
+     * sending. The returned buffer is reused by the next call.
+     * @param offsetX speaker x minus listener x; likewise for y and z
+     */
+    public ByteBuffer forReceiver(float volume, boolean occluded, double offsetX, double offsetY, double offsetZ) {
+        if (!encoded) {
+            throw new IllegalStateException("Template has not been encoded");
+        }
+        buffer.put(FLAGS_OFFSET, (byte) (occluded ? FLAG_OCCLUDED : 0));
+        buffer.put(GAIN_OFFSET, CompactEncoding.quantizeGain(volume));
+        buffer.putShort(POSITION_OFFSET, CompactEncoding.quantizeOffset(offsetX));
+        buffer.putShort(POSITION_OFFSET + 2, CompactEncoding.quantizeOffset(offsetY));
+        buffer.putShort(POSITION_OFFSET + 4, CompactEncoding.quantizeOffset(offsetZ));
+        buffer.rewind();
+        return buffer;
+    }
+
+    public int getSize() {
+        return buffer.limit();
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+}
@@ -0,0 +1,47 @@
+package com.voicechat.common.network.packet;
+
+import com.voicechat.common.network.protocol.PacketType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stateless handshake retry. The server answers a handshake that lacks a valid
+ * cookie with this and keeps nothing; the client repeats its handshake with the
+ * cookie appended. The cookie only validates from the address it was sent to, and
+ * this reply is smaller than the handshake it answers, so a spoofed handshake
+ * neither allocates a session nor reflects more bytes than it cost.
+ */
+public class HandshakeCookiePacket extends BasePacket {
+
+    public static final int SIZE = 1 + 8;
+
+    private final long cookie;
+
+    public HandshakeCookiePacket(long cookie) {
+        this.cookie = cookie;
+    }
+
+    public long getCookie() {
+        return cookie;
+    }
+
+    @Override
+    public byte getType() {
+        return PacketType.HANDSHAKE_COOKIE;
+    }
+
+    @Override
+    public byte[] serialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        write(buffer, cookie);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the packet at the buffer's position, for senders that reuse one buffer.
+     */
+    public static void write(ByteBuffer target, long cookie) {
+        target.put(PacketType.HANDSHAKE_COOKIE); // Add type byte
+        target.putLong(cookie);
+    }
+}
@@ -0,0 +1,95 @@
+package com.voicechat.common.network.packet;
+
+import com.voicechat.common.network.protocol.PacketType;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Protocol negotiation. The client sends the highest version it speaks with a
+ * session id of 0; the server answers with the version both sides will use and,
+ * for version 2 and later, the session id that stands in for the player's UUID
+ * in compact packets. Both directions carry the client's {@link AudioCodec}; the
+ * server echoes it back, and only forwards frames between clients that share it.
+ *
+ * <p>A client request may carry the cookie from a {@link HandshakeCookiePacket},
+ * appended after the session id. Servers that check cookies only answer
+ * requests whose cookie is valid for the address they came from.</p>
+ */
+public class HandshakePacket extends BasePacket {
+
+    public static final int SIZE = 1 + 1 + 16 + 2 + 1;
+    public static final int SIZE_WITH_COOKIE = SIZE + 8;
+    // Offsets from the type byte, for screening a request before it is decoded
+    public static final int PLAYER_ID_OFFSET = 2;
+    public static final int COOKIE_OFFSET = SIZE;
+
+    private final int protocolVersion;
+    private final UUID playerId;
+    private final int sessionId;
+    private final AudioCodec codec;
+    private final long cookie;
+
+    public HandshakePacket(int protocolVersion, UUID playerId, int sessionId, AudioCodec codec) {
+        this(protocolVersion, playerId, sessionId, codec, 0);
+    }
+
+    public HandshakePacket(int protocolVersion, UUID playerId, int sessionId, AudioCodec codec, long cookie) {
+        this.protocolVersion = protocolVersion;
+        this.playerId = playerId;
+        this.sessionId = sessionId;
+        this.codec = codec;
+        this.cookie = cookie;
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * @return the assigned session id, or 0 in a client request
+     */
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @return the client's voice codec, or null if the value sent is not one this side knows
+     */
+    public AudioCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return the server's cookie echoed in a client request, or 0 if there is none
+     */
+    public long getCookie() {
+        return cookie;
+    }
+
+    @Override
+    public byte getType() {
+        return PacketType.HANDSHAKE;
+    }
+
+    @Override
+    public byte[] serialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(cookie != 0 ? SIZE_WITH_COOKIE : SIZE);
+
+        buffer.put(getType()); // Add type byte
+        buffer.put((byte) protocolVersion);
+        buffer.putLong(playerId.getMostSignificantBits());
+        buffer.putLong(playerId.getLeastSignificantBits());
+        buffer.putShort((short) sessionId);
+        buffer.put(codec.getValue());
+        if (cookie != 0) {
+            buffer.putLong(cookie);
+        }
+
+        return buffer.array();
+    }
+}
@@ -0,0 +1,51 @@
+package com.voicechat.common.network.packet;
+
+import com.voicechat.common.network.protocol.PacketType;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Liveness probe for a handshaken session. The server sends one per keep-alive
+ * interval, stamped with its own clock; the client echoes it back unchanged.
+ */
+public class KeepAlivePacket extends BasePacket {
+
+    public static final int SIZE = 1 + 16 + 8;
+
+    private final UUID playerId;
+    private final long timestamp;
+
+    public KeepAlivePacket(UUID playerId, long timestamp) {
+        this.playerId = playerId;
+        this.timestamp = timestamp;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * @return the server's clock when the probe was sent
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public byte getType() {
+        return PacketType.KEEP_ALIVE;
+    }
+
+    @Override
+    public byte[] serialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+
+        buffer.put(PacketType.KEEP_ALIVE); // Add type byte
+        buffer.putLong(playerId.getMostSignificantBits());
+        buffer.putLong(playerId.getLeastSignificantBits());
+        buffer.putLong(timestamp);
+
+        return buffer.array();
+    }
+}
@@ -0,0 +1,63 @@
+package com.voicechat.common.network.packet;
+
+import com.voicechat.common.network.protocol.PacketType;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Tells a protocol v2 client which player a session id belongs to
+ * ({@link PacketType#PLAYER_JOIN}) or that the id was released
+ * ({@link PacketType#PLAYER_LEAVE}), so compact broadcasts can be attributed.
+ */
+public class PlayerSessionPacket extends BasePacket {
+
+    public static final int SIZE = 1 + 2 + 16;
+
+    private final byte type;
+    private final int sessionId;
+    private final UUID playerId;
+
+    private PlayerSessionPacket(byte type, int sessionId, UUID playerId) {
+        this.type = type;
+        this.sessionId = sessionId;
+        this.playerId = playerId;
+    }
+
+    public static PlayerSessionPacket join(int sessionId, UUID playerId) {
+        return new PlayerSessionPacket(PacketType.PLAYER_JOIN, sessionId, playerId);
+    }
+
+    public static PlayerSessionPacket leave(int sessionId, UUID playerId) {
+        return new PlayerSessionPacket(PacketType.PLAYER_LEAVE, sessionId, playerId);
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public boolean isJoin() {
+        return type == PacketType.PLAYER_JOIN;
+    }
+
+    @Override
+    public byte getType() {
+        return type;
+    }
+
+    @Override
+    public byte[] serialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+
+        buffer.put(type); // Add type byte
+        buffer.putShort((short) sessionId);
+        buffer.putLong(playerId.getMostSignificantBits());
+        buffer.putLong(playerId.getLeastSignificantBits());
+
+        return buffer.array();
+    }
+}
@@ -8,15 +8,26 @@ import java.util.UUID;
 public class VoiceBroadcastPacket extends BasePacket {
 
     private final UUID senderId;
-    private final byte[] opusData;
+    private final ByteBuffer opusData;
     private final float volume;
     private final double posX;
     private final double posY;
     private final double posZ;
     private final boolean occluded;
+    private final long timestamp;
 
     public VoiceBroadcastPacket(UUID senderId, byte[] opusData, float volume,
-            double posX, double posY, double posZ, boolean occluded) {
+            double posX, double posY, double posZ, boolean occluded, long timestamp) {
+        this(senderId, ByteBuffer.wrap(opusData), volume, posX, posY, posZ, occluded, timestamp);
+    }
+
+    /**
+     * Creates a broadcast that references the payload between the buffer's position
+     * and limit without copying it. The buffer must stay unchanged until serialized.
+     * @param timestamp the sender's capture timestamp, relayed from its {@link VoicePacket}
+     */
+    public VoiceBroadcastPacket(UUID senderId, ByteBuffer opusData, float volume,
+            double posX, double posY, double posZ, boolean occluded, long timestamp) {
         this.senderId = senderId;
         this.opusData = opusData;
         this.volume = volume;
@@ -24,6 +35,7 @@ public class VoiceBroadcastPacket extends BasePacket {
         this.posY = posY;
         this.posZ = posZ;
         this.occluded = occluded;
+        this.timestamp = timestamp;
     }
 
     public UUID getSenderId() {
@@ -31,7 +43,24 @@ public class VoiceBroadcastPacket extends BasePacket {
     }
 
     public byte[] getOpusData() {
-        return opusData;
+        if (opusData.hasArray() && opusData.arrayOffset() == 0 && opusData.position() == 0
+                && opusData.remaining() == opusData.array().length) {
+            return opusData.array();
+        }
+        byte[] copy = new byte[opusData.remaining()];
+        opusData.get(opusData.position(), copy);
+        return copy;
+    }
+
+    /**
+     * @return a read-only view of the payload, sharing memory with this packet
+     */
+    public ByteBuffer getOpusPayload() {
+        return opusData.asReadOnlyBuffer();
+    }
+
+    public int getOpusLength() {
+        return opusData.remaining();
     }
 
     public float getVolume() {
@@ -54,26 +83,43 @@ public class VoiceBroadcastPacket extends BasePacket {
         return occluded;
     }
 
+    public long getTimestamp() {
+        return timestamp;
+    }
+
     @Override
     public byte getType() {
         return PacketType.VOICE_BROADCAST;
     }
 
+    public int getSerializedSize() {
+        return 1 + 16 + 4 + opusData.remaining() + 4 + 24 + 1 + 8;
+    }
+
     @Override
     public byte[] serialize() {
-        ByteBuffer buffer = ByteBuffer.allocate(1 + 16 + 4 + opusData.length + 4 + 24 + 1);
+        ByteBuffer buffer = ByteBuffer.allocate(getSerializedSize());
+        serialize(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes this packet into a caller-owned buffer at its current position.
+     */
+    public void serialize(ByteBuffer buffer) {
+        int length = opusData.remaining();
 
         buffer.put(getType()); // Add type byte
         buffer.putLong(senderId.getMostSignificantBits());
         buffer.putLong(senderId.getLeastSignificantBits());
-        buffer.putInt(opusData.length);
-        buffer.put(opusData);
+        buffer.putInt(length);
+        buffer.put(buffer.position(), opusData, opusData.position(), length);
+        buffer.position(buffer.position() + length);
         buffer.putFloat(volume);
         buffer.putDouble(posX);
         buffer.putDouble(posY);
         buffer.putDouble(posZ);
         buffer.put((byte) (occluded ? 1 : 0));
-
-        return buffer.array();
+        buffer.putLong(timestamp);
     }
 }
@@ -0,0 +1,78 @@
+package com.voicechat.common.network.packet;
+
+import com.voicechat.common.network.protocol.PacketType;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Serialize-once encoder for fanning one voice frame out to many receivers.
+ * The shared header and Opus payload are written once; only the per-receiver
+ * volume and occluded flag are patched in place before each send. The wire
+ * layout is identical to {@link VoiceBroadcastPacket#serialize()}.
+ *
+ * <p>Not thread-safe: each routing thread should own its template.</p>
+ */
+public class VoiceBroadcastTemplate {
+
+    /** Bytes a broadcast adds around its Opus payload. */
+    public static final int OVERHEAD = 1 + 16 + 4 + 4 + 24 + 1 + 8;
+
+    private final ByteBuffer buffer;
+    private int volumeOffset = -1;
+    private int occludedOffset = -1;
+
+    public VoiceBroadcastTemplate(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Writes the shared part of a broadcast. Copies the payload between the
+     * buffer's position and limit exactly once.
+     */
+    public void encode(UUID senderId, ByteBuffer opusData, double posX, double posY, double posZ,
+            long timestamp) {
+        int length = opusData.remaining();
+
+        buffer.clear();
+        buffer.put(PacketType.VOICE_BROADCAST);
+        buffer.putLong(senderId.getMostSignificantBits());
+        buffer.putLong(senderId.getLeastSignificantBits());
+        buffer.putInt(length);
+        buffer.put(buffer.position(), opusData, opusData.position(), length);
+        buffer.position(buffer.position() + length);
+
+        volumeOffset = buffer.position();
+        buffer.putFloat(0f);
+        buffer.putDouble(posX);
+        buffer.putDouble(posY);
+        buffer.putDouble(posZ);
+        occludedOffset = buffer.position();
+        buffer.put((byte) 0);
+        buffer.putLong(timestamp);
+
+        buffer.flip();
+    }
+
+    /**
+     * Patches the per-receiver fields and returns the datagram, positioned for
+     * sending. The returned buffer is reused by the next call.
+     */
+    public ByteBuffer forReceiver(float volume, boolean occluded) {
+        if (volumeOffset < 0) {
+            throw new IllegalStateException("Template has not been encoded");
+        }
+        buffer.putFloat(volumeOffset, volume);
+        buffer.put(occludedOffset, (byte) (occluded ? 1 : 0));
+        buffer.rewind();
+        return buffer;
+    }
+
+    public int getSize() {
+        return buffer.limit();
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+}
@@ -0,0 +1,63 @@
+package com.voicechat.common.network.packet;
+
+import com.voicechat.common.network.protocol.CompactEncoding;
+import com.voicechat.common.network.protocol.PacketType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Several datagrams for one receiver packed into one: a {@link PacketType#VOICE_BUNDLE}
+ * type byte followed by entries, each a varint length and a complete inner datagram
+ * (normally a compact broadcast).
+ */
+public final class VoiceBundle {
+
+    public static final int HEADER_SIZE = 1;
+
+    private VoiceBundle() {
+        // Utility class
+    }
+
+    /**
+     * Bytes an inner datagram of the given length takes inside a bundle
+     */
+    public static int entrySize(int datagramLength) {
+        return CompactEncoding.varIntSize(datagramLength) + datagramLength;
+    }
+
+    public static void start(ByteBuffer bundle) {
+        bundle.put(PacketType.VOICE_BUNDLE);
+    }
+
+    /**
+     * Appends the datagram between its position and limit without moving it.
+     */
+    public static void append(ByteBuffer bundle, ByteBuffer datagram) {
+        int length = datagram.remaining();
+        CompactEncoding.putVarInt(bundle, length);
+        bundle.put(bundle.position(), datagram, datagram.position(), length);
+        bundle.position(bundle.position() + length);
+    }
+
+    /**
+     * Narrows the bundle's position and limit to the entry at {@code offset}, so it
+     * can be parsed in place. Callers restore the limit to {@code end} before the
+     * next call.
+     * @return offset of the following entry, or -1 if there is none or it is malformed
+     */
+    public static int nextEntry(ByteBuffer bundle, int offset, int end) {
+        if (offset >= end) {
+            return -1;
+        }
+        int length = CompactEncoding.getVarInt(bundle, offset, end);
+        if (length <= 0) {
+            return -1;
+        }
+        int start = offset + CompactEncoding.varIntSize(length);
+        if (length > end - start) {
+            return -1;
+        }
+        bundle.limit(start + length).position(start);
+        return start + length;
+    }
+}
@@ -1,5 +1,6 @@
 package com.voicechat.common.network.packet;
 
+import com.voicechat.common.network.protocol.CompactEncoding;
 import com.voicechat.common.network.protocol.PacketType;
 
 import java.nio.ByteBuffer;
@@ -7,6 +8,9 @@ import java.util.UUID;
 
 public class VoicePacket extends BasePacket {
 
+    // type + session id + mode + truncated timestamp, before the varint length
+    public static final int COMPACT_HEADER_SIZE = 1 + 2 + 1 + 4;
+
     private final UUID senderId;
     private final byte[] opusData;
     private final VoiceMode mode;
@@ -42,16 +46,45 @@ public class VoicePacket extends BasePacket {
 
     @Override
     public byte[] serialize() {
-        ByteBuffer buffer = ByteBuffer.allocate(1 + 16 + 4 + opusData.length + 1 + 8);
+        ByteBuffer buffer = ByteBuffer.allocate(getSerializedSize(opusData.length));
+        write(buffer, senderId, opusData, 0, opusData.length, mode, timestamp);
+        return buffer.array();
+    }
+
+    public static int getSerializedSize(int opusLength) {
+        return 1 + 16 + 4 + opusLength + 1 + 8;
+    }
 
-        buffer.put(getType()); // Add type byte
+    /**
+     * Writes a voice packet into a caller-owned buffer at its current position,
+     * so senders can reuse one buffer instead of building a packet per frame.
+     */
+    public static void write(ByteBuffer buffer, UUID senderId, byte[] opusData, int offset, int length,
+            VoiceMode mode, long timestamp) {
+        buffer.put(PacketType.VOICE_DATA); // Add type byte
         buffer.putLong(senderId.getMostSignificantBits());
         buffer.putLong(senderId.getLeastSignificantBits());
-        buffer.putInt(opusData.length);
-        buffer.put(opusData);
+        buffer.putInt(length);
+        buffer.put(opusData, offset, length);
         buffer.put(mode.getValue());
         buffer.putLong(timestamp);
+    }
 
-        return buffer.array();
+    public static int getCompactSerializedSize(int opusLength) {
+        return COMPACT_HEADER_SIZE + CompactEncoding.varIntSize(opusLength) + opusLength;
+    }
+
+    /**
+     * Writes the protocol v2 form: the sender's session id replaces its UUID and the
+     * timestamp is truncated to 32 bits. See {@link CompactEncoding}.
+     */
+    public static void writeCompact(ByteBuffer buffer, int sessionId, byte[] opusData, int offset, int length,
+            VoiceMode mode, long timestamp) {
+        buffer.put(PacketType.VOICE_DATA_COMPACT); // Add type byte
+        buffer.putShort((short) sessionId);
+        buffer.put(mode.getValue());
+        buffer.putInt(CompactEncoding.truncateTimestamp(timestamp));
+        CompactEncoding.putVarInt(buffer, length);
+        buffer.put(opusData, offset, length);
     }
 }
@@ -0,0 +1,276 @@
+package com.voicechat.common.network.packet;
+
+import com.voicechat.common.network.protocol.CompactEncoding;
+import com.voicechat.common.network.protocol.PacketType;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Reusable flyweight over a serialized {@link VoicePacket} or {@link VoiceBroadcastPacket},
+ * in either the original UUID-keyed layout or the protocol v2 compact layout.
+ * Header fields are read in place and the Opus payload is exposed as a slice of the
+ * underlying buffer, so parsing copies nothing. The view never owns the buffer: it
+ * is valid only while whoever holds the buffer leaves it unchanged. On the server
+ * that is the {@code VoiceFrame} carrying the datagram, which releases the view
+ * before the frame is recycled.
+ */
+public class VoicePacketView {
+
+    // type + sender UUID + payload length
+    private static final int PREFIX_SIZE = 1 + 16 + 4;
+    // mode + timestamp
+    private static final int VOICE_TRAILER_SIZE = 1 + 8;
+    // volume + position + occluded flag + timestamp
+    private static final int BROADCAST_TRAILER_SIZE = 4 + 24 + 1 + 8;
+
+    private ByteBuffer buffer;
+    private int base;
+    private byte type;
+    private int payloadOffset;
+    private int opusLength;
+
+    /**
+     * Binds this view to the datagram between the buffer's position and limit.
+     * @return false if the datagram is not a well-formed voice or broadcast packet
+     */
+    public boolean wrap(ByteBuffer datagram) {
+        unbind();
+
+        int start = datagram.position();
+        int length = datagram.remaining();
+        if (length < 1) {
+            return false;
+        }
+
+        byte packetType = datagram.get(start);
+        if (packetType == PacketType.VOICE_DATA_COMPACT) {
+            return bindCompact(datagram, start, length, VoicePacket.COMPACT_HEADER_SIZE);
+        } else if (packetType == PacketType.VOICE_BROADCAST_COMPACT) {
+            return bindCompact(datagram, start, length, CompactBroadcastTemplate.HEADER_SIZE);
+        }
+
+        // Compact frames with a short payload are smaller than this prefix
+        if (length < PREFIX_SIZE) {
+            return false;
+        }
+        int trailer;
+        if (packetType == PacketType.VOICE_DATA) {
+            trailer = VOICE_TRAILER_SIZE;
+        } else if (packetType == PacketType.VOICE_BROADCAST) {
+            trailer = BROADCAST_TRAILER_SIZE;
+        } else {
+            return false;
+        }
+
+        int dataLength = datagram.getInt(start + 17);
+        if (dataLength < 0 || dataLength != length - PREFIX_SIZE - trailer) {
+            return false;
+        }
+
+        bind(datagram, start, packetType, start + PREFIX_SIZE, dataLength);
+        return true;
+    }
+
+    private boolean bindCompact(ByteBuffer datagram, int start, int length, int header) {
+        if (length <= header) {
+            return false;
+        }
+        int dataLength = CompactEncoding.getVarInt(datagram, start + header, start + length);
+        if (dataLength < 0) {
+            return false;
+        }
+        int payload = header + CompactEncoding.varIntSize(dataLength);
+        if (dataLength != length - payload) {
+            return false;
+        }
+
+        bind(datagram, start, datagram.get(start), start + payload, dataLength);
+        return true;
+    }
+
+    private void bind(ByteBuffer datagram, int start, byte packetType, int payload, int dataLength) {
+        this.buffer = datagram;
+        this.base = start;
+        this.type = packetType;
+        this.payloadOffset = payload;
+        this.opusLength = dataLength;
+    }
+
+    /**
+     * Unbinds the view; the buffer is left to its holder.
+     */
+    public void release() {
+        unbind();
+    }
+
+    public boolean isBound() {
+        return buffer != null;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * @return true for the protocol v2 layouts, which name the sender by session id
+     */
+    public boolean isCompact() {
+        return type == PacketType.VOICE_DATA_COMPACT || type == PacketType.VOICE_BROADCAST_COMPACT;
+    }
+
+    /**
+     * Session id of the sender (compact packets only)
+     */
+    public int getSenderSession() {
+        if (buffer == null || !isCompact()) {
+            throw new IllegalStateException("View is not bound to a compact packet");
+        }
+        return buffer.getShort(base + 1) & 0xFFFF;
+    }
+
+    public long getSenderMostSignificantBits() {
+        requireLegacy();
+        return buffer.getLong(base + 1);
+    }
+
+    public long getSenderLeastSignificantBits() {
+        requireLegacy();
+        return buffer.getLong(base + 9);
+    }
+
+    /**
+     * Materializes the sender id. Prefer {@link #isSender(UUID)} for comparisons.
+     */
+    public UUID getSenderId() {
+        return new UUID(getSenderMostSignificantBits(), getSenderLeastSignificantBits());
+    }
+
+    public boolean isSender(UUID playerId) {
+        return playerId.getMostSignificantBits() == getSenderMostSignificantBits()
+            && playerId.getLeastSignificantBits() == getSenderLeastSignificantBits();
+    }
+
+    public int getOpusLength() {
+        return opusLength;
+    }
+
+    /**
+     * @return a slice sharing the underlying buffer's memory, valid until {@link #release()}
+     */
+    public ByteBuffer getOpusData() {
+        return buffer.slice(payloadOffset, opusLength);
+    }
+
+    /**
+     * Copies the Opus payload into a caller-owned array.
+     */
+    public void copyOpusData(byte[] dst, int offset) {
+        buffer.get(payloadOffset, dst, offset, opusLength);
+    }
+
+    // VOICE_DATA fields
+
+    public VoiceMode getMode() {
+        if (buffer != null && type == PacketType.VOICE_DATA_COMPACT) {
+            return VoiceMode.fromValue(buffer.get(base + 3));
+        }
+        requireType(PacketType.VOICE_DATA);
+        return VoiceMode.fromValue(buffer.get(trailerOffset()));
+    }
+
+    /**
+     * Sender capture timestamp; broadcasts relay it from the originating voice packet.
+     * Compact packets carry the low 32 bits, extended here against the local clock.
+     */
+    public long getTimestamp() {
+        if (buffer == null) {
+            throw new IllegalStateException("View is not bound");
+        }
+        switch (type) {
+            case PacketType.VOICE_DATA_COMPACT:
+                return CompactEncoding.extendTimestamp(buffer.getInt(base + 4), System.currentTimeMillis());
+            case PacketType.VOICE_BROADCAST_COMPACT:
+                return CompactEncoding.extendTimestamp(
+                    buffer.getInt(base + CompactBroadcastTemplate.TIMESTAMP_OFFSET), System.currentTimeMillis());
+            default:
+                return buffer.getLong(trailerOffset() + (type == PacketType.VOICE_DATA ? 1 : 29));
+        }
+    }
+
+    // VOICE_BROADCAST fields
+
+    public float getVolume() {
+        if (buffer != null && type == PacketType.VOICE_BROADCAST_COMPACT) {
+            return CompactEncoding.dequantizeGain(buffer.get(base + CompactBroadcastTemplate.GAIN_OFFSET));
+        }
+        requireType(PacketType.VOICE_BROADCAST);
+        return buffer.getFloat(trailerOffset());
+    }
+
+    public double getPosX() {
+        requireType(PacketType.VOICE_BROADCAST);
+        return buffer.getDouble(trailerOffset() + 4);
+    }
+
+    public double getPosY() {
+        requireType(PacketType.VOICE_BROADCAST);
+        return buffer.getDouble(trailerOffset() + 12);
+    }
+
+    public double getPosZ() {
+        requireType(PacketType.VOICE_BROADCAST);
+        return buffer.getDouble(trailerOffset() + 20);
+    }
+
+    /**
+     * Speaker position minus the listener's (compact broadcasts only)
+     */
+    public double getOffsetX() {
+        requireType(PacketType.VOICE_BROADCAST_COMPACT);
+        return CompactEncoding.dequantizeOffset(buffer.getShort(base + CompactBroadcastTemplate.POSITION_OFFSET));
+    }
+
+    public double getOffsetY() {
+        requireType(PacketType.VOICE_BROADCAST_COMPACT);
+        return CompactEncoding.dequantizeOffset(buffer.getShort(base + CompactBroadcastTemplate.POSITION_OFFSET + 2));
+    }
+
+    public double getOffsetZ() {
+        requireType(PacketType.VOICE_BROADCAST_COMPACT);
+        return CompactEncoding.dequantizeOffset(buffer.getShort(base + CompactBroadcastTemplate.POSITION_OFFSET + 4));
+    }
+
+    public boolean isOccluded() {
+        if (buffer != null && type == PacketType.VOICE_BROADCAST_COMPACT) {
+            return (buffer.get(base + CompactBroadcastTemplate.FLAGS_OFFSET)
+                & CompactBroadcastTemplate.FLAG_OCCLUDED) != 0;
+        }
+        requireType(PacketType.VOICE_BROADCAST);
+        return buffer.get(trailerOffset() + 28) == 1;
+    }
+
+    private int trailerOffset() {
+        return payloadOffset + opusLength;
+    }
+
+    private void requireLegacy() {
+        if (buffer == null || isCompact()) {
+            throw new IllegalStateException("View is not bound to a UUID-keyed packet");
+        }
+    }
+
+    private void requireType(byte expected) {
+        if (buffer == null || type != expected) {
+            throw new IllegalStateException("View is not bound to a packet of type " + expected);
+        }
+    }
+
+    private void unbind() {
+        buffer = null;
+        base = 0;
+        type = 0;
+        payloadOffset = 0;
+        opusLength = 0;
+    }
+}
@@ -0,0 +1,97 @@
+package com.voicechat.common.network.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Field encodings used by protocol v2 packets.
+ *
+ * <ul>
+ *   <li>Lengths are unsigned LEB128 varints, at most {@link #MAX_VARINT_SIZE} bytes.</li>
+ *   <li>Gain is one unsigned byte mapping 0..255 onto 0.0..1.0.</li>
+ *   <li>Positions are speaker-minus-listener offsets in signed 16-bit fixed point,
+ *       1/{@value #OFFSET_SCALE} of a block, clamped to about ±1024 blocks.</li>
+ *   <li>Timestamps are the low 32 bits of epoch millis, re-extended by the reader
+ *       against its own clock; any clock skew under 24 days round-trips exactly.</li>
+ * </ul>
+ */
+public final class CompactEncoding {
+
+    // 21 bits covers any datagram payload
+    public static final int MAX_VARINT_SIZE = 3;
+    public static final int MAX_VARINT_VALUE = (1 << (7 * MAX_VARINT_SIZE)) - 1;
+    public static final int OFFSET_SCALE = 32;
+    public static final int MAX_SESSION_ID = 0xFFFF;
+
+    private CompactEncoding() {
+        // Utility class
+    }
+
+    public static int varIntSize(int value) {
+        if (value < 0 || value > MAX_VARINT_VALUE) {
+            throw new IllegalArgumentException("Varint out of range: " + value);
+        }
+        return value < (1 << 7) ? 1 : value < (1 << 14) ? 2 : 3;
+    }
+
+    /**
+     * Writes a varint at the buffer's position and advances it.
+     */
+    public static void putVarInt(ByteBuffer buffer, int value) {
+        varIntSize(value);
+        while (value >= 0x80) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads a varint at an absolute index without moving the buffer.
+     * Use {@link #varIntSize(int)} on the result for the number of bytes read.
+     * @return the value, or -1 if the varint is truncated, too long or not minimally encoded
+     */
+    public static int getVarInt(ByteBuffer buffer, int index, int limit) {
+        int value = 0;
+        for (int i = 0; i < MAX_VARINT_SIZE; i++) {
+            if (index + i >= limit) {
+                return -1;
+            }
+            int b = buffer.get(index + i) & 0xFF;
+            value |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                // A trailing zero group would let two encodings share a value
+                return b == 0 && i > 0 ? -1 : value;
+            }
+        }
+        return -1;
+    }
+
+    public static byte quantizeGain(float gain) {
+        return (byte) Math.round(Math.max(0f, Math.min(1f, gain)) * 255f);
+    }
+
+    public static float dequantizeGain(byte gain) {
+        return (gain & 0xFF) / 255f;
+    }
+
+    public static short quantizeOffset(double offset) {
+        long scaled = Math.round(offset * OFFSET_SCALE);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+    }
+
+    public static double dequantizeOffset(short offset) {
+        return (double) offset / OFFSET_SCALE;
+    }
+
+    public static int truncateTimestamp(long timestampMs) {
+        return (int) timestampMs;
+    }
+
+    /**
+     * @param referenceMs a clock reading close to the original timestamp, usually now
+     * @return the timestamp nearest the reference whose low 32 bits are {@code truncated}
+     */
+    public static long extendTimestamp(int truncated, long referenceMs) {
+        return referenceMs + (truncated - (int) referenceMs);
+    }
+}
@@ -9,6 +9,13 @@ public class PacketType {
     public static final byte PLAYER_LEAVE = 0x05;
     public static final byte HANDSHAKE = 0x06;
     public static final byte KEEP_ALIVE = 0x07;
+    // Protocol v2: session ids instead of UUIDs, see CompactEncoding
+    public static final byte VOICE_DATA_COMPACT = 0x08;
+    public static final byte VOICE_BROADCAST_COMPACT = 0x09;
+    // Several broadcasts for one receiver in a single datagram, see VoiceBundle
+    public static final byte VOICE_BUNDLE = 0x0A;
+    // Stateless retry asking the client to repeat its handshake with a cookie
+    public static final byte HANDSHAKE_COOKIE = 0x0B;
 
     private PacketType() {
         // Utility class
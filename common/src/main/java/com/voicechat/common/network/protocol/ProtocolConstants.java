@@ -2,7 +2,11 @@ package com.voicechat.common.network.protocol;
 
 public class ProtocolConstants {
 
-    public static final int PROTOCOL_VERSION = 1;
+    public static final int PROTOCOL_VERSION = 2;
+    // Clients that never handshake are served the original UUID-keyed format
+    public static final int LEGACY_PROTOCOL_VERSION = 1;
+    // First version with session ids and compact voice packets
+    public static final int COMPACT_PROTOCOL_VERSION = 2;
     public static final int HEADER_SIZE = 5;
     public static final int MAX_PAYLOAD_SIZE = 1019;
     public static final int MAX_PACKET_SIZE = 1024;
@@ -0,0 +1,30 @@
+package com.voicechat.common.network.serialization;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link PacketDeserializer} for a datagram that fails
+ * {@link PacketValidator}. It carries the validator's result code and records no
+ * stack trace, since the cause is always the input and never the call site.
+ */
+public class MalformedPacketException extends IOException {
+
+    private final int reason;
+
+    public MalformedPacketException(int reason) {
+        super(PacketValidator.reason(reason));
+        this.reason = reason;
+    }
+
+    /**
+     * @return the {@link PacketValidator} result code
+     */
+    public int getReason() {
+        return reason;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
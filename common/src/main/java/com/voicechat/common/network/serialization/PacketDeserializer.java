@@ -1,6 +1,11 @@
 package com.voicechat.common.network.serialization;
 
+import com.voicechat.common.network.packet.AudioCodec;
 import com.voicechat.common.network.packet.BasePacket;
+import com.voicechat.common.network.packet.HandshakeCookiePacket;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.common.network.packet.KeepAlivePacket;
+import com.voicechat.common.network.packet.PlayerSessionPacket;
 import com.voicechat.common.network.packet.VoiceBroadcastPacket;
 import com.voicechat.common.network.packet.VoiceMode;
 import com.voicechat.common.network.packet.VoicePacket;
@@ -26,6 +31,7 @@ public class PacketDeserializer {
 
     public String readString() throws IOException {
         int length = stream.readShort();
+        checkLength(length);
         byte[] bytes = new byte[length];
         stream.readFully(bytes);
         return new String(bytes);
@@ -56,6 +62,7 @@ public class PacketDeserializer {
     }
 
     public byte[] readBytes(int length) throws IOException {
+        checkLength(length);
         byte[] bytes = new byte[length];
         stream.readFully(bytes);
         return bytes;
@@ -65,27 +72,48 @@ public class PacketDeserializer {
         stream.close();
     }
 
+    // Never allocate more than the bytes left to read
+    private void checkLength(int length) throws IOException {
+        if (length < 0 || length > stream.available()) {
+            throw new MalformedPacketException(PacketValidator.BAD_LENGTH);
+        }
+    }
+
     /**
-     * Deserialize a packet from raw bytes
+     * Deserialize a packet from raw bytes. The layout is checked with
+     * {@link PacketValidator} before any field is read.
      * @param data raw packet data (including type byte)
      * @return deserialized packet
-     * @throws IOException if deserialization fails
+     * @throws MalformedPacketException if the data fails validation or is not a decodable type
      */
     public static BasePacket deserialize(byte[] data) throws IOException {
-        if (data == null || data.length < 1) {
-            throw new IOException("Invalid packet data");
+        if (data == null) {
+            throw new MalformedPacketException(PacketValidator.EMPTY);
         }
 
         ByteBuffer buffer = ByteBuffer.wrap(data);
+        int result = PacketValidator.validate(buffer);
+        if (result != PacketValidator.VALID) {
+            throw new MalformedPacketException(result);
+        }
         byte type = buffer.get();
 
         if (type == PacketType.VOICE_DATA) {
             return deserializeVoicePacket(buffer);
         } else if (type == PacketType.VOICE_BROADCAST) {
             return deserializeVoiceBroadcastPacket(buffer);
+        } else if (type == PacketType.HANDSHAKE) {
+            return deserializeHandshakePacket(buffer);
+        } else if (type == PacketType.HANDSHAKE_COOKIE) {
+            return new HandshakeCookiePacket(buffer.getLong());
+        } else if (type == PacketType.PLAYER_JOIN || type == PacketType.PLAYER_LEAVE) {
+            return deserializePlayerSessionPacket(type, buffer);
+        } else if (type == PacketType.KEEP_ALIVE) {
+            return deserializeKeepAlivePacket(buffer);
         }
 
-        throw new IOException("Unknown packet type: " + type);
+        // Valid, but only readable in place through VoicePacketView
+        throw new MalformedPacketException(PacketValidator.UNKNOWN_TYPE);
     }
 
     private static VoicePacket deserializeVoicePacket(ByteBuffer buffer) throws IOException {
@@ -119,7 +147,34 @@ public class PacketDeserializer {
         double posY = buffer.getDouble();
         double posZ = buffer.getDouble();
         boolean occluded = buffer.get() == 1;
+        long timestamp = buffer.getLong();
+
+        return new VoiceBroadcastPacket(senderId, opusData, volume, posX, posY, posZ, occluded, timestamp);
+    }
+
+    private static HandshakePacket deserializeHandshakePacket(ByteBuffer buffer) throws IOException {
+        int protocolVersion = buffer.get() & 0xFF;
+        UUID playerId = new UUID(buffer.getLong(), buffer.getLong());
+        int sessionId = buffer.getShort() & 0xFFFF;
+        AudioCodec codec = AudioCodec.fromValue(buffer.get());
+        long cookie = buffer.remaining() >= Long.BYTES ? buffer.getLong() : 0;
+
+        return new HandshakePacket(protocolVersion, playerId, sessionId, codec, cookie);
+    }
+
+    private static PlayerSessionPacket deserializePlayerSessionPacket(byte type, ByteBuffer buffer) throws IOException {
+        int sessionId = buffer.getShort() & 0xFFFF;
+        UUID playerId = new UUID(buffer.getLong(), buffer.getLong());
+
+        return type == PacketType.PLAYER_JOIN
+            ? PlayerSessionPacket.join(sessionId, playerId)
+            : PlayerSessionPacket.leave(sessionId, playerId);
+    }
+
+    private static KeepAlivePacket deserializeKeepAlivePacket(ByteBuffer buffer) throws IOException {
+        UUID playerId = new UUID(buffer.getLong(), buffer.getLong());
+        long timestamp = buffer.getLong();
 
-        return new VoiceBroadcastPacket(senderId, opusData, volume, posX, posY, posZ, occluded);
+        return new KeepAlivePacket(playerId, timestamp);
     }
 }
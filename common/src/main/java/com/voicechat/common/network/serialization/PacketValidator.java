@@ -0,0 +1,146 @@
+package com.voicechat.common.network.serialization;
+
+import com.voicechat.common.network.packet.CompactBroadcastTemplate;
+import com.voicechat.common.network.packet.HandshakeCookiePacket;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.common.network.packet.KeepAlivePacket;
+import com.voicechat.common.network.packet.PlayerSessionPacket;
+import com.voicechat.common.network.packet.VoicePacket;
+import com.voicechat.common.network.protocol.CompactEncoding;
+import com.voicechat.common.network.protocol.PacketType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Structural check of a raw datagram before anything is allocated for it. The
+ * buffer is read in place. The datagram as a whole is checked against the receiver's
+ * size limit, and every declared length against the bytes actually received.
+ * Payloads are not held to the Opus frame limit, since clients without the native
+ * codec send raw PCM frames. The outcome is an int result code rather than an
+ * exception, so a flood of malformed datagrams costs a few bounds checks each and
+ * can be counted by reason.
+ *
+ * <p>A datagram that passes is safe to hand to {@link PacketDeserializer}: no field it
+ * reads can run past the end or ask for an oversized array.</p>
+ */
+public final class PacketValidator {
+
+    public static final int VALID = 0;
+    // No type byte
+    public static final int EMPTY = 1;
+    // Not a type this protocol decodes
+    public static final int UNKNOWN_TYPE = 2;
+    // Shorter than the fixed part of its layout
+    public static final int TRUNCATED = 3;
+    // Payload length negative, badly encoded or running past the end of the datagram
+    public static final int BAD_LENGTH = 4;
+    // Longer than its layout
+    public static final int TRAILING_BYTES = 5;
+    // Larger than the receiver accepts at all
+    public static final int OVERSIZED = 6;
+    public static final int REASONS = 7;
+
+    private static final String[] REASON_NAMES = {
+        "valid", "empty", "unknown type", "truncated", "bad length", "trailing bytes", "oversized"
+    };
+
+    // type + sender UUID + payload length
+    private static final int UUID_PREFIX_SIZE = 1 + 16 + 4;
+    // mode + timestamp
+    private static final int VOICE_TRAILER_SIZE = 1 + 8;
+    // volume + position + occluded flag + timestamp
+    private static final int BROADCAST_TRAILER_SIZE = 4 + 24 + 1 + 8;
+
+    private PacketValidator() {
+        // Utility class
+    }
+
+    /**
+     * Checks the datagram between the buffer's position and limit, which are left unchanged.
+     * @param maxPacketSize largest datagram accepted, whatever its type
+     * @return {@link #VALID} or the reason the datagram must be dropped
+     */
+    public static int validate(ByteBuffer datagram, int maxPacketSize) {
+        int length = datagram.remaining();
+        if (length > maxPacketSize) {
+            return OVERSIZED;
+        }
+        return validate(datagram);
+    }
+
+    /**
+     * Checks the datagram between the buffer's position and limit, which are left unchanged.
+     * @return {@link #VALID} or the reason the datagram must be dropped
+     */
+    public static int validate(ByteBuffer datagram) {
+        int start = datagram.position();
+        int length = datagram.remaining();
+        if (length < 1) {
+            return EMPTY;
+        }
+
+        byte type = datagram.get(start);
+        switch (type) {
+            case PacketType.VOICE_DATA:
+                return checkUuidLayout(datagram, start, length, VOICE_TRAILER_SIZE);
+            case PacketType.VOICE_BROADCAST:
+                return checkUuidLayout(datagram, start, length, BROADCAST_TRAILER_SIZE);
+            case PacketType.VOICE_DATA_COMPACT:
+                return checkCompactLayout(datagram, start, length, VoicePacket.COMPACT_HEADER_SIZE);
+            case PacketType.VOICE_BROADCAST_COMPACT:
+                return checkCompactLayout(datagram, start, length, CompactBroadcastTemplate.HEADER_SIZE);
+            case PacketType.HANDSHAKE:
+                // The cookie is the only optional field
+                if (length == HandshakePacket.SIZE || length == HandshakePacket.SIZE_WITH_COOKIE) {
+                    return VALID;
+                }
+                return length < HandshakePacket.SIZE ? TRUNCATED : TRAILING_BYTES;
+            case PacketType.HANDSHAKE_COOKIE:
+                return checkFixed(length, HandshakeCookiePacket.SIZE);
+            case PacketType.PLAYER_JOIN:
+            case PacketType.PLAYER_LEAVE:
+                return checkFixed(length, PlayerSessionPacket.SIZE);
+            case PacketType.KEEP_ALIVE:
+                return checkFixed(length, KeepAlivePacket.SIZE);
+            default:
+                return UNKNOWN_TYPE;
+        }
+    }
+
+    private static int checkFixed(int length, int size) {
+        return length == size ? VALID : length < size ? TRUNCATED : TRAILING_BYTES;
+    }
+
+    private static int checkUuidLayout(ByteBuffer datagram, int start, int length, int trailer) {
+        if (length < UUID_PREFIX_SIZE + trailer) {
+            return TRUNCATED;
+        }
+        int dataLength = datagram.getInt(start + UUID_PREFIX_SIZE - 4);
+        // Compared without adding to the untrusted length, which could overflow
+        int available = length - UUID_PREFIX_SIZE - trailer;
+        if (dataLength < 0 || dataLength > available) {
+            return BAD_LENGTH;
+        }
+        return dataLength == available ? VALID : TRAILING_BYTES;
+    }
+
+    private static int checkCompactLayout(ByteBuffer datagram, int start, int length, int header) {
+        if (length <= header) {
+            return TRUNCATED;
+        }
+        int dataLength = CompactEncoding.getVarInt(datagram, start + header, start + length);
+        if (dataLength < 0) {
+            return BAD_LENGTH;
+        }
+        // A varint is at most 21 bits, so this cannot overflow
+        int expected = header + CompactEncoding.varIntSize(dataLength) + dataLength;
+        return length == expected ? VALID : length < expected ? BAD_LENGTH : TRAILING_BYTES;
+    }
+
+    /**
+     * @return a short description of a result code, for logs and metrics
+     */
+    public static String reason(int result) {
+        return result >= 0 && result < REASONS ? REASON_NAMES[result] : "unknown";
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * JNI binding between com.voicechat.common.audio.OpusCodec and libopus.
+ *
+ * Build (Linux):
+ *   gcc -O2 -shared -fPIC -I"$JAVA_HOME/include" -I"$JAVA_HOME/include/linux" \
+ *       opus_jni.c -lopus -o libvoicechat-opus.so
+ * macOS uses include/darwin and -o libvoicechat-opus.dylib; Windows builds
+ * voicechat-opus.dll against opus.lib. Place the result on java.library.path
+ * or under natives/<platform>/.
+ *
+ * Arrays are accessed with Get/ReleasePrimitiveArrayCritical and direct buffers
+ * through their addresses, so PCM and packet data are not copied between Java
+ * memory and the codec.
+ */
+#include <jni.h>
+#include <stdint.h>
+#include <opus/opus.h>
+
+#define ENCODER(handle) ((OpusEncoder *) (intptr_t) (handle))
+#define DECODER(handle) ((OpusDecoder *) (intptr_t) (handle))
+
+JNIEXPORT jlong JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeCreateEncoder(
+        JNIEnv *env, jobject self, jint sampleRate, jint channels, jint application) {
+    int error = OPUS_OK;
+    OpusEncoder *encoder = opus_encoder_create(sampleRate, channels, application, &error);
+    return error == OPUS_OK ? (jlong) (intptr_t) encoder : 0;
+}
+
+JNIEXPORT jlong JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeCreateDecoder(
+        JNIEnv *env, jobject self, jint sampleRate, jint channels) {
+    int error = OPUS_OK;
+    OpusDecoder *decoder = opus_decoder_create(sampleRate, channels, &error);
+    return error == OPUS_OK ? (jlong) (intptr_t) decoder : 0;
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeDestroyEncoder(
+        JNIEnv *env, jobject self, jlong handle) {
+    opus_encoder_destroy(ENCODER(handle));
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeDestroyDecoder(
+        JNIEnv *env, jobject self, jlong handle) {
+    opus_decoder_destroy(DECODER(handle));
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeEncoderSetBitrate(
+        JNIEnv *env, jobject self, jlong handle, jint bitrate) {
+    opus_encoder_ctl(ENCODER(handle), OPUS_SET_BITRATE(bitrate));
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeEncoderSetComplexity(
+        JNIEnv *env, jobject self, jlong handle, jint complexity) {
+    opus_encoder_ctl(ENCODER(handle), OPUS_SET_COMPLEXITY(complexity));
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeEncoderSetVBR(
+        JNIEnv *env, jobject self, jlong handle, jboolean vbr) {
+    opus_encoder_ctl(ENCODER(handle), OPUS_SET_VBR(vbr ? 1 : 0));
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeEncoderSetDTX(
+        JNIEnv *env, jobject self, jlong handle, jboolean dtx) {
+    opus_encoder_ctl(ENCODER(handle), OPUS_SET_DTX(dtx ? 1 : 0));
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeEncoderSetInbandFEC(
+        JNIEnv *env, jobject self, jlong handle, jboolean fec) {
+    opus_encoder_ctl(ENCODER(handle), OPUS_SET_INBAND_FEC(fec ? 1 : 0));
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeEncoderSetPacketLossPerc(
+        JNIEnv *env, jobject self, jlong handle, jint percentage) {
+    opus_encoder_ctl(ENCODER(handle), OPUS_SET_PACKET_LOSS_PERC(percentage));
+}
+
+JNIEXPORT jint JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeEncode(
+        JNIEnv *env, jobject self, jlong handle, jshortArray pcm, jint frameSize,
+        jbyteArray encoded, jint maxSize) {
+    jshort *in = (*env)->GetPrimitiveArrayCritical(env, pcm, NULL);
+    if (in == NULL) {
+        return OPUS_ALLOC_FAIL;
+    }
+    jbyte *out = (*env)->GetPrimitiveArrayCritical(env, encoded, NULL);
+    if (out == NULL) {
+        (*env)->ReleasePrimitiveArrayCritical(env, pcm, in, JNI_ABORT);
+        return OPUS_ALLOC_FAIL;
+    }
+
+    opus_int32 length = opus_encode(ENCODER(handle), in, frameSize, (unsigned char *) out, maxSize);
+
+    (*env)->ReleasePrimitiveArrayCritical(env, encoded, out, 0);
+    (*env)->ReleasePrimitiveArrayCritical(env, pcm, in, JNI_ABORT);
+    return length;
+}
+
+JNIEXPORT jint JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeDecode(
+        JNIEnv *env, jobject self, jlong handle, jbyteArray encoded, jint length,
+        jshortArray pcm, jint frameSize, jboolean fec) {
+    jbyte *in = NULL;
+    if (encoded != NULL && length > 0) {
+        in = (*env)->GetPrimitiveArrayCritical(env, encoded, NULL);
+        if (in == NULL) {
+            return OPUS_ALLOC_FAIL;
+        }
+    }
+    jshort *out = (*env)->GetPrimitiveArrayCritical(env, pcm, NULL);
+    if (out == NULL) {
+        if (in != NULL) {
+            (*env)->ReleasePrimitiveArrayCritical(env, encoded, in, JNI_ABORT);
+        }
+        return OPUS_ALLOC_FAIL;
+    }
+
+    // A NULL packet asks the decoder for packet loss concealment
+    int samples = opus_decode(DECODER(handle), (const unsigned char *) in, in != NULL ? length : 0,
+            out, frameSize, fec ? 1 : 0);
+
+    (*env)->ReleasePrimitiveArrayCritical(env, pcm, out, 0);
+    if (in != NULL) {
+        (*env)->ReleasePrimitiveArrayCritical(env, encoded, in, JNI_ABORT);
+    }
+    return samples;
+}
+
+JNIEXPORT jint JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeEncodeDirect(
+        JNIEnv *env, jobject self, jlong handle, jobject pcm, jint pcmPosition, jint frameSize,
+        jobject encoded, jint encodedPosition, jint maxSize) {
+    jshort *in = (*env)->GetDirectBufferAddress(env, pcm);
+    jbyte *out = (*env)->GetDirectBufferAddress(env, encoded);
+    if (in == NULL || out == NULL) {
+        return OPUS_BAD_ARG;
+    }
+    return opus_encode(ENCODER(handle), in + pcmPosition, frameSize,
+            (unsigned char *) out + encodedPosition, maxSize);
+}
+
+JNIEXPORT jint JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeDecodeDirect(
+        JNIEnv *env, jobject self, jlong handle, jobject encoded, jint encodedPosition, jint length,
+        jobject pcm, jint pcmPosition, jint frameSize, jboolean fec) {
+    const unsigned char *in = NULL;
+    if (encoded != NULL && length > 0) {
+        jbyte *address = (*env)->GetDirectBufferAddress(env, encoded);
+        if (address == NULL) {
+            return OPUS_BAD_ARG;
+        }
+        in = (const unsigned char *) address + encodedPosition;
+    }
+    jshort *out = (*env)->GetDirectBufferAddress(env, pcm);
+    if (out == NULL) {
+        return OPUS_BAD_ARG;
+    }
+    return opus_decode(DECODER(handle), in, in != NULL ? length : 0, out + pcmPosition, frameSize, fec ? 1 : 0);
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeEncoderReset(
+        JNIEnv *env, jobject self, jlong handle) {
+    opus_encoder_ctl(ENCODER(handle), OPUS_RESET_STATE);
+}
+
+JNIEXPORT void JNICALL Java_com_voicechat_common_audio_OpusCodec_nativeDecoderReset(
+        JNIEnv *env, jobject self, jlong handle) {
+    opus_decoder_ctl(DECODER(handle), OPUS_RESET_STATE);
+}
@@ -0,0 +1,298 @@
+package com.voicechat.common.network.serialization;
+
+import com.voicechat.common.network.packet.AudioCodec;
+import com.voicechat.common.network.packet.BasePacket;
+import com.voicechat.common.network.packet.CompactBroadcastTemplate;
+import com.voicechat.common.network.packet.HandshakeCookiePacket;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.common.network.packet.KeepAlivePacket;
+import com.voicechat.common.network.packet.PlayerSessionPacket;
+import com.voicechat.common.network.packet.VoiceBroadcastPacket;
+import com.voicechat.common.network.packet.VoiceMode;
+import com.voicechat.common.network.packet.VoicePacket;
+import com.voicechat.common.network.packet.VoicePacketView;
+import com.voicechat.common.network.protocol.PacketType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Truncated, oversized, mutated and random datagrams must be rejected cleanly: the
+ * validator returns a result code, the deserializer throws
+ * {@link MalformedPacketException}, {@link VoicePacketView} accepts a voice layout
+ * exactly when the validator does, and nothing is allocated for a datagram before
+ * it has passed validation.
+ */
+class PacketValidatorTest {
+
+    private static final int MAX_PACKET_SIZE = 4096;
+    private static final UUID PLAYER = new UUID(0x1234L, 0x5678L);
+    private static final int[] EXTREME_INTS = {
+        -1, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE - 20, 0, 1, 1 << 21, MAX_PACKET_SIZE
+    };
+
+    private static List<byte[]> validPackets() {
+        byte[] opus = new byte[60];
+        Arrays.fill(opus, (byte) 0x5A);
+        byte[] pcm = new byte[1920];
+        Arrays.fill(pcm, (byte) 0x11);
+
+        List<byte[]> packets = new ArrayList<>();
+        packets.add(new VoicePacket(PLAYER, opus, VoiceMode.SHOUT, 1000L).serialize());
+        packets.add(new VoicePacket(PLAYER, pcm, VoiceMode.NORMAL, 1000L).serialize());
+        packets.add(new VoiceBroadcastPacket(PLAYER, opus, 0.5f, 1, 2, 3, false, 1000L).serialize());
+        packets.add(compactVoice(opus));
+        // A DTX frame: shorter than the UUID layout's fixed prefix
+        packets.add(compactVoice(new byte[] {0x08}));
+        packets.add(compactBroadcast(opus));
+        packets.add(new HandshakePacket(2, PLAYER, 0, AudioCodec.OPUS).serialize());
+        packets.add(new HandshakePacket(2, PLAYER, 0, AudioCodec.OPUS, 42L).serialize());
+        packets.add(new HandshakeCookiePacket(42L).serialize());
+        packets.add(PlayerSessionPacket.join(7, PLAYER).serialize());
+        packets.add(PlayerSessionPacket.leave(7, PLAYER).serialize());
+        packets.add(new KeepAlivePacket(PLAYER, 1000L).serialize());
+        return packets;
+    }
+
+    private static byte[] compactVoice(byte[] opus) {
+        ByteBuffer compact = ByteBuffer.allocate(VoicePacket.getCompactSerializedSize(opus.length));
+        VoicePacket.writeCompact(compact, 7, opus, 0, opus.length, VoiceMode.NORMAL, 1000L);
+        return compact.array();
+    }
+
+    private static byte[] compactBroadcast(byte[] opus) {
+        CompactBroadcastTemplate template = new CompactBroadcastTemplate(CompactBroadcastTemplate.OVERHEAD + opus.length);
+        template.encode(7, ByteBuffer.wrap(opus), 1000L);
+        ByteBuffer broadcast = template.forReceiver(0.5f, false, 3, -2, 10);
+        byte[] data = new byte[broadcast.remaining()];
+        broadcast.get(data);
+        return data;
+    }
+
+    @Test
+    void acceptsWellFormedPackets() throws IOException {
+        for (byte[] packet : validPackets()) {
+            int result = PacketValidator.validate(ByteBuffer.wrap(packet), MAX_PACKET_SIZE);
+            assertEquals(PacketValidator.VALID, result);
+            assertCleanOutcome(packet, result);
+        }
+        assertNotNull(PacketDeserializer.deserialize(validPackets().get(0)));
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        for (byte[] packet : validPackets()) {
+            for (int length = 0; length < packet.length; length++) {
+                byte[] truncated = Arrays.copyOf(packet, length);
+                int result = PacketValidator.validate(ByteBuffer.wrap(truncated), MAX_PACKET_SIZE);
+                // A handshake without its cookie is the only well-formed prefix
+                boolean cookieless = packet[0] == PacketType.HANDSHAKE && length == HandshakePacket.SIZE;
+                if (!cookieless) {
+                    assertNotEquals(PacketValidator.VALID, result,
+                        "type " + packet[0] + " truncated to " + length + " bytes");
+                }
+                assertCleanOutcome(truncated, result);
+            }
+        }
+    }
+
+    @Test
+    void rejectsOversizedDatagrams() {
+        byte[] packet = new VoicePacket(PLAYER, new byte[MAX_PACKET_SIZE], VoiceMode.NORMAL, 0L).serialize();
+        assertEquals(PacketValidator.OVERSIZED, PacketValidator.validate(ByteBuffer.wrap(packet), MAX_PACKET_SIZE));
+    }
+
+    @Test
+    void rejectsOversizedLengthFieldWithoutAllocating() {
+        byte[] packet = new VoicePacket(PLAYER, new byte[16], VoiceMode.NORMAL, 0L).serialize();
+        // Payload length follows the type byte and sender UUID
+        ByteBuffer.wrap(packet).putInt(17, Integer.MAX_VALUE);
+
+        assertEquals(PacketValidator.BAD_LENGTH, PacketValidator.validate(ByteBuffer.wrap(packet), MAX_PACKET_SIZE));
+
+        long allocated = allocatedBytes(() -> {
+            MalformedPacketException e = assertThrows(MalformedPacketException.class,
+                () -> PacketDeserializer.deserialize(packet));
+            assertEquals(PacketValidator.BAD_LENGTH, e.getReason());
+        });
+        // A buffer wrapper and the exception, nowhere near the declared 2 GB
+        assertTrue(allocated < 64 * 1024, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void rejectsRandomDatagramsCleanly() {
+        Random random = new Random(42);
+        byte[] types = {
+            PacketType.VOICE_DATA, PacketType.VOICE_BROADCAST, PacketType.VOICE_DATA_COMPACT,
+            PacketType.VOICE_BROADCAST_COMPACT, PacketType.HANDSHAKE, PacketType.HANDSHAKE_COOKIE,
+            PacketType.PLAYER_JOIN, PacketType.KEEP_ALIVE
+        };
+
+        for (int i = 0; i < 100_000; i++) {
+            byte[] datagram = new byte[random.nextInt(MAX_PACKET_SIZE + 64)];
+            random.nextBytes(datagram);
+            // Mostly known types, so the per-layout checks are exercised too
+            if (datagram.length > 0 && random.nextInt(4) != 0) {
+                datagram[0] = types[random.nextInt(types.length)];
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(datagram);
+            int result = PacketValidator.validate(buffer, MAX_PACKET_SIZE);
+            assertEquals(0, buffer.position());
+            assertEquals(datagram.length, buffer.limit());
+            if (result != PacketValidator.OVERSIZED) {
+                assertCleanOutcome(datagram, result);
+            }
+        }
+    }
+
+    @Test
+    void rejectsMutatedPacketsCleanly() {
+        Random random = new Random(7);
+        List<byte[]> corpus = validPackets();
+        byte[] scratch = new byte[MAX_PACKET_SIZE + 64];
+
+        for (int i = 0; i < 200_000; i++) {
+            byte[] seed = corpus.get(random.nextInt(corpus.size()));
+            int length = seed.length;
+            System.arraycopy(seed, 0, scratch, 0, length);
+
+            int mutations = 1 + random.nextInt(4);
+            for (int m = 0; m < mutations; m++) {
+                length = mutate(random, scratch, length);
+            }
+
+            byte[] datagram = Arrays.copyOf(scratch, length);
+            assertCleanOutcome(datagram, PacketValidator.validate(ByteBuffer.wrap(datagram), MAX_PACKET_SIZE));
+        }
+    }
+
+    /**
+     * Applies one mutation in place: a bit flip, truncation, extension, an extreme
+     * value over a length field, or a varint continuation bit.
+     * @return the new length
+     */
+    private static int mutate(Random random, byte[] data, int length) {
+        switch (random.nextInt(5)) {
+            case 0:
+                // Sparing the type byte
+                if (length > 1) {
+                    data[1 + random.nextInt(length - 1)] ^= (byte) (1 << random.nextInt(8));
+                }
+                return length;
+            case 1:
+                return random.nextInt(length + 1);
+            case 2:
+                int extra = Math.min(1 + random.nextInt(32), data.length - length);
+                for (int i = 0; i < extra; i++) {
+                    data[length + i] = (byte) random.nextInt();
+                }
+                return length + extra;
+            case 3:
+                // The UUID layouts keep their payload length at offset 17
+                if (length >= 5) {
+                    int at = random.nextBoolean() && length >= 21 ? 17 : 1 + random.nextInt(length - 4);
+                    ByteBuffer.wrap(data).putInt(at, EXTREME_INTS[random.nextInt(EXTREME_INTS.length)]);
+                }
+                return length;
+            default:
+                // For the compact layouts' varint lengths
+                if (length > 1) {
+                    data[1 + random.nextInt(length - 1)] |= (byte) 0x80;
+                }
+                return length;
+        }
+    }
+
+    @Test
+    void validationDoesNotAllocate() {
+        List<ByteBuffer> datagrams = new ArrayList<>();
+        for (byte[] packet : validPackets()) {
+            datagrams.add(ByteBuffer.wrap(packet));
+            datagrams.add(ByteBuffer.wrap(packet, 0, packet.length / 2));
+        }
+        datagrams.add(ByteBuffer.allocate(0));
+        datagrams.add(ByteBuffer.wrap(new byte[] {(byte) 0x7F, 1, 2, 3}));
+
+        ByteBuffer[] inputs = datagrams.toArray(new ByteBuffer[0]);
+
+        Runnable validateAll = () -> {
+            for (int i = 0; i < 10_000; i++) {
+                for (int j = 0; j < inputs.length; j++) {
+                    PacketValidator.validate(inputs[j], MAX_PACKET_SIZE);
+                }
+            }
+        };
+        // Warm up, so the measured run is compiled code
+        validateAll.run();
+        // Well under one byte per call; the measurement itself may allocate a little
+        long allocated = allocatedBytes(validateAll);
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+    }
+
+    /**
+     * The deserializer and, for voice layouts, the in-place view agree with the
+     * validator, and the deserializer fails with {@link MalformedPacketException}
+     * rather than any runtime exception.
+     */
+    private static void assertCleanOutcome(byte[] datagram, int result) {
+        byte type = datagram.length > 0 ? datagram[0] : 0;
+        if (type == PacketType.VOICE_DATA || type == PacketType.VOICE_BROADCAST
+                || type == PacketType.VOICE_DATA_COMPACT || type == PacketType.VOICE_BROADCAST_COMPACT) {
+            VoicePacketView view = new VoicePacketView();
+            boolean wrapped;
+            try {
+                wrapped = view.wrap(ByteBuffer.wrap(datagram));
+            } catch (RuntimeException e) {
+                fail("VoicePacketView threw on a " + datagram.length + "-byte datagram", e);
+                return;
+            }
+            assertEquals(result == PacketValidator.VALID, wrapped,
+                "VoicePacketView disagrees with the validator (" + PacketValidator.reason(result)
+                    + ") on " + Arrays.toString(Arrays.copyOf(datagram, Math.min(datagram.length, 48))));
+        }
+
+        try {
+            BasePacket packet = PacketDeserializer.deserialize(datagram);
+            assertEquals(PacketValidator.VALID, result, "decoded a datagram the validator rejected");
+            assertNotNull(packet);
+        } catch (MalformedPacketException e) {
+            if (result != PacketValidator.VALID) {
+                assertEquals(result, e.getReason());
+            } else {
+                // Compact layouts are valid but only readable in place
+                assertEquals(PacketValidator.UNKNOWN_TYPE, e.getReason());
+            }
+        } catch (IOException | RuntimeException e) {
+            fail("unclean rejection of a " + datagram.length + "-byte datagram", e);
+        }
+    }
+
+    private static long allocatedBytes(Runnable action) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        action.run();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+}
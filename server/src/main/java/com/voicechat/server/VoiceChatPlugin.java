@@ -2,12 +2,16 @@ package com.voicechat.server;
 
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import com.voicechat.server.manager.PlayerPositionManager;
 import com.voicechat.server.manager.PlayerVoiceManager;
 import com.voicechat.server.network.VoicePacketRouter;
 import com.voicechat.server.network.VoiceServer;
+import com.voicechat.server.task.KeepAliveTask;
+import com.voicechat.server.task.PositionUpdateTask;
 import com.voicechat.server.config.ConfigManager;
 import com.voicechat.common.config.VoiceChatConfig;
 import com.voicechat.server.util.LogUtils;
+import com.voicechat.server.util.TimingWheel;
 
 import javax.annotation.Nonnull;
 import java.util.logging.Level;
@@ -15,11 +19,19 @@ import java.util.logging.Logger;
 
 public class VoiceChatPlugin extends JavaPlugin {
 
+    // 5 ms resolution; one revolution covers about 2.5 s
+    private static final int TIMER_TICK_MS = 5;
+    private static final int TIMER_WHEEL_SIZE = 512;
+
     private static VoiceChatPlugin instance;
     private ConfigManager configManager;
     private PlayerVoiceManager playerManager;
+    private PlayerPositionManager positionManager;
     private VoicePacketRouter packetRouter;
     private VoiceServer voiceServer;
+    private PositionUpdateTask positionUpdateTask;
+    private KeepAliveTask keepAliveTask;
+    private volatile TimingWheel timers;
     private volatile boolean initialized = false;
     private volatile boolean running = false;
 
@@ -49,6 +61,7 @@ public class VoiceChatPlugin extends JavaPlugin {
 
             // Initialize managers
             playerManager = new PlayerVoiceManager();
+            positionManager = new PlayerPositionManager(getConfig().getAudio().getNormalDistance());
             packetRouter = new VoicePacketRouter(this);
             voiceServer = new VoiceServer(this);
 
@@ -79,7 +92,19 @@ public class VoiceChatPlugin extends JavaPlugin {
         }
 
         try {
+            // One wheel drives the periodic tasks, egress flushes and per-session timers
+            timers = new TimingWheel("VoiceChat-Timer", TIMER_TICK_MS, TIMER_WHEEL_SIZE);
+            timers.start();
+
             voiceServer.start();
+
+            // Per-tick occlusion snapshot and audibility graph
+            positionUpdateTask = new PositionUpdateTask(this);
+            positionUpdateTask.start(timers);
+
+            keepAliveTask = new KeepAliveTask(this);
+            keepAliveTask.start(timers);
+
             running = true;
             LogUtils.info("VoiceChat plugin enabled!");
 
@@ -99,11 +124,25 @@ public class VoiceChatPlugin extends JavaPlugin {
         try {
             LogUtils.info("Shutting down VoiceChat plugin...");
 
+            if (keepAliveTask != null) {
+                keepAliveTask.stop();
+                keepAliveTask = null;
+            }
+            if (positionUpdateTask != null) {
+                positionUpdateTask.stop();
+                positionUpdateTask = null;
+            }
+
             // Stop voice server
             if (voiceServer != null && voiceServer.isRunning()) {
                 voiceServer.stop();
             }
 
+            if (timers != null) {
+                timers.stop();
+                timers = null;
+            }
+
             // Save configuration
             if (configManager != null) {
                 configManager.save();
@@ -113,6 +152,9 @@ public class VoiceChatPlugin extends JavaPlugin {
             if (playerManager != null) {
                 playerManager.clear();
             }
+            if (positionManager != null) {
+                positionManager.clear();
+            }
 
             running = false;
             LogUtils.info("VoiceChat plugin disabled!");
@@ -130,6 +172,7 @@ public class VoiceChatPlugin extends JavaPlugin {
             voiceServer = null;
             packetRouter = null;
             playerManager = null;
+            positionManager = null;
             configManager = null;
             initialized = false;
             instance = null;
@@ -143,6 +186,7 @@ public class VoiceChatPlugin extends JavaPlugin {
         LogUtils.info("Registering event listeners...");
         // Event listeners will be registered here when Hytale API is available
         // For now, we'll use the PlayerConnectionListener directly
+        // BlockChangeListener takes block changes once the world API provides them
     }
 
     private void registerCommands() {
@@ -171,6 +215,13 @@ public class VoiceChatPlugin extends JavaPlugin {
         return playerManager;
     }
 
+    public PlayerPositionManager getPositionManager() {
+        if (positionManager == null) {
+            throw new IllegalStateException("PlayerPositionManager not initialized");
+        }
+        return positionManager;
+    }
+
     public VoicePacketRouter getPacketRouter() {
         if (packetRouter == null) {
             throw new IllegalStateException("VoicePacketRouter not initialized");
@@ -178,6 +229,24 @@ public class VoiceChatPlugin extends JavaPlugin {
         return packetRouter;
     }
 
+    public VoiceServer getVoiceServer() {
+        if (voiceServer == null) {
+            throw new IllegalStateException("VoiceServer not initialized");
+        }
+        return voiceServer;
+    }
+
+    /**
+     * @throws IllegalStateException unless the plugin has been started
+     */
+    public TimingWheel getTimers() {
+        TimingWheel wheel = timers;
+        if (wheel == null) {
+            throw new IllegalStateException("Timers not started");
+        }
+        return wheel;
+    }
+
     public boolean isInitialized() {
         return initialized;
     }
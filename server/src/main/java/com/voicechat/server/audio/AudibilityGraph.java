@@ -0,0 +1,371 @@
+package com.voicechat.server.audio;
+
+import com.voicechat.common.audio.ProximityCalculator;
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.common.network.packet.VoiceMode;
+import com.voicechat.server.manager.PlayerPositionManager;
+import com.voicechat.server.manager.PlayerPositionManager.PlayerPosition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Per-tick audibility stage: for every tracked player, the receivers within the
+ * largest voice range, sorted by distance, with volumes for each voice mode, the
+ * blocked-block count and listener-relative direction precomputed. Positions only
+ * change once per tick, so the packet path just reads {@link #getEdges(UUID)}.
+ *
+ * <p>{@link #rebuild()} runs on the tick thread and is incremental: only players
+ * that moved, and players that were or now are in range of one, are recomputed.
+ * Each rebuild publishes a new immutable map with a single volatile write.</p>
+ */
+public class AudibilityGraph {
+
+    private static final VoiceMode[] MODES = VoiceMode.values();
+
+    private final Supplier<VoiceChatConfig> config;
+    private final PlayerPositionManager positionManager;
+    private final OcclusionEngine occlusionEngine;
+
+    private volatile Map<UUID, Edges> graph = Map.of();
+
+    // Tick thread only: inputs the current graph was built from
+    private Map<UUID, PlayerPosition> builtPositions = Map.of();
+    private int builtRange = -1;
+    private int builtWhisper;
+    private int builtNormal;
+    private int builtShout;
+    private boolean builtOcclusion;
+    private float builtAttenuation;
+    private int builtMaxBlocks;
+    private long builtSnapshotVersion;
+    private final PlayerPositionManager.NearbyPlayers nearby = new PlayerPositionManager.NearbyPlayers();
+
+    private long speakersRecomputed;
+
+    public AudibilityGraph(Supplier<VoiceChatConfig> config, PlayerPositionManager positionManager,
+            OcclusionEngine occlusionEngine) {
+        this.config = config;
+        this.positionManager = positionManager;
+        this.occlusionEngine = occlusionEngine;
+    }
+
+    /**
+     * @return the speaker's audible receivers as of the last tick, or null if the
+     * speaker was not tracked then
+     */
+    public Edges getEdges(UUID speakerId) {
+        return graph.get(speakerId);
+    }
+
+    /**
+     * Recomputes the edges affected by movement since the last call and publishes
+     * the result. Everything is recomputed when voice ranges, occlusion settings or
+     * blocks inside the occlusion snapshot changed.
+     */
+    public void rebuild() {
+        VoiceChatConfig current = config.get();
+        VoiceChatConfig.AudioConfig audio = current.getAudio();
+        VoiceChatConfig.OcclusionConfig occlusion = current.getOcclusion();
+        int range = Math.max(audio.getNormalDistance(), Math.max(audio.getWhisperDistance(), audio.getShoutDistance()));
+        long snapshotVersion = occlusionEngine.getSnapshotVersion();
+
+        boolean full = range != builtRange
+            || audio.getWhisperDistance() != builtWhisper
+            || audio.getNormalDistance() != builtNormal
+            || audio.getShoutDistance() != builtShout
+            || occlusion.isEnabled() != builtOcclusion
+            || occlusion.getAttenuationPerBlock() != builtAttenuation
+            || occlusion.getMaxBlocksChecked() != builtMaxBlocks
+            || snapshotVersion != builtSnapshotVersion;
+
+        Map<UUID, PlayerPosition> positions = new HashMap<>();
+        for (PlayerPosition position : positionManager.getAllPositions()) {
+            positions.put(position.playerId, position);
+        }
+
+        Map<UUID, Edges> previous = graph;
+        Set<UUID> affected = new HashSet<>();
+        if (full) {
+            affected.addAll(positions.keySet());
+        } else {
+            Set<UUID> moved = new HashSet<>();
+            for (PlayerPosition position : positions.values()) {
+                PlayerPosition before = builtPositions.get(position.playerId);
+                if (before == null || !samePlace(before, position)) {
+                    moved.add(position.playerId);
+                }
+            }
+            for (UUID playerId : builtPositions.keySet()) {
+                if (!positions.containsKey(playerId)) {
+                    moved.add(playerId);
+                }
+            }
+            if (moved.isEmpty()) {
+                return;
+            }
+
+            for (UUID playerId : moved) {
+                affected.add(playerId);
+                // Range is symmetric, so a player's old receivers are the speakers that heard it
+                Edges before = previous.get(playerId);
+                if (before != null) {
+                    affected.addAll(Arrays.asList(before.receivers));
+                }
+                PlayerPosition now = positions.get(playerId);
+                if (now != null) {
+                    int count = positionManager.findPlayersNear(now.world, now.x, now.y, now.z, range, nearby);
+                    for (int i = 0; i < count; i++) {
+                        affected.add(nearby.getPlayer(i));
+                    }
+                }
+            }
+        }
+
+        Map<UUID, Edges> next = new HashMap<>(positions.size() * 2);
+        int recomputed = 0;
+        for (PlayerPosition position : positions.values()) {
+            Edges edges = previous.get(position.playerId);
+            if (edges == null || affected.contains(position.playerId)) {
+                edges = computeEdges(position, range, audio, occlusion);
+                recomputed++;
+            }
+            next.put(position.playerId, edges);
+        }
+
+        graph = next;
+        builtPositions = positions;
+        builtRange = range;
+        builtWhisper = audio.getWhisperDistance();
+        builtNormal = audio.getNormalDistance();
+        builtShout = audio.getShoutDistance();
+        builtOcclusion = occlusion.isEnabled();
+        builtAttenuation = occlusion.getAttenuationPerBlock();
+        builtMaxBlocks = occlusion.getMaxBlocksChecked();
+        builtSnapshotVersion = snapshotVersion;
+        speakersRecomputed += recomputed;
+    }
+
+    private Edges computeEdges(PlayerPosition speaker, int range, VoiceChatConfig.AudioConfig audio,
+            VoiceChatConfig.OcclusionConfig occlusion) {
+        int found = positionManager.findPlayersNear(speaker.world, speaker.x, speaker.y, speaker.z, range, nearby);
+        List<Integer> order = new ArrayList<>(found);
+        double[] distancesSquared = new double[found];
+        for (int i = 0; i < found; i++) {
+            double dx = speaker.x - nearby.getX(i);
+            double dy = speaker.y - nearby.getY(i);
+            double dz = speaker.z - nearby.getZ(i);
+            distancesSquared[i] = dx * dx + dy * dy + dz * dz;
+            if (!nearby.getPlayer(i).equals(speaker.playerId)) {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparingDouble(i -> distancesSquared[i]));
+
+        int count = order.size();
+        Edges edges = new Edges(speaker, range, count);
+        for (int i = 0; i < count; i++) {
+            int receiver = order.get(i);
+            double receiverX = nearby.getX(receiver);
+            double receiverY = nearby.getY(receiver);
+            double receiverZ = nearby.getZ(receiver);
+            double dx = speaker.x - receiverX;
+            double dy = speaker.y - receiverY;
+            double dz = speaker.z - receiverZ;
+            double distance = Math.sqrt(distancesSquared[receiver]);
+
+            int blocked = occlusion.isEnabled()
+                ? occlusionEngine.countBlockedBlocks(speaker.x, speaker.y, speaker.z, receiverX, receiverY, receiverZ)
+                : 0;
+
+            edges.receivers[i] = nearby.getPlayer(receiver);
+            edges.distances[i] = distance;
+            edges.blockedBlocks[i] = blocked;
+            edges.offsets[i * 3] = (float) dx;
+            edges.offsets[i * 3 + 1] = (float) dy;
+            edges.offsets[i * 3 + 2] = (float) dz;
+            // Direction from listener to speaker
+            edges.azimuths[i] = distance == 0 ? 0f : (float) Math.toDegrees(Math.atan2(dx, dz));
+            edges.elevations[i] = distance == 0 ? 0f : (float) Math.toDegrees(Math.asin(dy / distance));
+
+            for (VoiceMode mode : MODES) {
+                float volume = ProximityCalculator.calculateVolume(distance, getDistance(mode, audio));
+                int slot = mode.ordinal() * count + i;
+                edges.volumes[slot] = volume;
+                edges.occludedVolumes[slot] = ProximityCalculator.applyOcclusion(
+                    volume, blocked, occlusion.getAttenuationPerBlock());
+            }
+        }
+        return edges;
+    }
+
+    private static boolean samePlace(PlayerPosition a, PlayerPosition b) {
+        return a.x == b.x && a.y == b.y && a.z == b.z && a.isSameWorld(b);
+    }
+
+    /**
+     * Hearing distance of a voice mode under the given configuration.
+     */
+    public static int getDistance(VoiceMode mode, VoiceChatConfig.AudioConfig audio) {
+        return switch (mode) {
+            case WHISPER -> audio.getWhisperDistance();
+            case SHOUT -> audio.getShoutDistance();
+            default -> audio.getNormalDistance();
+        };
+    }
+
+    public int getSpeakerCount() {
+        return graph.size();
+    }
+
+    /**
+     * Total speaker edge lists recomputed across all rebuilds
+     */
+    public long getSpeakersRecomputed() {
+        return speakersRecomputed;
+    }
+
+    /**
+     * Immutable receiver list of one speaker, nearest first.
+     */
+    public static final class Edges {
+        private final UUID speakerId;
+        private final String world;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final int range;
+        private final UUID[] receivers;
+        private final double[] distances;
+        private final int[] blockedBlocks;
+        private final float[] azimuths;
+        private final float[] elevations;
+        // Speaker minus receiver position, three per receiver
+        private final float[] offsets;
+        // Indexed by mode ordinal * size + receiver index
+        private final float[] volumes;
+        private final float[] occludedVolumes;
+
+        private Edges(PlayerPosition speaker, int range, int count) {
+            this.speakerId = speaker.playerId;
+            this.world = speaker.world;
+            this.x = speaker.x;
+            this.y = speaker.y;
+            this.z = speaker.z;
+            this.range = range;
+            this.receivers = new UUID[count];
+            this.distances = new double[count];
+            this.blockedBlocks = new int[count];
+            this.azimuths = new float[count];
+            this.elevations = new float[count];
+            this.offsets = new float[count * 3];
+            this.volumes = new float[MODES.length * count];
+            this.occludedVolumes = new float[MODES.length * count];
+        }
+
+        public UUID getSpeakerId() {
+            return speakerId;
+        }
+
+        public String getWorld() {
+            return world;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public double getZ() {
+            return z;
+        }
+
+        public int size() {
+            return receivers.length;
+        }
+
+        /**
+         * Distance the receivers were searched within; anyone farther is missing
+         */
+        public int getRange() {
+            return range;
+        }
+
+        /**
+         * @return number of leading receivers strictly closer than the distance
+         */
+        public int countWithin(double maxDistance) {
+            int low = 0;
+            int high = distances.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (distances[mid] < maxDistance) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        public UUID getReceiver(int index) {
+            return receivers[index];
+        }
+
+        public double getDistance(int index) {
+            return distances[index];
+        }
+
+        public int getBlockedBlocks(int index) {
+            return blockedBlocks[index];
+        }
+
+        /**
+         * Horizontal angle from listener to speaker in degrees (-180 to 180)
+         */
+        public float getAzimuth(int index) {
+            return azimuths[index];
+        }
+
+        /**
+         * Vertical angle from listener to speaker in degrees (-90 to 90)
+         */
+        public float getElevation(int index) {
+            return elevations[index];
+        }
+
+        /**
+         * Speaker x minus receiver x
+         */
+        public float getOffsetX(int index) {
+            return offsets[index * 3];
+        }
+
+        public float getOffsetY(int index) {
+            return offsets[index * 3 + 1];
+        }
+
+        public float getOffsetZ(int index) {
+            return offsets[index * 3 + 2];
+        }
+
+        /**
+         * @param occluded whether occlusion attenuation applies for this receiver
+         */
+        public float getVolume(int index, VoiceMode mode, boolean occluded) {
+            int slot = mode.ordinal() * receivers.length + index;
+            return occluded ? occludedVolumes[slot] : volumes[slot];
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.voicechat.server.audio;
+
+/**
+ * Read-only view of world solidity used by occlusion raycasts.
+ */
+@FunctionalInterface
+public interface BlockAccess {
+
+    boolean isSolid(int x, int y, int z);
+}
@@ -0,0 +1,124 @@
+package com.voicechat.server.audio;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable set of {@link ChunkSnapshot}s published once per tick. Lookups go through
+ * a flat open-addressed table keyed by packed chunk coordinates, so raycasts on
+ * routing threads never touch the live world or take a lock. Blocks in chunks that
+ * were not captured read as air.
+ */
+public final class BlockSnapshot implements BlockAccess {
+
+    public static final BlockSnapshot EMPTY = new Builder().build();
+
+    private static final long COORD_MASK = 0x1FFFFFL;
+
+    private final long[] keys;
+    private final ChunkSnapshot[] chunks;
+    private final int mask;
+    private final int size;
+
+    private BlockSnapshot(Map<Long, ChunkSnapshot> captured) {
+        // Load factor of at most one half keeps probe chains short
+        int capacity = Integer.highestOneBit(Math.max(4, captured.size() * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.chunks = new ChunkSnapshot[capacity];
+        this.mask = capacity - 1;
+        this.size = captured.size();
+
+        for (Map.Entry<Long, ChunkSnapshot> entry : captured.entrySet()) {
+            long key = entry.getKey();
+            int slot = mix(key) & mask;
+            while (chunks[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            chunks[slot] = entry.getValue();
+        }
+    }
+
+    /**
+     * @return the captured chunk, or null if this snapshot does not cover it
+     */
+    public ChunkSnapshot getChunk(int chunkX, int chunkY, int chunkZ) {
+        long key = chunkKey(chunkX, chunkY, chunkZ);
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            ChunkSnapshot chunk = chunks[slot];
+            if (chunk == null || keys[slot] == key) {
+                return chunk;
+            }
+        }
+    }
+
+    /**
+     * @return the captured chunk, or {@link ChunkSnapshot#EMPTY} if not covered
+     */
+    public ChunkSnapshot chunkAt(int chunkX, int chunkY, int chunkZ) {
+        ChunkSnapshot chunk = getChunk(chunkX, chunkY, chunkZ);
+        return chunk != null ? chunk : ChunkSnapshot.EMPTY;
+    }
+
+    @Override
+    public boolean isSolid(int x, int y, int z) {
+        return chunkAt(x >> ChunkSnapshot.SHIFT, y >> ChunkSnapshot.SHIFT, z >> ChunkSnapshot.SHIFT)
+            .isSolid(x, y, z);
+    }
+
+    /**
+     * Number of chunks covered by this snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Packs chunk coordinates (21 bits each) into one key.
+     */
+    public static long chunkKey(int chunkX, int chunkY, int chunkZ) {
+        return (chunkX & COORD_MASK) << 42 | (chunkY & COORD_MASK) << 21 | (chunkZ & COORD_MASK);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Collects chunks for the next snapshot. Not thread-safe; used by the tick thread.
+     */
+    public static class Builder {
+
+        private final Map<Long, ChunkSnapshot> captured = new HashMap<>();
+
+        public Builder put(int chunkX, int chunkY, int chunkZ, ChunkSnapshot chunk) {
+            captured.put(chunkKey(chunkX, chunkY, chunkZ), chunk);
+            return this;
+        }
+
+        public boolean contains(int chunkX, int chunkY, int chunkZ) {
+            return captured.containsKey(chunkKey(chunkX, chunkY, chunkZ));
+        }
+
+        public BlockSnapshot build() {
+            return new BlockSnapshot(captured);
+        }
+    }
+
+    /**
+     * Captures every chunk overlapping the given block bounds (inclusive).
+     */
+    public static BlockSnapshot capture(BlockAccess world, int minX, int minY, int minZ,
+            int maxX, int maxY, int maxZ) {
+        Builder builder = new Builder();
+        for (int cy = minY >> ChunkSnapshot.SHIFT; cy <= maxY >> ChunkSnapshot.SHIFT; cy++) {
+            for (int cz = minZ >> ChunkSnapshot.SHIFT; cz <= maxZ >> ChunkSnapshot.SHIFT; cz++) {
+                for (int cx = minX >> ChunkSnapshot.SHIFT; cx <= maxX >> ChunkSnapshot.SHIFT; cx++) {
+                    builder.put(cx, cy, cz, ChunkSnapshot.capture(world, cx, cy, cz));
+                }
+            }
+        }
+        return builder.build();
+    }
+}
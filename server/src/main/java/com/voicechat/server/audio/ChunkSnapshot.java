@@ -0,0 +1,60 @@
+package com.voicechat.server.audio;
+
+/**
+ * Immutable solidity bitset of one 16x16x16 chunk section, captured from the live
+ * world once and then read by any number of routing threads.
+ */
+public final class ChunkSnapshot {
+
+    public static final int SHIFT = 4;
+    public static final int SIZE = 1 << SHIFT;
+    private static final int LOCAL_MASK = SIZE - 1;
+
+    /** Shared snapshot of a chunk with no solid blocks. */
+    public static final ChunkSnapshot EMPTY = new ChunkSnapshot(new long[SIZE * SIZE * SIZE / 64]);
+
+    // Bit index is (y * SIZE + z) * SIZE + x
+    private final long[] bits;
+
+    private ChunkSnapshot(long[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Reads every block of the chunk at the given chunk coordinates.
+     * Chunks without solid blocks all return {@link #EMPTY}.
+     */
+    public static ChunkSnapshot capture(BlockAccess world, int chunkX, int chunkY, int chunkZ) {
+        int baseX = chunkX << SHIFT;
+        int baseY = chunkY << SHIFT;
+        int baseZ = chunkZ << SHIFT;
+
+        long[] bits = null;
+        int index = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++, index++) {
+                    if (world.isSolid(baseX + x, baseY + y, baseZ + z)) {
+                        if (bits == null) {
+                            bits = new long[EMPTY.bits.length];
+                        }
+                        bits[index >>> 6] |= 1L << index;
+                    }
+                }
+            }
+        }
+        return bits == null ? EMPTY : new ChunkSnapshot(bits);
+    }
+
+    /**
+     * @param x world or local block coordinate; only the low four bits are used
+     */
+    public boolean isSolid(int x, int y, int z) {
+        int index = (((y & LOCAL_MASK) << SHIFT | (z & LOCAL_MASK)) << SHIFT) | (x & LOCAL_MASK);
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+}
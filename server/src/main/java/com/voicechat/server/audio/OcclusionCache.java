@@ -0,0 +1,263 @@
+package com.voicechat.server.audio;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of blocked-block counts keyed by the block coordinates of both ray
+ * endpoints. Entries are grouped into 4-way sets, each set evicting by CLOCK (second
+ * chance), and each of a fixed number of lock stripes guards every 64th set.
+ *
+ * <p>Invalidation is region based: an entry is dropped when a changed chunk lies
+ * inside the chunk bounds of its two endpoints, which contain the whole ray. Callers
+ * read {@link #getGeneration()} before tracing and pass it to {@link #put}, so a
+ * result traced against an older snapshot is never stored after an invalidation.</p>
+ */
+public class OcclusionCache {
+
+    private static final int WAYS = 4;
+    private static final int STRIPES = 64;
+    private static final int EMPTY = -1;
+    private static final long COORD_MASK = 0x1FFFFFL;
+
+    private final int setMask;
+    // Two keys per entry: the packed block coordinates of each endpoint
+    private final long[] keys;
+    private final int[] values;
+    private final boolean[] referenced;
+    private final int[] hands;
+    private final Object[] locks = new Object[STRIPES];
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param capacity maximum number of entries, rounded up to a power of two
+     */
+    public OcclusionCache(int capacity) {
+        int sets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS - 1)) << 1;
+        this.setMask = sets - 1;
+        this.keys = new long[sets * WAYS * 2];
+        this.values = new int[sets * WAYS];
+        this.referenced = new boolean[sets * WAYS];
+        this.hands = new int[sets];
+        Arrays.fill(values, EMPTY);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return the cached count for the ray between the two blocks, or -1 on a miss
+     */
+    public int get(int x1, int y1, int z1, int x2, int y2, int z2) {
+        long a = blockKey(x1, y1, z1);
+        long b = blockKey(x2, y2, z2);
+        // The ray is the same in both directions
+        if (a > b) {
+            long swap = a;
+            a = b;
+            b = swap;
+        }
+
+        int set = setOf(a, b);
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int entry = find(set, a, b);
+            if (entry >= 0) {
+                referenced[entry] = true;
+                hits.increment();
+                return values[entry];
+            }
+        }
+        misses.increment();
+        return EMPTY;
+    }
+
+    /**
+     * Stores a traced count unless the cache was invalidated since {@code generation}
+     * was read.
+     */
+    public void put(int x1, int y1, int z1, int x2, int y2, int z2, int blockedCount, long generation) {
+        long a = blockKey(x1, y1, z1);
+        long b = blockKey(x2, y2, z2);
+        if (a > b) {
+            long swap = a;
+            a = b;
+            b = swap;
+        }
+
+        int set = setOf(a, b);
+        synchronized (locks[set & (STRIPES - 1)]) {
+            if (generation != this.generation.get()) {
+                return;
+            }
+
+            int entry = find(set, a, b);
+            if (entry < 0) {
+                entry = victim(set);
+            }
+            keys[entry * 2] = a;
+            keys[entry * 2 + 1] = b;
+            values[entry] = blockedCount;
+            referenced[entry] = false;
+        }
+    }
+
+    private int find(int set, long a, long b) {
+        int base = set * WAYS;
+        for (int way = 0; way < WAYS; way++) {
+            int entry = base + way;
+            if (values[entry] != EMPTY && keys[entry * 2] == a && keys[entry * 2 + 1] == b) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Picks a free way, otherwise sweeps the set's clock hand past referenced
+     * entries (clearing their bit) to the first unreferenced one.
+     */
+    private int victim(int set) {
+        int base = set * WAYS;
+        for (int way = 0; way < WAYS; way++) {
+            if (values[base + way] == EMPTY) {
+                return base + way;
+            }
+        }
+
+        int hand = hands[set];
+        while (referenced[base + hand]) {
+            referenced[base + hand] = false;
+            hand = (hand + 1) % WAYS;
+        }
+        hands[set] = (hand + 1) % WAYS;
+        evictions.increment();
+        return base + hand;
+    }
+
+    /**
+     * Drops every entry whose ray may pass through one of the changed chunks.
+     * @param chunkKeys keys from {@link BlockSnapshot#chunkKey}
+     */
+    public void invalidateChunks(Collection<Long> chunkKeys) {
+        if (chunkKeys.isEmpty()) {
+            return;
+        }
+
+        int count = chunkKeys.size();
+        int[] chunks = new int[count * 3];
+        int i = 0;
+        for (long key : chunkKeys) {
+            chunks[i++] = unpackX(key);
+            chunks[i++] = unpackY(key);
+            chunks[i++] = unpackZ(key);
+        }
+
+        generation.incrementAndGet();
+
+        for (int set = 0; set <= setMask; set++) {
+            synchronized (locks[set & (STRIPES - 1)]) {
+                for (int entry = set * WAYS; entry < (set + 1) * WAYS; entry++) {
+                    if (values[entry] != EMPTY && crossesAny(entry, chunks)) {
+                        values[entry] = EMPTY;
+                        invalidations.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean crossesAny(int entry, int[] chunks) {
+        long a = keys[entry * 2];
+        long b = keys[entry * 2 + 1];
+        int ax = unpackX(a) >> ChunkSnapshot.SHIFT, bx = unpackX(b) >> ChunkSnapshot.SHIFT;
+        int ay = unpackY(a) >> ChunkSnapshot.SHIFT, by = unpackY(b) >> ChunkSnapshot.SHIFT;
+        int az = unpackZ(a) >> ChunkSnapshot.SHIFT, bz = unpackZ(b) >> ChunkSnapshot.SHIFT;
+        int minX = Math.min(ax, bx), maxX = Math.max(ax, bx);
+        int minY = Math.min(ay, by), maxY = Math.max(ay, by);
+        int minZ = Math.min(az, bz), maxZ = Math.max(az, bz);
+
+        for (int i = 0; i < chunks.length; i += 3) {
+            if (chunks[i] >= minX && chunks[i] <= maxX
+                    && chunks[i + 1] >= minY && chunks[i + 1] <= maxY
+                    && chunks[i + 2] >= minZ && chunks[i + 2] <= maxZ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops every entry, e.g. after {@code maxBlocksChecked} changes.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        for (int set = 0; set <= setMask; set++) {
+            synchronized (locks[set & (STRIPES - 1)]) {
+                for (int entry = set * WAYS; entry < (set + 1) * WAYS; entry++) {
+                    values[entry] = EMPTY;
+                }
+            }
+        }
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    private int setOf(long a, long b) {
+        long h = (a * 0x9E3779B97F4A7C15L) ^ (b * 0xC2B2AE3D27D4EB4FL);
+        return (int) (h ^ (h >>> 32)) & setMask;
+    }
+
+    private static long blockKey(int x, int y, int z) {
+        return (x & COORD_MASK) << 42 | (y & COORD_MASK) << 21 | (z & COORD_MASK);
+    }
+
+    private static int unpackX(long key) {
+        return (int) ((key << 1) >> 43);
+    }
+
+    private static int unpackY(long key) {
+        return (int) ((key << 22) >> 43);
+    }
+
+    private static int unpackZ(long key) {
+        return (int) ((key << 43) >> 43);
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return hits over lookups, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+}
@@ -1,58 +1,257 @@
 package com.voicechat.server.audio;
 
+import com.voicechat.common.config.VoiceChatConfig;
 import com.voicechat.server.VoiceChatPlugin;
+import com.voicechat.server.manager.PlayerPositionManager.PlayerPosition;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Counts solid blocks between speaker and listener. Raycasts read an immutable
+ * {@link BlockSnapshot} refreshed once per tick from the live world, so any number
+ * of routing threads can trace without touching world state. Results are cached per
+ * endpoint block pair until a chunk on the ray changes.
+ */
 public class OcclusionEngine {
 
-    private final VoiceChatPlugin plugin;
+    private final Supplier<VoiceChatConfig.OcclusionConfig> config;
+    private final BlockAccess blocks;
+    private final Set<Long> dirtyChunks = ConcurrentHashMap.newKeySet();
+    private volatile BlockSnapshot snapshot = BlockSnapshot.EMPTY;
+    // Null when caching is disabled (cacheSize 0)
+    private final OcclusionCache cache;
+    private volatile int cachedMaxBlocks;
+    // Bumped whenever already-covered blocks may have changed
+    private volatile long snapshotVersion;
 
     public OcclusionEngine(VoiceChatPlugin plugin) {
-        this.plugin = plugin;
+        // TODO: Check via Hytale world API
+        this(() -> plugin.getConfig().getOcclusion(), (x, y, z) -> false);
+    }
+
+    /**
+     * @param blocks live world, read only while capturing snapshots
+     */
+    public OcclusionEngine(Supplier<VoiceChatConfig.OcclusionConfig> config, BlockAccess blocks) {
+        this.config = config;
+        this.blocks = blocks;
+
+        VoiceChatConfig.OcclusionConfig occlusion = config.get();
+        this.cache = occlusion.getCacheSize() > 0 ? new OcclusionCache(occlusion.getCacheSize()) : null;
+        this.cachedMaxBlocks = occlusion.getMaxBlocksChecked();
+    }
+
+    /**
+     * Publishes a snapshot covering every chunk within the radius of a listener.
+     * Chunks already in the previous snapshot are reused unless invalidated since,
+     * so a tick only reads the world for new or changed chunks.
+     */
+    public void refreshSnapshot(Collection<PlayerPosition> listeners, double radius) {
+        BlockSnapshot previous = snapshot;
+        Set<Long> dirty = drainDirtyChunks();
+        BlockSnapshot.Builder builder = new BlockSnapshot.Builder();
+
+        for (PlayerPosition position : listeners) {
+            int minX = (int) Math.floor(position.x - radius) >> ChunkSnapshot.SHIFT;
+            int minY = (int) Math.floor(position.y - radius) >> ChunkSnapshot.SHIFT;
+            int minZ = (int) Math.floor(position.z - radius) >> ChunkSnapshot.SHIFT;
+            int maxX = (int) Math.floor(position.x + radius) >> ChunkSnapshot.SHIFT;
+            int maxY = (int) Math.floor(position.y + radius) >> ChunkSnapshot.SHIFT;
+            int maxZ = (int) Math.floor(position.z + radius) >> ChunkSnapshot.SHIFT;
+
+            for (int cy = minY; cy <= maxY; cy++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    for (int cx = minX; cx <= maxX; cx++) {
+                        if (builder.contains(cx, cy, cz)) {
+                            continue;
+                        }
+                        ChunkSnapshot chunk = previous.getChunk(cx, cy, cz);
+                        if (chunk == null || dirty.contains(BlockSnapshot.chunkKey(cx, cy, cz))) {
+                            chunk = ChunkSnapshot.capture(blocks, cx, cy, cz);
+                        }
+                        builder.put(cx, cy, cz, chunk);
+                    }
+                }
+            }
+        }
+
+        snapshot = builder.build();
+
+        // After publishing, so a trace that misses the invalidation cannot store a stale count
+        if (cache != null) {
+            cache.invalidateChunks(dirty);
+        }
+        if (!dirty.isEmpty()) {
+            snapshotVersion++;
+        }
+    }
+
+    private Set<Long> drainDirtyChunks() {
+        if (dirtyChunks.isEmpty()) {
+            return Set.of();
+        }
+        Set<Long> drained = new HashSet<>();
+        for (Iterator<Long> it = dirtyChunks.iterator(); it.hasNext(); ) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+
+    /**
+     * Marks the chunk holding a changed block for recapture on the next refresh.
+     * Called from {@code BlockChangeListener}; inert until the world API feeds it.
+     */
+    public void invalidateBlock(int x, int y, int z) {
+        dirtyChunks.add(BlockSnapshot.chunkKey(x >> ChunkSnapshot.SHIFT, y >> ChunkSnapshot.SHIFT, z >> ChunkSnapshot.SHIFT));
+    }
+
+    public void setSnapshot(BlockSnapshot snapshot) {
+        this.snapshot = snapshot != null ? snapshot : BlockSnapshot.EMPTY;
+        if (cache != null) {
+            cache.clear();
+        }
+        snapshotVersion++;
+    }
+
+    public BlockSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Changes when blocks inside the covered area may have changed, so results
+     * derived from earlier raycasts should be recomputed.
+     */
+    public long getSnapshotVersion() {
+        return snapshotVersion;
     }
 
+    /**
+     * Volume removed per blocked block, as configured
+     */
+    public float getAttenuationPerBlock() {
+        return config.get().getAttenuationPerBlock();
+    }
+
+    /**
+     * @return cache hit/miss counters, or null when caching is disabled
+     */
+    public OcclusionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Blocked-block count between two points, served from the cache when both
+     * endpoints are in the same blocks as an earlier ray.
+     */
     public int countBlockedBlocks(double x1, double y1, double z1, double x2, double y2, double z2) {
-        int maxBlocks = plugin.getConfig().getOcclusion().getMaxBlocksChecked();
-        int blockedCount = 0;
+        int maxBlocks = config.get().getMaxBlocksChecked();
+        if (cache == null) {
+            return traceBlockedBlocks(snapshot, maxBlocks, x1, y1, z1, x2, y2, z2);
+        }
+
+        // Cached counts are capped at the limit they were traced with
+        if (maxBlocks != cachedMaxBlocks) {
+            cachedMaxBlocks = maxBlocks;
+            cache.clear();
+        }
+
+        int bx1 = (int) Math.floor(x1), by1 = (int) Math.floor(y1), bz1 = (int) Math.floor(z1);
+        int bx2 = (int) Math.floor(x2), by2 = (int) Math.floor(y2), bz2 = (int) Math.floor(z2);
+        int cached = cache.get(bx1, by1, bz1, bx2, by2, bz2);
+        if (cached >= 0) {
+            return cached;
+        }
+
+        // Generation first: the snapshot read after it is at least as new
+        long generation = cache.getGeneration();
+        int blocked = traceBlockedBlocks(snapshot, maxBlocks, x1, y1, z1, x2, y2, z2);
+        cache.put(bx1, by1, bz1, bx2, by2, bz2, blocked, generation);
+        return blocked;
+    }
+
+    /**
+     * Traces against the current snapshot without consulting the cache
+     */
+    public int traceBlockedBlocks(double x1, double y1, double z1, double x2, double y2, double z2) {
+        return traceBlockedBlocks(snapshot, config.get().getMaxBlocksChecked(), x1, y1, z1, x2, y2, z2);
+    }
+
+    /**
+     * Walks the segment voxel by voxel (Amanatides-Woo), visiting every block the
+     * segment passes through exactly once, both endpoint blocks included.
+     */
+    private static int traceBlockedBlocks(BlockSnapshot world, int maxBlocks,
+            double x1, double y1, double z1, double x2, double y2, double z2) {
+        if (maxBlocks <= 0) {
+            return 0;
+        }
+
+        int x = (int) Math.floor(x1);
+        int y = (int) Math.floor(y1);
+        int z = (int) Math.floor(z1);
+        int endX = (int) Math.floor(x2);
+        int endY = (int) Math.floor(y2);
+        int endZ = (int) Math.floor(z2);
 
         double dx = x2 - x1;
         double dy = y2 - y1;
         double dz = z2 - z1;
-        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
 
-        if (distance == 0)
-            return 0;
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
 
-        double stepX = dx / distance;
-        double stepY = dy / distance;
-        double stepZ = dz / distance;
+        // Ray parameter t runs 0..1 along the segment: tDelta is the t per block,
+        // tMax the t at which the next block boundary on that axis is crossed
+        double tDeltaX = stepX != 0 ? 1.0 / Math.abs(dx) : Double.POSITIVE_INFINITY;
+        double tDeltaY = stepY != 0 ? 1.0 / Math.abs(dy) : Double.POSITIVE_INFINITY;
+        double tDeltaZ = stepZ != 0 ? 1.0 / Math.abs(dz) : Double.POSITIVE_INFINITY;
+        double tMaxX = stepX > 0 ? (x + 1 - x1) * tDeltaX : stepX < 0 ? (x1 - x) * tDeltaX : Double.POSITIVE_INFINITY;
+        double tMaxY = stepY > 0 ? (y + 1 - y1) * tDeltaY : stepY < 0 ? (y1 - y) * tDeltaY : Double.POSITIVE_INFINITY;
+        double tMaxZ = stepZ > 0 ? (z + 1 - z1) * tDeltaZ : stepZ < 0 ? (z1 - z) * tDeltaZ : Double.POSITIVE_INFINITY;
 
-        double x = x1, y = y1, z = z1;
-        int lastBlockX = Integer.MIN_VALUE, lastBlockY = Integer.MIN_VALUE, lastBlockZ = Integer.MIN_VALUE;
+        // One axis step per block boundary crossed, so the walk always ends in the end block
+        int remaining = Math.abs(endX - x) + Math.abs(endY - y) + Math.abs(endZ - z);
 
-        for (double d = 0; d < distance && blockedCount < maxBlocks; d += 0.5) {
-            int blockX = (int) Math.floor(x);
-            int blockY = (int) Math.floor(y);
-            int blockZ = (int) Math.floor(z);
+        int chunkX = x >> ChunkSnapshot.SHIFT;
+        int chunkY = y >> ChunkSnapshot.SHIFT;
+        int chunkZ = z >> ChunkSnapshot.SHIFT;
+        ChunkSnapshot chunk = world.chunkAt(chunkX, chunkY, chunkZ);
 
-            if (blockX != lastBlockX || blockY != lastBlockY || blockZ != lastBlockZ) {
-                if (isBlockSolid(blockX, blockY, blockZ)) {
-                    blockedCount++;
-                }
-                lastBlockX = blockX;
-                lastBlockY = blockY;
-                lastBlockZ = blockZ;
+        int blockedCount = 0;
+        for (;;) {
+            if (chunk.isSolid(x, y, z) && ++blockedCount >= maxBlocks) {
+                return blockedCount;
+            }
+            if (remaining-- == 0) {
+                return blockedCount;
             }
 
-            x += stepX * 0.5;
-            y += stepY * 0.5;
-            z += stepZ * 0.5;
-        }
-
-        return blockedCount;
-    }
+            if (tMaxX <= tMaxY && tMaxX <= tMaxZ) {
+                x += stepX;
+                tMaxX += tDeltaX;
+            } else if (tMaxY <= tMaxZ) {
+                y += stepY;
+                tMaxY += tDeltaY;
+            } else {
+                z += stepZ;
+                tMaxZ += tDeltaZ;
+            }
 
-    private boolean isBlockSolid(int x, int y, int z) {
-        // TODO: Check via Hytale world API
-        return false;
+            // Chunk lookups happen only when the walk crosses a chunk boundary
+            if (x >> ChunkSnapshot.SHIFT != chunkX || y >> ChunkSnapshot.SHIFT != chunkY
+                    || z >> ChunkSnapshot.SHIFT != chunkZ) {
+                chunkX = x >> ChunkSnapshot.SHIFT;
+                chunkY = y >> ChunkSnapshot.SHIFT;
+                chunkZ = z >> ChunkSnapshot.SHIFT;
+                chunk = world.chunkAt(chunkX, chunkY, chunkZ);
+            }
+        }
     }
 }
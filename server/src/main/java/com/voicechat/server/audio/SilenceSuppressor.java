@@ -0,0 +1,130 @@
+package com.voicechat.server.audio;
+
+import com.voicechat.common.audio.AudioConstants;
+import com.voicechat.common.config.VoiceChatConfig;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Classifies voice frames as speech or silence before fan-out. Silent runs are
+ * forwarded for a short hangover (so speech tails and decoder fades are kept),
+ * then thinned to one frame per forward interval to keep comfort noise alive.
+ *
+ * <p>Opus DTX frames are recognised from their size alone. Clients encode with DTX
+ * on, so during silence they send these 1-2 byte frames, with an occasional larger
+ * comfort-noise update, instead of full frames. Payloads too large to be a single
+ * Opus frame are raw PCM from stub clients and are measured by energy.</p>
+ */
+public class SilenceSuppressor {
+
+    // Largest possible single Opus frame; anything bigger is a PCM payload
+    private static final int MAX_OPUS_FRAME_BYTES = 1275;
+    // DTX and comfort-noise frames carry little more than the TOC byte
+    private static final int DTX_FRAME_BYTES = 2;
+    // Every 4th sample is enough for a level estimate
+    private static final int ENERGY_STRIDE = 4;
+
+    private final Supplier<VoiceChatConfig.AudioConfig> config;
+    private final Map<UUID, AtomicInteger> silentRuns = new ConcurrentHashMap<>();
+
+    private final LongAdder framesSuppressed = new LongAdder();
+    private final LongAdder receiverSendsSaved = new LongAdder();
+
+    public SilenceSuppressor(Supplier<VoiceChatConfig.AudioConfig> config) {
+        this.config = config;
+    }
+
+    /**
+     * @param payload the frame between its position and limit; not modified
+     * @return false if the frame should be dropped instead of routed
+     */
+    public boolean shouldForward(UUID senderId, ByteBuffer payload) {
+        VoiceChatConfig.AudioConfig audio = config.get();
+        if (!audio.isSilenceSuppression()) {
+            return true;
+        }
+
+        AtomicInteger silentRun = silentRuns.computeIfAbsent(senderId, id -> new AtomicInteger());
+        if (!isSilent(payload, audio.getSilenceThreshold())) {
+            silentRun.set(0);
+            return true;
+        }
+
+        int run = silentRun.incrementAndGet() - audio.getSilenceHangoverFrames();
+        if (run <= 0) {
+            return true;
+        }
+
+        int interval = audio.getSilenceForwardInterval();
+        if (interval > 0 && run % interval == 0) {
+            return true;
+        }
+
+        framesSuppressed.increment();
+        return false;
+    }
+
+    /**
+     * Records how many receivers a suppressed frame would have been sent to.
+     */
+    public void recordSuppressedSends(int receivers) {
+        receiverSendsSaved.add(receivers);
+    }
+
+    static boolean isSilent(ByteBuffer payload, float threshold) {
+        int length = payload.remaining();
+        if (length <= DTX_FRAME_BYTES) {
+            return true;
+        }
+        if (length > MAX_OPUS_FRAME_BYTES) {
+            return pcmLevel(payload) < threshold;
+        }
+        return false;
+    }
+
+    /**
+     * Mean absolute amplitude of little-endian 16-bit PCM, normalized to 0-1.
+     */
+    static float pcmLevel(ByteBuffer payload) {
+        int start = payload.position();
+        int samples = Math.min(payload.remaining() / 2, AudioConstants.FRAME_SIZE);
+        if (samples == 0) {
+            return 0f;
+        }
+
+        long sum = 0;
+        int counted = 0;
+        for (int i = 0; i < samples; i += ENERGY_STRIDE) {
+            int offset = start + i * 2;
+            short sample = (short) ((payload.get(offset + 1) << 8) | (payload.get(offset) & 0xFF));
+            sum += Math.abs(sample);
+            counted++;
+        }
+        return sum / (counted * 32768f);
+    }
+
+    public void removePlayer(UUID playerId) {
+        silentRuns.remove(playerId);
+    }
+
+    public void clear() {
+        silentRuns.clear();
+    }
+
+    public long getFramesSuppressed() {
+        return framesSuppressed.sum();
+    }
+
+    /**
+     * Receiver datagrams not sent because their frame was suppressed.
+     */
+    public long getReceiverSendsSaved() {
+        return receiverSendsSaved.sum();
+    }
+}
@@ -0,0 +1,222 @@
+package com.voicechat.server.audio;
+
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.common.network.packet.VoiceMode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Selective forwarding: a receiver that could hear more than
+ * {@code performance.maxPlayersPerPacket} active speakers only gets the loudest ones.
+ * Speakers are ranked per receiver by their volume at that receiver times their
+ * recent activity level.
+ *
+ * <p>Selection is recomputed each tick from the {@link AudibilityGraph}. Speakers
+ * already selected for a receiver have their score multiplied by
+ * {@link #HYSTERESIS}, so two speakers of similar loudness do not trade places
+ * every tick. The packet path only does one map read per frame and a set lookup
+ * per receiver when that speaker is being shed somewhere. Frames routed without
+ * graph edges are recorded and shed the same way, but a speaker only competes
+ * once the graph tracks it.</p>
+ */
+public class SpeakerSelector {
+
+    static final float HYSTERESIS = 1.5f;
+    // A speaker with no forwarded frame for this long no longer competes
+    private static final long ACTIVE_WINDOW_MS = 300;
+    // Exponential smoothing of per-frame activity
+    private static final float LEVEL_SMOOTHING = 0.3f;
+    // Keeps silent-but-active speakers ordered by volume rather than tied at zero
+    private static final float LEVEL_FLOOR = 0.05f;
+    // Opus frame size at which a frame counts as fully active
+    private static final int LOUD_OPUS_BYTES = 120;
+    private static final int MAX_OPUS_FRAME_BYTES = 1275;
+
+    private final Supplier<VoiceChatConfig> config;
+    private final Map<UUID, Activity> activity = new ConcurrentHashMap<>();
+
+    // Speaker -> receivers that do not get its frames this tick
+    private volatile Map<UUID, Set<UUID>> shed = Map.of();
+    // Receiver -> speakers selected last tick, for limited receivers; read by the tick thread only
+    private volatile Map<UUID, Set<UUID>> selected = Map.of();
+
+    private final LongAdder sendsShed = new LongAdder();
+    private volatile int limitedReceivers;
+    private volatile long selectionChanges;
+
+    public SpeakerSelector(Supplier<VoiceChatConfig> config) {
+        this.config = config;
+    }
+
+    /**
+     * Records a forwarded frame. Called on the routing path.
+     */
+    public void recordFrame(UUID speakerId, VoiceMode mode, ByteBuffer payload) {
+        Activity speaker = activity.get(speakerId);
+        if (speaker == null) {
+            speaker = activity.computeIfAbsent(speakerId, id -> new Activity());
+        }
+        speaker.level += (frameLevel(payload) - speaker.level) * LEVEL_SMOOTHING;
+        speaker.mode = mode;
+        speaker.lastFrameMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Activity of one frame, 0-1. Opus frames are not decoded here, so their size
+     * stands in for loudness (VBR frames grow with signal); PCM is measured.
+     */
+    static float frameLevel(ByteBuffer payload) {
+        int length = payload.remaining();
+        if (length > MAX_OPUS_FRAME_BYTES) {
+            return Math.min(1f, SilenceSuppressor.pcmLevel(payload) * 4f);
+        }
+        return Math.min(1f, (float) length / LOUD_OPUS_BYTES);
+    }
+
+    /**
+     * @return receivers the speaker is not forwarded to, or null if none
+     */
+    public Set<UUID> getShedReceivers(UUID speakerId) {
+        return shed.get(speakerId);
+    }
+
+    /**
+     * Records receiver sends skipped because of selection.
+     */
+    public void recordShed(int sends) {
+        sendsShed.add(sends);
+    }
+
+    /**
+     * Recomputes the selection for every receiver from the current graph. Runs on
+     * the tick thread after {@link AudibilityGraph#rebuild()}.
+     */
+    public void update(AudibilityGraph graph) {
+        VoiceChatConfig current = config.get();
+        int limit = current.getPerformance().getMaxPlayersPerPacket();
+        long now = System.currentTimeMillis();
+
+        Map<UUID, List<Candidate>> candidates = new HashMap<>();
+        for (Map.Entry<UUID, Activity> entry : activity.entrySet()) {
+            Activity speaker = entry.getValue();
+            if (now - speaker.lastFrameMs > ACTIVE_WINDOW_MS) {
+                continue;
+            }
+            AudibilityGraph.Edges edges = graph.getEdges(entry.getKey());
+            if (edges == null) {
+                continue;
+            }
+
+            VoiceMode mode = speaker.mode;
+            float level = Math.max(LEVEL_FLOOR, speaker.level);
+            int audible = edges.countWithin(AudibilityGraph.getDistance(mode, current.getAudio()));
+            for (int i = 0; i < audible; i++) {
+                float score = edges.getVolume(i, mode, false) * level;
+                candidates.computeIfAbsent(edges.getReceiver(i), id -> new ArrayList<>())
+                    .add(new Candidate(entry.getKey(), score));
+            }
+        }
+
+        Map<UUID, Set<UUID>> nextShed = new HashMap<>();
+        Map<UUID, Set<UUID>> nextSelected = new HashMap<>();
+        long changes = 0;
+        if (limit > 0) {
+            for (Map.Entry<UUID, List<Candidate>> entry : candidates.entrySet()) {
+                List<Candidate> list = entry.getValue();
+                if (list.size() <= limit) {
+                    continue;
+                }
+
+                UUID receiverId = entry.getKey();
+                Set<UUID> before = selected.get(receiverId);
+                if (before != null) {
+                    for (Candidate candidate : list) {
+                        if (before.contains(candidate.speakerId)) {
+                            candidate.score *= HYSTERESIS;
+                        }
+                    }
+                }
+                list.sort((a, b) -> Float.compare(b.score, a.score));
+
+                Set<UUID> chosen = new HashSet<>(limit * 2);
+                for (int i = 0; i < list.size(); i++) {
+                    UUID speakerId = list.get(i).speakerId;
+                    if (i < limit) {
+                        chosen.add(speakerId);
+                        if (before != null && !before.contains(speakerId)) {
+                            changes++;
+                        }
+                    } else {
+                        nextShed.computeIfAbsent(speakerId, id -> new HashSet<>()).add(receiverId);
+                    }
+                }
+                nextSelected.put(receiverId, chosen);
+            }
+        }
+
+        shed = nextShed;
+        selected = nextSelected;
+        limitedReceivers = nextSelected.size();
+        selectionChanges += changes;
+    }
+
+    public void removePlayer(UUID playerId) {
+        activity.remove(playerId);
+    }
+
+    public void clear() {
+        activity.clear();
+        shed = Map.of();
+        selected = Map.of();
+        limitedReceivers = 0;
+    }
+
+    /**
+     * Receiver sends skipped because the speaker was outside the receiver's top N
+     */
+    public long getSendsShed() {
+        return sendsShed.sum();
+    }
+
+    /**
+     * Receivers that had more active speakers than the limit at the last update
+     */
+    public int getLimitedReceivers() {
+        return limitedReceivers;
+    }
+
+    /**
+     * Speakers that entered an already limited receiver's selection, summed over
+     * updates; a high rate means selection is flapping
+     */
+    public long getSelectionChanges() {
+        return selectionChanges;
+    }
+
+    private static final class Activity {
+        // Written by whichever routing thread carries the speaker's frames
+        volatile float level;
+        volatile VoiceMode mode = VoiceMode.NORMAL;
+        volatile long lastFrameMs;
+    }
+
+    private static final class Candidate {
+        final UUID speakerId;
+        float score;
+
+        Candidate(UUID speakerId, float score) {
+            this.speakerId = speakerId;
+            this.score = score;
+        }
+    }
+}
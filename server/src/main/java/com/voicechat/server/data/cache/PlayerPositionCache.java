@@ -1,26 +1,60 @@
 package com.voicechat.server.data.cache;
 
-import java.util.Map;
+import com.voicechat.server.data.spatial.PositionStore;
+
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Last known coordinates per player, kept in a {@link PositionStore} so updates
+ * write in place instead of allocating an array each time.
+ */
 public class PlayerPositionCache {
 
-    private final Map<UUID, double[]> positions = new ConcurrentHashMap<>();
+    private final PositionStore store = new PositionStore();
+    // The cache does not track worlds; every entry uses one placeholder world
+    private final int worldId = store.worldId("");
 
     public void update(UUID playerId, double x, double y, double z) {
-        positions.put(playerId, new double[] { x, y, z });
+        while (!store.write(store.acquireSlot(playerId), playerId, x, y, z, worldId, System.currentTimeMillis())) {
+            Thread.onSpinWait();
+        }
     }
 
     public double[] get(UUID playerId) {
-        return positions.get(playerId);
+        double[] position = new double[3];
+        return get(playerId, position) ? position : null;
+    }
+
+    /**
+     * Copies the player's coordinates into {@code out} without allocating
+     * @return false if the player is not cached
+     */
+    public boolean get(UUID playerId, double[] out) {
+        int slot = store.slotOf(playerId);
+        if (slot < 0) {
+            return false;
+        }
+
+        int stamp;
+        int world;
+        UUID owner;
+        do {
+            stamp = store.readBegin(slot);
+            owner = store.getPlayer(slot);
+            out[0] = store.getX(slot);
+            out[1] = store.getY(slot);
+            out[2] = store.getZ(slot);
+            world = store.getWorld(slot);
+        } while (!store.readValidate(slot, stamp));
+        // The slot may have been released and reused since it was looked up
+        return world != PositionStore.NO_WORLD && playerId.equals(owner);
     }
 
     public void remove(UUID playerId) {
-        positions.remove(playerId);
+        store.release(playerId);
     }
 
     public boolean contains(UUID playerId) {
-        return positions.containsKey(playerId);
+        return store.contains(playerId);
     }
 }
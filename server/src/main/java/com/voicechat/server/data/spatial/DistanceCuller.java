@@ -0,0 +1,42 @@
+package com.voicechat.server.data.spatial;
+
+import com.voicechat.server.util.LogUtils;
+
+/**
+ * Squared-distance filter over candidate coordinates held in parallel arrays,
+ * used after spatial bucketing to cut a candidate list down to a voice radius.
+ *
+ * <p>{@link #create()} picks the SIMD kernel when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and the scalar loop otherwise. Set
+ * {@code -Dvoicechat.simd=false} to force the scalar loop.</p>
+ */
+public interface DistanceCuller {
+
+    /**
+     * Writes the indices of candidates within {@code rangeSquared} of the centre
+     * (inclusive) to {@code out}, in ascending order.
+     * @return number of indices written
+     */
+    int cull(double[] xs, double[] ys, double[] zs, int count,
+            double centerX, double centerY, double centerZ, double rangeSquared, int[] out);
+
+    String getName();
+
+    static DistanceCuller create() {
+        if (Boolean.parseBoolean(System.getProperty("voicechat.simd", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded reflectively so the scalar path never links incubator classes
+                DistanceCuller culler = (DistanceCuller) Class
+                    .forName("com.voicechat.server.data.spatial.VectorDistanceCuller")
+                    .getDeclaredConstructor()
+                    .newInstance();
+                LogUtils.info("Distance culling: " + culler.getName());
+                return culler;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LogUtils.warn("Vector distance culling unavailable, using scalar: " + e.getMessage());
+            }
+        }
+        return new ScalarDistanceCuller();
+    }
+}
@@ -0,0 +1,291 @@
+package com.voicechat.server.data.spatial;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Dense struct-of-arrays position store. Each player owns an int slot; coordinates,
+ * world id and timestamp live in parallel primitive arrays, and world names are
+ * interned to int ids so same-world checks are an int compare.
+ *
+ * <p>Slots are grouped in fixed-size pages that never move, so the store grows
+ * without copying. Each slot is guarded by a sequence counter (seqlock): writers
+ * make it odd while writing, readers retry if it was odd or changed under them.
+ * Updating an existing slot allocates nothing.</p>
+ *
+ * <p>Optimistic read pattern:</p>
+ * <pre>
+ * int stamp;
+ * do {
+ *     stamp = store.readBegin(slot);
+ *     x = store.getX(slot); ...
+ * } while (!store.readValidate(slot, stamp));
+ * </pre>
+ */
+public class PositionStore {
+
+    public static final int NO_WORLD = -1;
+
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = 4096;
+
+    private final Map<UUID, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Page> pages = new AtomicReferenceArray<>(MAX_PAGES);
+    // Released slots, reused before the high-water mark grows; guarded by this
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private volatile int highWaterMark;
+
+    private final Map<String, Integer> worldIds = new ConcurrentHashMap<>();
+    private volatile String[] worldNames = new String[0];
+
+    private static final class Page {
+        final UUID[] players = new UUID[PAGE_SIZE];
+        final double[] x = new double[PAGE_SIZE];
+        final double[] y = new double[PAGE_SIZE];
+        final double[] z = new double[PAGE_SIZE];
+        final int[] world = new int[PAGE_SIZE];
+        final long[] timestamp = new long[PAGE_SIZE];
+        final AtomicIntegerArray sequence = new AtomicIntegerArray(PAGE_SIZE);
+    }
+
+    /**
+     * @return the player's slot, or -1 if the player has none
+     */
+    public int slotOf(UUID playerId) {
+        Integer slot = slots.get(playerId);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Returns the player's slot, assigning a free one on first use. The new slot
+     * reads as having no world until its first write.
+     */
+    public int acquireSlot(UUID playerId) {
+        Integer existing = slots.get(playerId);
+        if (existing != null) {
+            return existing;
+        }
+
+        synchronized (this) {
+            existing = slots.get(playerId);
+            if (existing != null) {
+                return existing;
+            }
+
+            int slot = freeCount > 0 ? freeSlots[--freeCount] : highWaterMark;
+            Page page = pageFor(slot);
+            int index = slot & PAGE_MASK;
+            writeBegin(page, index);
+            page.players[index] = playerId;
+            page.world[index] = NO_WORLD;
+            writeEnd(page, index);
+
+            if (slot == highWaterMark) {
+                highWaterMark = slot + 1;
+            }
+            slots.put(playerId, slot);
+            return slot;
+        }
+    }
+
+    /**
+     * Frees the player's slot for reuse. Readers holding the old slot number see
+     * it change player or lose its world.
+     */
+    public synchronized void release(UUID playerId) {
+        Integer slot = slots.remove(playerId);
+        if (slot == null) {
+            return;
+        }
+
+        Page page = pages.get(slot >>> PAGE_SHIFT);
+        int index = slot & PAGE_MASK;
+        writeBegin(page, index);
+        page.players[index] = null;
+        page.world[index] = NO_WORLD;
+        writeEnd(page, index);
+
+        if (freeCount == freeSlots.length) {
+            int[] grown = new int[freeSlots.length * 2];
+            System.arraycopy(freeSlots, 0, grown, 0, freeCount);
+            freeSlots = grown;
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Publishes a position atomically with respect to {@link #readValidate}.
+     * @return false if the slot was released (and possibly reused) since it was looked up
+     */
+    public boolean write(int slot, UUID playerId, double x, double y, double z, int worldId, long timestamp) {
+        Page page = pages.get(slot >>> PAGE_SHIFT);
+        int index = slot & PAGE_MASK;
+        writeBegin(page, index);
+        if (!playerId.equals(page.players[index])) {
+            writeEnd(page, index);
+            return false;
+        }
+        page.x[index] = x;
+        page.y[index] = y;
+        page.z[index] = z;
+        page.world[index] = worldId;
+        page.timestamp[index] = timestamp;
+        writeEnd(page, index);
+        return true;
+    }
+
+    private static void writeBegin(Page page, int index) {
+        // An odd sequence marks the slot as being written; concurrent writers wait their turn
+        for (;;) {
+            int sequence = page.sequence.get(index);
+            if ((sequence & 1) == 0 && page.sequence.compareAndSet(index, sequence, sequence + 1)) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        // Field stores must not become visible before the odd sequence
+        VarHandle.storeStoreFence();
+    }
+
+    private static void writeEnd(Page page, int index) {
+        // Volatile store releases the field writes before the even sequence
+        page.sequence.set(index, page.sequence.get(index) + 1);
+    }
+
+    /**
+     * @return a stamp to pass to {@link #readValidate}; spins while a write is in progress
+     */
+    public int readBegin(int slot) {
+        AtomicIntegerArray sequence = pages.get(slot >>> PAGE_SHIFT).sequence;
+        int index = slot & PAGE_MASK;
+        for (;;) {
+            int stamp = sequence.get(index);
+            if ((stamp & 1) == 0) {
+                return stamp;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return true if no write overlapped the reads made since {@link #readBegin}
+     */
+    public boolean readValidate(int slot, int stamp) {
+        // Field loads must complete before the sequence is re-read
+        VarHandle.loadLoadFence();
+        return pages.get(slot >>> PAGE_SHIFT).sequence.get(slot & PAGE_MASK) == stamp;
+    }
+
+    public UUID getPlayer(int slot) {
+        return pages.get(slot >>> PAGE_SHIFT).players[slot & PAGE_MASK];
+    }
+
+    public double getX(int slot) {
+        return pages.get(slot >>> PAGE_SHIFT).x[slot & PAGE_MASK];
+    }
+
+    public double getY(int slot) {
+        return pages.get(slot >>> PAGE_SHIFT).y[slot & PAGE_MASK];
+    }
+
+    public double getZ(int slot) {
+        return pages.get(slot >>> PAGE_SHIFT).z[slot & PAGE_MASK];
+    }
+
+    public int getWorld(int slot) {
+        return pages.get(slot >>> PAGE_SHIFT).world[slot & PAGE_MASK];
+    }
+
+    public long getTimestamp(int slot) {
+        return pages.get(slot >>> PAGE_SHIFT).timestamp[slot & PAGE_MASK];
+    }
+
+    /**
+     * Slots below this value have been assigned at least once; iterate up to it
+     * and skip slots whose world is {@link #NO_WORLD}.
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public boolean contains(UUID playerId) {
+        return slots.containsKey(playerId);
+    }
+
+    /**
+     * Copy of the players currently holding a slot
+     */
+    public Set<UUID> getPlayers() {
+        return Set.copyOf(slots.keySet());
+    }
+
+    /**
+     * Interns a world name, assigning the next id on first use.
+     */
+    public int worldId(String world) {
+        Integer id = worldIds.get(world);
+        if (id != null) {
+            return id;
+        }
+        synchronized (worldIds) {
+            return worldIds.computeIfAbsent(world, name -> {
+                String[] names = worldNames;
+                String[] grown = new String[names.length + 1];
+                System.arraycopy(names, 0, grown, 0, names.length);
+                grown[names.length] = name;
+                worldNames = grown;
+                return names.length;
+            });
+        }
+    }
+
+    /**
+     * @return the world's id, or {@link #NO_WORLD} if it was never interned
+     */
+    public int findWorldId(String world) {
+        Integer id = worldIds.get(world);
+        return id != null ? id : NO_WORLD;
+    }
+
+    /**
+     * @return the canonical name instance for an interned world id
+     */
+    public String getWorldName(int worldId) {
+        return worldId >= 0 ? worldNames[worldId] : null;
+    }
+
+    /**
+     * Releases every slot. World ids stay interned.
+     */
+    public synchronized void clear() {
+        for (UUID playerId : new ArrayList<>(slots.keySet())) {
+            release(playerId);
+        }
+    }
+
+    private Page pageFor(int slot) {
+        int pageIndex = slot >>> PAGE_SHIFT;
+        if (pageIndex >= MAX_PAGES) {
+            throw new IllegalStateException("Position store is full (" + MAX_PAGES * PAGE_SIZE + " slots)");
+        }
+        Page page = pages.get(pageIndex);
+        if (page == null) {
+            page = new Page();
+            pages.set(pageIndex, page);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,27 @@
+package com.voicechat.server.data.spatial;
+
+/**
+ * Plain loop over squared distances; no square root per candidate.
+ */
+public final class ScalarDistanceCuller implements DistanceCuller {
+
+    @Override
+    public int cull(double[] xs, double[] ys, double[] zs, int count,
+            double centerX, double centerY, double centerZ, double rangeSquared, int[] out) {
+        int hits = 0;
+        for (int i = 0; i < count; i++) {
+            double dx = xs[i] - centerX;
+            double dy = ys[i] - centerY;
+            double dz = zs[i] - centerZ;
+            if (dx * dx + dy * dy + dz * dz <= rangeSquared) {
+                out[hits++] = i;
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,160 @@
+package com.voicechat.server.data.spatial;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Per-world uniform grid of player ids, keyed by horizontal cell coordinates.
+ * Lets proximity queries visit only the cells a voice radius overlaps instead
+ * of every online player. Thread-safe for concurrent moves, removals and queries.
+ */
+public class SpatialIndex {
+
+    public static final int DEFAULT_CELL_SIZE = 32;
+
+    private final int cellSize;
+    private final Map<String, Map<Long, Set<UUID>>> worlds = new ConcurrentHashMap<>();
+    private final Map<UUID, CellRef> playerCells = new ConcurrentHashMap<>();
+
+    public SpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public SpatialIndex(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Moves a player into the cell containing the given position.
+     * Does nothing when the player stays inside its current cell.
+     */
+    public void update(UUID playerId, String world, double x, double z) {
+        int cellX = toCell(x);
+        int cellZ = toCell(z);
+
+        // Most updates stay in the same cell; check without allocating a remapping function
+        CellRef known = playerCells.get(playerId);
+        if (known != null && known.matches(world, cellX, cellZ)) {
+            return;
+        }
+
+        // compute() serializes concurrent moves of the same player
+        playerCells.compute(playerId, (id, current) -> {
+            if (current != null && current.matches(world, cellX, cellZ)) {
+                return current;
+            }
+
+            CellRef next = new CellRef(world, cellX, cellZ);
+            addToCell(next, id);
+            if (current != null) {
+                removeFromCell(current, id);
+            }
+            return next;
+        });
+    }
+
+    /**
+     * Removes a player from the index.
+     */
+    public void remove(UUID playerId) {
+        playerCells.computeIfPresent(playerId, (id, current) -> {
+            removeFromCell(current, id);
+            return null;
+        });
+    }
+
+    /**
+     * Visits every player whose cell overlaps the horizontal square of the given
+     * radius around (x, z). Callers still need an exact distance check.
+     */
+    public void forEachNear(String world, double x, double z, double radius, Consumer<UUID> visitor) {
+        Map<Long, Set<UUID>> cells = worlds.get(world);
+        if (cells == null || cells.isEmpty()) {
+            return;
+        }
+
+        int minX = toCell(x - radius);
+        int maxX = toCell(x + radius);
+        int minZ = toCell(z - radius);
+        int maxZ = toCell(z + radius);
+
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                Set<UUID> occupants = cells.get(key(cellX, cellZ));
+                if (occupants != null) {
+                    occupants.forEach(visitor);
+                }
+            }
+        }
+    }
+
+    public boolean contains(UUID playerId) {
+        return playerCells.containsKey(playerId);
+    }
+
+    public int size() {
+        return playerCells.size();
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public void clear() {
+        playerCells.clear();
+        worlds.clear();
+    }
+
+    private void addToCell(CellRef ref, UUID playerId) {
+        Map<Long, Set<UUID>> cells = worlds.computeIfAbsent(ref.world, w -> new ConcurrentHashMap<>());
+        cells.compute(key(ref.cellX, ref.cellZ), (k, occupants) -> {
+            if (occupants == null) {
+                occupants = ConcurrentHashMap.newKeySet();
+            }
+            occupants.add(playerId);
+            return occupants;
+        });
+    }
+
+    private void removeFromCell(CellRef ref, UUID playerId) {
+        Map<Long, Set<UUID>> cells = worlds.get(ref.world);
+        if (cells == null) {
+            return;
+        }
+        // Drop empty cells atomically so a concurrent add never lands in a detached set
+        cells.computeIfPresent(key(ref.cellX, ref.cellZ), (k, occupants) -> {
+            occupants.remove(playerId);
+            return occupants.isEmpty() ? null : occupants;
+        });
+    }
+
+    private int toCell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    private static final class CellRef {
+        final String world;
+        final int cellX;
+        final int cellZ;
+
+        CellRef(String world, int cellX, int cellZ) {
+            this.world = world;
+            this.cellX = cellX;
+            this.cellZ = cellZ;
+        }
+
+        boolean matches(String world, int cellX, int cellZ) {
+            return this.cellX == cellX && this.cellZ == cellZ && this.world.equals(world);
+        }
+    }
+}
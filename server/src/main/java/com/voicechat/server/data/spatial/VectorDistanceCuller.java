@@ -0,0 +1,55 @@
+package com.voicechat.server.data.spatial;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD squared-distance filter on the platform's preferred double vector width.
+ * Only load this through {@link DistanceCuller#create()}: it needs the incubator
+ * module {@code jdk.incubator.vector} at runtime.
+ */
+final class VectorDistanceCuller implements DistanceCuller {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public int cull(double[] xs, double[] ys, double[] zs, int count,
+            double centerX, double centerY, double centerZ, double rangeSquared, int[] out) {
+        int hits = 0;
+        int i = 0;
+        int upper = SPECIES.loopBound(count);
+
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, i).sub(centerX);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, i).sub(centerY);
+            DoubleVector dz = DoubleVector.fromArray(SPECIES, zs, i).sub(centerZ);
+            DoubleVector distanceSquared = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+
+            // Compact the lanes in range into the output, lowest lane first
+            VectorMask<Double> inRange = distanceSquared.compare(VectorOperators.LE, rangeSquared);
+            long lanes = inRange.toLong();
+            while (lanes != 0) {
+                out[hits++] = i + Long.numberOfTrailingZeros(lanes);
+                lanes &= lanes - 1;
+            }
+        }
+
+        // Scalar tail; same expression order as the vector lanes
+        for (; i < count; i++) {
+            double dx = xs[i] - centerX;
+            double dy = ys[i] - centerY;
+            double dz = zs[i] - centerZ;
+            if (dx * dx + dy * dy + dz * dz <= rangeSquared) {
+                out[hits++] = i;
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " x double)";
+    }
+}
@@ -0,0 +1,23 @@
+package com.voicechat.server.listener;
+
+import com.voicechat.server.VoiceChatPlugin;
+
+/**
+ * Block changes from the world, for occlusion. Each change marks its chunk for
+ * recapture on the next snapshot refresh, which also drops cached counts for rays
+ * that may cross it. Nothing calls this until the Hytale world API is hooked up in
+ * {@code VoiceChatPlugin.registerEvents}; until then occlusion reads no solid blocks
+ * and there is nothing to invalidate.
+ */
+public class BlockChangeListener {
+
+    private final VoiceChatPlugin plugin;
+
+    public BlockChangeListener(VoiceChatPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void onBlockChange(int x, int y, int z) {
+        plugin.getPacketRouter().getOcclusionEngine().invalidateBlock(x, y, z);
+    }
+}
@@ -17,5 +17,7 @@ public class PlayerConnectionListener {
 
     public void onPlayerQuit(UUID playerId) {
         plugin.getPlayerManager().removePlayer(playerId);
+        plugin.getPositionManager().removePlayer(playerId);
+        plugin.getPacketRouter().removePlayer(playerId);
     }
 }
@@ -1,20 +1,31 @@
 package com.voicechat.server.manager;
 
+import com.voicechat.server.data.spatial.DistanceCuller;
+import com.voicechat.server.data.spatial.PositionStore;
+import com.voicechat.server.data.spatial.SpatialIndex;
 import com.voicechat.server.util.LogUtils;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Manages player positions for proximity voice chat calculations.
  * Thread-safe implementation for concurrent access.
+ *
+ * <p>Positions live in a {@link PositionStore}, so updates write primitives in place
+ * without allocating; {@link PlayerPosition} objects are only created for readers.</p>
  */
 public class PlayerPositionManager {
 
-    private final Map<UUID, PlayerPosition> positions = new ConcurrentHashMap<>();
+    private final PositionStore store = new PositionStore();
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+    private final DistanceCuller culler = DistanceCuller.create();
     private final double proximityRange;
 
     public PlayerPositionManager(double proximityRange) {
@@ -29,16 +40,49 @@ public class PlayerPositionManager {
         if (playerId == null) {
             throw new IllegalArgumentException("Player ID cannot be null");
         }
+        if (world == null) {
+            throw new IllegalArgumentException("World cannot be null");
+        }
 
-        PlayerPosition position = new PlayerPosition(playerId, x, y, z, world, System.currentTimeMillis());
-        positions.put(playerId, position);
+        int worldId = store.worldId(world);
+        long now = System.currentTimeMillis();
+        // Retry if a concurrent removal released the slot between lookup and write
+        while (!store.write(store.acquireSlot(playerId), playerId, x, y, z, worldId, now)) {
+            Thread.onSpinWait();
+        }
+        // The interned name lets the index compare worlds by reference
+        spatialIndex.update(playerId, store.getWorldName(worldId), x, z);
     }
 
     /**
      * Gets a player's current position.
      */
     public PlayerPosition getPosition(UUID playerId) {
-        return positions.get(playerId);
+        int slot = store.slotOf(playerId);
+        return slot >= 0 ? readPosition(slot, playerId) : null;
+    }
+
+    /**
+     * Reads a slot under its seqlock; null if it is empty or no longer the expected player's.
+     */
+    private PlayerPosition readPosition(int slot, UUID expected) {
+        for (;;) {
+            int stamp = store.readBegin(slot);
+            UUID playerId = store.getPlayer(slot);
+            double x = store.getX(slot);
+            double y = store.getY(slot);
+            double z = store.getZ(slot);
+            int worldId = store.getWorld(slot);
+            long timestamp = store.getTimestamp(slot);
+            if (!store.readValidate(slot, stamp)) {
+                continue;
+            }
+
+            if (worldId == PositionStore.NO_WORLD || (expected != null && !expected.equals(playerId))) {
+                return null;
+            }
+            return new PlayerPosition(playerId, x, y, z, store.getWorldName(worldId), worldId, timestamp);
+        }
     }
 
     /**
@@ -46,7 +90,8 @@ public class PlayerPositionManager {
      */
     public void removePlayer(UUID playerId) {
         if (playerId != null) {
-            positions.remove(playerId);
+            store.release(playerId);
+            spatialIndex.remove(playerId);
             LogUtils.info("Removed position data for player: " + playerId);
         }
     }
@@ -55,39 +100,114 @@ public class PlayerPositionManager {
      * Gets all players within proximity range of the specified player.
      */
     public Set<UUID> getPlayersInRange(UUID playerId) {
-        PlayerPosition playerPos = positions.get(playerId);
+        PlayerPosition playerPos = getPosition(playerId);
         if (playerPos == null) {
             return Set.of();
         }
 
-        return positions.entrySet().stream()
-                .filter(entry -> !entry.getKey().equals(playerId))
-                .filter(entry -> {
-                    PlayerPosition otherPos = entry.getValue();
-                    // Must be in same world
-                    if (!playerPos.world.equals(otherPos.world)) {
-                        return false;
-                    }
-                    // Check distance
-                    double distance = playerPos.distanceTo(otherPos);
-                    return distance <= proximityRange;
-                })
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
+        Set<UUID> result = new HashSet<>();
+        forEachPlayerNear(playerPos.world, playerPos.x, playerPos.y, playerPos.z, proximityRange, otherPos -> {
+            if (!otherPos.playerId.equals(playerId)) {
+                result.add(otherPos.playerId);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Visits the position of every player within range of the given point,
+     * touching only the spatial index cells the range overlaps.
+     */
+    public void forEachPlayerNear(String world, double x, double y, double z, double range,
+            Consumer<PlayerPosition> visitor) {
+        int worldId = store.findWorldId(world);
+        if (worldId == PositionStore.NO_WORLD) {
+            return;
+        }
+
+        double rangeSquared = range * range;
+        spatialIndex.forEachNear(world, x, z, range, otherId -> {
+            int slot = store.slotOf(otherId);
+            if (slot < 0) {
+                return;
+            }
+
+            // Distance is checked on primitives; only players in range are materialized
+            double otherX, otherY, otherZ;
+            int otherWorld;
+            int stamp;
+            do {
+                stamp = store.readBegin(slot);
+                otherX = store.getX(slot);
+                otherY = store.getY(slot);
+                otherZ = store.getZ(slot);
+                otherWorld = store.getWorld(slot);
+            } while (!store.readValidate(slot, stamp));
+
+            // Position may have been removed or moved worlds since the cell was read
+            if (otherWorld != worldId) {
+                return;
+            }
+            double dx = otherX - x;
+            double dy = otherY - y;
+            double dz = otherZ - z;
+            if (dx * dx + dy * dy + dz * dz <= rangeSquared) {
+                PlayerPosition otherPos = readPosition(slot, otherId);
+                if (otherPos != null) {
+                    visitor.accept(otherPos);
+                }
+            }
+        });
+    }
+
+    /**
+     * Fills {@code out} with every player within range of the given point. Candidates
+     * from the overlapped index cells are copied into flat coordinate arrays and
+     * filtered in one pass by the {@link DistanceCuller}; nothing is allocated once
+     * the buffer has grown to the crowd size.
+     * @return number of players found
+     */
+    public int findPlayersNear(String world, double x, double y, double z, double range, NearbyPlayers out) {
+        out.size = 0;
+        int worldId = store.findWorldId(world);
+        if (worldId == PositionStore.NO_WORLD) {
+            return 0;
+        }
+
+        out.store = store;
+        out.worldId = worldId;
+        try {
+            spatialIndex.forEachNear(world, x, z, range, out.collector);
+        } finally {
+            out.store = null;
+        }
+
+        int hits = culler.cull(out.xs, out.ys, out.zs, out.size, x, y, z, range * range, out.hits);
+        // Hit indices ascend and never pass their position, so compaction is in place
+        for (int i = 0; i < hits; i++) {
+            int from = out.hits[i];
+            out.players[i] = out.players[from];
+            out.xs[i] = out.xs[from];
+            out.ys[i] = out.ys[from];
+            out.zs[i] = out.zs[from];
+        }
+        Arrays.fill(out.players, hits, out.size, null);
+        out.size = hits;
+        return hits;
     }
 
     /**
      * Calculates distance between two players.
      */
     public double getDistance(UUID player1, UUID player2) {
-        PlayerPosition pos1 = positions.get(player1);
-        PlayerPosition pos2 = positions.get(player2);
+        PlayerPosition pos1 = getPosition(player1);
+        PlayerPosition pos2 = getPosition(player2);
 
         if (pos1 == null || pos2 == null) {
             return Double.MAX_VALUE;
         }
 
-        if (!pos1.world.equals(pos2.world)) {
+        if (!pos1.isSameWorld(pos2)) {
             return Double.MAX_VALUE;
         }
 
@@ -98,15 +218,31 @@ public class PlayerPositionManager {
      * Gets all tracked players.
      */
     public Set<UUID> getAllPlayers() {
-        return Set.copyOf(positions.keySet());
+        return store.getPlayers();
+    }
+
+    /**
+     * Gets a snapshot of all tracked positions.
+     */
+    public Collection<PlayerPosition> getAllPositions() {
+        int end = store.getHighWaterMark();
+        List<PlayerPosition> result = new ArrayList<>(store.size());
+        for (int slot = 0; slot < end; slot++) {
+            PlayerPosition position = readPosition(slot, null);
+            if (position != null) {
+                result.add(position);
+            }
+        }
+        return result;
     }
 
     /**
      * Clears all position data.
      */
     public void clear() {
-        int count = positions.size();
-        positions.clear();
+        int count = store.size();
+        store.clear();
+        spatialIndex.clear();
         LogUtils.info("Cleared position data for " + count + " players");
     }
 
@@ -114,7 +250,7 @@ public class PlayerPositionManager {
      * Gets the number of tracked players.
      */
     public int getPlayerCount() {
-        return positions.size();
+        return store.size();
     }
 
     /**
@@ -122,13 +258,103 @@ public class PlayerPositionManager {
      */
     public void removeStalePositions(long maxAgeMs) {
         long now = System.currentTimeMillis();
-        positions.entrySet().removeIf(entry -> {
-            boolean isStale = (now - entry.getValue().timestamp) > maxAgeMs;
-            if (isStale) {
-                LogUtils.info("Removed stale position for player: " + entry.getKey());
+        for (PlayerPosition position : getAllPositions()) {
+            if ((now - position.timestamp) > maxAgeMs) {
+                store.release(position.playerId);
+                spatialIndex.remove(position.playerId);
+                LogUtils.info("Removed stale position for player: " + position.playerId);
             }
-            return isStale;
-        });
+        }
+    }
+
+    /**
+     * Reusable result buffer for {@link #findPlayersNear}; not thread-safe, so keep
+     * one per routing thread.
+     */
+    public static final class NearbyPlayers {
+        private UUID[] players;
+        private double[] xs;
+        private double[] ys;
+        private double[] zs;
+        private int[] hits;
+        private int size;
+
+        // Set only while gathering
+        private PositionStore store;
+        private int worldId;
+        private final Consumer<UUID> collector = this::collect;
+
+        public NearbyPlayers() {
+            this(64);
+        }
+
+        public NearbyPlayers(int initialCapacity) {
+            int capacity = Math.max(initialCapacity, 8);
+            players = new UUID[capacity];
+            xs = new double[capacity];
+            ys = new double[capacity];
+            zs = new double[capacity];
+            hits = new int[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public UUID getPlayer(int index) {
+            return players[index];
+        }
+
+        public double getX(int index) {
+            return xs[index];
+        }
+
+        public double getY(int index) {
+            return ys[index];
+        }
+
+        public double getZ(int index) {
+            return zs[index];
+        }
+
+        private void collect(UUID otherId) {
+            int slot = store.slotOf(otherId);
+            if (slot < 0) {
+                return;
+            }
+
+            UUID owner;
+            double otherX, otherY, otherZ;
+            int otherWorld;
+            int stamp;
+            do {
+                stamp = store.readBegin(slot);
+                owner = store.getPlayer(slot);
+                otherX = store.getX(slot);
+                otherY = store.getY(slot);
+                otherZ = store.getZ(slot);
+                otherWorld = store.getWorld(slot);
+            } while (!store.readValidate(slot, stamp));
+
+            // Position may have been removed, reused or moved worlds since the cell was read
+            if (otherWorld != worldId || !otherId.equals(owner)) {
+                return;
+            }
+
+            if (size == players.length) {
+                int capacity = size * 2;
+                players = Arrays.copyOf(players, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                zs = Arrays.copyOf(zs, capacity);
+                hits = new int[capacity];
+            }
+            players[size] = otherId;
+            xs[size] = otherX;
+            ys[size] = otherY;
+            zs[size] = otherZ;
+            size++;
+        }
     }
 
     /**
@@ -140,22 +366,40 @@ public class PlayerPositionManager {
         public final double y;
         public final double z;
         public final String world;
+        // Interned world id, or PositionStore.NO_WORLD when not created by the store
+        public final int worldId;
         public final long timestamp;
 
         public PlayerPosition(UUID playerId, double x, double y, double z, String world, long timestamp) {
+            this(playerId, x, y, z, world, PositionStore.NO_WORLD, timestamp);
+        }
+
+        public PlayerPosition(UUID playerId, double x, double y, double z, String world, int worldId,
+                long timestamp) {
             this.playerId = playerId;
             this.x = x;
             this.y = y;
             this.z = z;
             this.world = world;
+            this.worldId = worldId;
             this.timestamp = timestamp;
         }
 
+        /**
+         * Compares interned world ids when both positions have one, names otherwise.
+         */
+        public boolean isSameWorld(PlayerPosition other) {
+            if (worldId != PositionStore.NO_WORLD && other.worldId != PositionStore.NO_WORLD) {
+                return worldId == other.worldId;
+            }
+            return world.equals(other.world);
+        }
+
         /**
          * Calculates 3D distance to another position.
          */
         public double distanceTo(PlayerPosition other) {
-            if (!this.world.equals(other.world)) {
+            if (!isSameWorld(other)) {
                 return Double.MAX_VALUE;
             }
 
@@ -170,7 +414,7 @@ public class PlayerPositionManager {
          * Calculates 2D distance (ignoring Y coordinate) to another position.
          */
         public double distanceTo2D(PlayerPosition other) {
-            if (!this.world.equals(other.world)) {
+            if (!isSameWorld(other)) {
                 return Double.MAX_VALUE;
             }
 
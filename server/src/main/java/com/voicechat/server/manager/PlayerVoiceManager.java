@@ -3,19 +3,40 @@ package com.voicechat.server.manager;
 import com.voicechat.common.data.player.PlayerVoiceState;
 import com.voicechat.server.util.LogUtils;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class PlayerVoiceManager {
 
     private final Map<UUID, PlayerVoiceState> players = new ConcurrentHashMap<>();
+    // Republished by writers on every join, leave and state change; read once per routed frame
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private final Runnable publisher = this::publish;
 
     public PlayerVoiceState getState(UUID playerId) {
         if (playerId == null) {
             throw new IllegalArgumentException("Player ID cannot be null");
         }
-        return players.computeIfAbsent(playerId, PlayerVoiceState::new);
+        PlayerVoiceState state = players.get(playerId);
+        if (state != null) {
+            return state;
+        }
+
+        PlayerVoiceState created = new PlayerVoiceState(playerId);
+        created.setChangeListener(publisher);
+        state = players.putIfAbsent(playerId, created);
+        if (state != null) {
+            return state;
+        }
+        publish();
+        return created;
+    }
+
+    public PlayerVoiceState getStateIfPresent(UUID playerId) {
+        return playerId == null ? null : players.get(playerId);
     }
 
     public void removePlayer(UUID playerId) {
@@ -25,6 +46,8 @@ public class PlayerVoiceManager {
 
         PlayerVoiceState removed = players.remove(playerId);
         if (removed != null) {
+            removed.setChangeListener(null);
+            publish();
             LogUtils.info("Removed player from voice manager: " + playerId);
         }
     }
@@ -33,8 +56,19 @@ public class PlayerVoiceManager {
         return playerId != null && players.containsKey(playerId);
     }
 
+    /**
+     * @return a live, read-only view of all player states
+     */
     public Map<UUID, PlayerVoiceState> getAllPlayers() {
-        return new ConcurrentHashMap<>(players);
+        return Collections.unmodifiableMap(players);
+    }
+
+    /**
+     * The routing-relevant state of every player as of the last change. Readers take
+     * it with one volatile read and may keep it for as long as they route one frame.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
     }
 
     public int getPlayerCount() {
@@ -43,7 +77,138 @@ public class PlayerVoiceManager {
 
     public void clear() {
         int count = players.size();
+        for (PlayerVoiceState state : players.values()) {
+            state.setChangeListener(null);
+        }
         players.clear();
+        publish();
         LogUtils.info("Cleared " + count + " players from voice manager");
     }
+
+    /**
+     * Rebuilds the snapshot from the current states. Serialized, so an epoch never
+     * goes backwards and the last writer's change is always in the published one.
+     */
+    private synchronized void publish() {
+        snapshot = new Snapshot(snapshot.epoch + 1, players.values());
+    }
+
+    /**
+     * Immutable, array-backed copy of what the router checks per receiver: deafen,
+     * occlusion preference and muted speakers. Players are found by an open-addressed
+     * table over the two halves of their UUID, so a lookup compares longs and touches
+     * no shared mutable state.
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(0, Collections.emptyList());
+
+        private static final UUID[] NONE = new UUID[0];
+
+        private final long epoch;
+        private final int size;
+        private final int mask;
+        // Slot -> player index + 1, or 0 when empty
+        private final int[] slots;
+        private final long[] mostSignificantBits;
+        private final long[] leastSignificantBits;
+        private final boolean[] deafened;
+        private final boolean[] occlusionEnabled;
+        private final UUID[][] mutedPlayers;
+
+        Snapshot(long epoch, Iterable<PlayerVoiceState> states) {
+            int count = 0;
+            for (PlayerVoiceState ignored : states) {
+                count++;
+            }
+
+            // At most half full, so probes stay short
+            int capacity = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+            this.epoch = epoch;
+            this.mask = capacity - 1;
+            this.slots = new int[capacity];
+            this.mostSignificantBits = new long[count];
+            this.leastSignificantBits = new long[count];
+            this.deafened = new boolean[count];
+            this.occlusionEnabled = new boolean[count];
+            this.mutedPlayers = new UUID[count][];
+
+            int size = 0;
+            for (PlayerVoiceState state : states) {
+                // The map may have grown since it was counted
+                if (size == count) {
+                    break;
+                }
+                UUID playerId = state.getPlayerId();
+                mostSignificantBits[size] = playerId.getMostSignificantBits();
+                leastSignificantBits[size] = playerId.getLeastSignificantBits();
+                deafened[size] = state.isDeafened();
+                occlusionEnabled[size] = state.isOcclusionEnabled();
+                Set<UUID> muted = state.getMutedPlayers();
+                mutedPlayers[size] = muted.isEmpty() ? NONE : muted.toArray(NONE);
+
+                int slot = slot(mostSignificantBits[size], leastSignificantBits[size]);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = ++size;
+            }
+            this.size = size;
+        }
+
+        private int slot(long mostSignificantBits, long leastSignificantBits) {
+            long hash = (mostSignificantBits ^ leastSignificantBits) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+
+        /**
+         * @return the player's index in this snapshot, or -1 if they have no voice state
+         */
+        public int indexOf(UUID playerId) {
+            long most = playerId.getMostSignificantBits();
+            long least = playerId.getLeastSignificantBits();
+            int slot = slot(most, least);
+            int entry;
+            while ((entry = slots[slot]) != 0) {
+                int index = entry - 1;
+                if (mostSignificantBits[index] == most && leastSignificantBits[index] == least) {
+                    return index;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        public boolean isDeafened(int index) {
+            return deafened[index];
+        }
+
+        public boolean isOcclusionEnabled(int index) {
+            return occlusionEnabled[index];
+        }
+
+        /**
+         * @return true if the player at index has muted the given speaker
+         */
+        public boolean hasMuted(int index, UUID speakerId) {
+            // Usually empty or a handful of players, so a scan beats a set
+            for (UUID muted : mutedPlayers[index]) {
+                if (muted.equals(speakerId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Incremented each time any player joins, leaves or changes state
+         */
+        public long getEpoch() {
+            return epoch;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
 }
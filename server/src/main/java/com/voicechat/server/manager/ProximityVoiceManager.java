@@ -1,5 +1,8 @@
 package com.voicechat.server.manager;
 
+import com.voicechat.common.audio.ProximityCalculator;
+import com.voicechat.server.audio.AudibilityGraph;
+import com.voicechat.server.audio.OcclusionEngine;
 import com.voicechat.server.manager.PlayerPositionManager.PlayerPosition;
 import com.voicechat.server.util.LogUtils;
 
@@ -9,10 +12,16 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Manages proximity-based voice chat calculations.
  * Handles volume attenuation, occlusion, and spatial audio.
+ * Occlusion is the count of blocks between speaker and listener times the
+ * configured attenuation per block, whether the count comes from the audibility
+ * graph or from a raycast here.
  */
 public class ProximityVoiceManager {
 
     private final PlayerPositionManager positionManager;
+    private final OcclusionEngine occlusionEngine;
+    // Shared with the packet router; null computes everything per call
+    private final AudibilityGraph audibilityGraph;
     private final Map<UUID, ProximitySettings> playerSettings = new ConcurrentHashMap<>();
 
     // Default settings
@@ -22,8 +31,15 @@ public class ProximityVoiceManager {
     private boolean enableOcclusion = true;
     private boolean enable3DAudio = true;
 
-    public ProximityVoiceManager(PlayerPositionManager positionManager) {
+    public ProximityVoiceManager(PlayerPositionManager positionManager, OcclusionEngine occlusionEngine) {
+        this(positionManager, occlusionEngine, null);
+    }
+
+    public ProximityVoiceManager(PlayerPositionManager positionManager, OcclusionEngine occlusionEngine,
+            AudibilityGraph audibilityGraph) {
         this.positionManager = positionManager;
+        this.occlusionEngine = occlusionEngine;
+        this.audibilityGraph = audibilityGraph;
         LogUtils.info("ProximityVoiceManager initialized");
     }
 
@@ -31,14 +47,19 @@ public class ProximityVoiceManager {
      * Calculates voice data for a speaking player to all listeners.
      */
     public Map<UUID, VoiceData> calculateVoiceData(UUID speakerId, byte[] audioData) {
+        double range = getEffectiveRange(getSettings(speakerId).voiceMode);
+
+        // The graph only holds receivers within its own range, so a longer range is computed here
+        AudibilityGraph.Edges edges = audibilityGraph != null ? audibilityGraph.getEdges(speakerId) : null;
+        if (edges != null && range <= edges.getRange()) {
+            return calculateVoiceData(edges, range, audioData);
+        }
+
         PlayerPosition speakerPos = positionManager.getPosition(speakerId);
         if (speakerPos == null) {
             return Map.of();
         }
 
-        ProximitySettings speakerSettings = getSettings(speakerId);
-        double range = getEffectiveRange(speakerSettings.voiceMode);
-
         Map<UUID, VoiceData> voiceDataMap = new HashMap<>();
         Set<UUID> nearbyPlayers = positionManager.getPlayersInRange(speakerId);
 
@@ -56,7 +77,9 @@ public class ProximityVoiceManager {
 
             // Apply occlusion if enabled
             if (enableOcclusion) {
-                volume *= calculateOcclusionFactor(speakerPos, listenerPos);
+                int blocked = occlusionEngine.countBlockedBlocks(speakerPos.x, speakerPos.y, speakerPos.z,
+                        listenerPos.x, listenerPos.y, listenerPos.z);
+                volume = ProximityCalculator.applyOcclusion(volume, blocked, occlusionEngine.getAttenuationPerBlock());
             }
 
             // Calculate 3D audio parameters
@@ -76,6 +99,40 @@ public class ProximityVoiceManager {
         return voiceDataMap;
     }
 
+    /**
+     * Builds voice data from the tick's precomputed distances, occlusion and directions.
+     */
+    private Map<UUID, VoiceData> calculateVoiceData(AudibilityGraph.Edges edges, double range, byte[] audioData) {
+        float attenuation = occlusionEngine.getAttenuationPerBlock();
+
+        Map<UUID, VoiceData> voiceDataMap = new HashMap<>();
+        for (int i = 0; i < edges.size(); i++) {
+            double distance = edges.getDistance(i);
+            // Receivers are sorted by distance
+            if (distance > range)
+                break;
+
+            float volume = calculateVolume(distance, range);
+            if (enableOcclusion) {
+                volume = ProximityCalculator.applyOcclusion(volume, edges.getBlockedBlocks(i), attenuation);
+            }
+
+            SpatialAudio spatialAudio = null;
+            if (enable3DAudio) {
+                spatialAudio = new SpatialAudio(edges.getAzimuth(i), edges.getElevation(i), (float) distance);
+            }
+
+            voiceDataMap.put(edges.getReceiver(i), new VoiceData(
+                    edges.getSpeakerId(),
+                    audioData,
+                    volume,
+                    distance,
+                    spatialAudio));
+        }
+
+        return voiceDataMap;
+    }
+
     /**
      * Calculates volume based on distance with smooth falloff.
      */
@@ -92,26 +149,6 @@ public class ProximityVoiceManager {
         return (float) Math.max(0.1, Math.min(1.0, volume));
     }
 
-    /**
-     * Calculates occlusion factor based on line of sight.
-     * Returns 1.0 for no occlusion, lower values for blocked paths.
-     */
-    private float calculateOcclusionFactor(PlayerPosition speaker, PlayerPosition listener) {
-        // Simplified occlusion: reduce volume based on Y-axis difference
-        // In real implementation, this would raycast through blocks
-        double yDiff = Math.abs(speaker.y - listener.y);
-
-        if (yDiff < 5.0) {
-            return 1.0f; // Same level, no occlusion
-        } else if (yDiff < 10.0) {
-            return 0.7f; // One floor difference
-        } else if (yDiff < 20.0) {
-            return 0.4f; // Two floors difference
-        } else {
-            return 0.2f; // Multiple floors
-        }
-    }
-
     /**
      * Calculates 3D spatial audio parameters.
      */
@@ -0,0 +1,24 @@
+package com.voicechat.server.network;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Outbound datagram path used by the router.
+ */
+@FunctionalInterface
+public interface DatagramSender {
+
+    /**
+     * Sends the bytes between the buffer's position and limit. The buffer may be
+     * reused by the caller once this returns.
+     */
+    void send(ByteBuffer datagram, SocketAddress target) throws IOException;
+
+    /**
+     * Drops anything still queued for a target that has gone away.
+     */
+    default void forget(SocketAddress target) {
+    }
+}
@@ -0,0 +1,228 @@
+package com.voicechat.server.network;
+
+import com.voicechat.common.network.packet.VoiceBundle;
+import com.voicechat.common.network.protocol.PacketType;
+import com.voicechat.server.util.LogUtils;
+import com.voicechat.server.util.TimingWheel;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queues compact broadcasts per receiver and sends them once per frame period as a
+ * single {@link VoiceBundle}, instead of one datagram per speaker. A bundle that
+ * would outgrow the MTU is sent early; a receiver with only one queued frame gets
+ * it unwrapped. Flushes are driven by the server's {@link TimingWheel}.
+ *
+ * <p>A bundle is closed, under its monitor, before it leaves the map, whether it
+ * idled out or its receiver was removed. An enqueue that looked up the bundle just
+ * before that finds it closed and retries on a fresh one, so no frame is appended
+ * to a bundle that will never be flushed.</p>
+ */
+public class EgressScheduler {
+
+    // Ticks a receiver's buffer is kept without traffic before it is dropped
+    private static final int IDLE_TICKS = 250;
+
+    private final DatagramSender sender;
+    private final int mtu;
+    private final Map<SocketAddress, Bundle> bundles = new ConcurrentHashMap<>();
+    private TimingWheel.Timeout ticker;
+    private volatile boolean running = false;
+
+    private final LongAdder framesQueued = new LongAdder();
+    private final LongAdder datagramsSent = new LongAdder();
+    private final LongAdder earlyFlushes = new LongAdder();
+
+    /**
+     * @param sender sends one datagram immediately
+     * @param mtu largest datagram to build, excluding IP and UDP headers
+     */
+    public EgressScheduler(DatagramSender sender, int mtu) {
+        this.sender = sender;
+        this.mtu = mtu;
+    }
+
+    public void start(TimingWheel timers, int intervalMs) {
+        if (running) {
+            return;
+        }
+        ticker = timers.scheduleAtFixedRate(this::flush, intervalMs, intervalMs);
+        running = true;
+    }
+
+    /**
+     * Cancels the flush timer and sends whatever is still queued.
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        ticker.cancel();
+        ticker = null;
+        flush();
+        bundles.clear();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return true for datagrams the receiver can take inside a bundle
+     */
+    public static boolean isBundleable(ByteBuffer datagram) {
+        return datagram.hasRemaining() && datagram.get(datagram.position()) == PacketType.VOICE_BROADCAST_COMPACT;
+    }
+
+    /**
+     * Queues a datagram for the next flush, copying it, so the caller may reuse the
+     * buffer once this returns.
+     */
+    public void enqueue(ByteBuffer datagram, SocketAddress target) throws IOException {
+        if (!running || VoiceBundle.HEADER_SIZE + VoiceBundle.entrySize(datagram.remaining()) > mtu) {
+            sender.send(datagram, target);
+            datagramsSent.increment();
+            return;
+        }
+
+        for (;;) {
+            Bundle bundle = bundles.get(target);
+            if (bundle == null) {
+                bundle = bundles.computeIfAbsent(target, address -> new Bundle());
+            }
+
+            synchronized (bundle) {
+                if (bundle.closed) {
+                    // Evicted since the lookup; the map no longer holds it
+                    continue;
+                }
+                if (!bundle.fits(datagram.remaining())) {
+                    bundle.send(target);
+                    earlyFlushes.increment();
+                }
+                bundle.add(datagram);
+            }
+            framesQueued.increment();
+            return;
+        }
+    }
+
+    /**
+     * Sends every queued bundle. Runs on the timing wheel once per interval.
+     */
+    public void flush() {
+        Iterator<Map.Entry<SocketAddress, Bundle>> it = bundles.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<SocketAddress, Bundle> entry = it.next();
+            Bundle bundle = entry.getValue();
+            synchronized (bundle) {
+                if (bundle.frames == 0) {
+                    if (++bundle.idleTicks > IDLE_TICKS) {
+                        bundle.closed = true;
+                        // Not it.remove(): the receiver may have been removed and re-added meanwhile
+                        bundles.remove(entry.getKey(), bundle);
+                    }
+                    continue;
+                }
+                try {
+                    bundle.send(entry.getKey());
+                } catch (IOException e) {
+                    LogUtils.warn("Failed to send voice bundle: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops a receiver's queue, e.g. when it disconnects.
+     */
+    public void remove(SocketAddress target) {
+        Bundle bundle = bundles.remove(target);
+        if (bundle != null) {
+            synchronized (bundle) {
+                bundle.closed = true;
+            }
+        }
+    }
+
+    public long getFramesQueued() {
+        return framesQueued.sum();
+    }
+
+    /**
+     * Datagrams actually written, bundled or not; compare with frames queued
+     */
+    public long getDatagramsSent() {
+        return datagramsSent.sum();
+    }
+
+    /**
+     * Bundles sent before the tick because the next frame would not fit
+     */
+    public long getEarlyFlushes() {
+        return earlyFlushes.sum();
+    }
+
+    public int getReceiverCount() {
+        return bundles.size();
+    }
+
+    /**
+     * One receiver's pending frames, guarded by its own monitor.
+     */
+    private final class Bundle {
+        private final ByteBuffer buffer;
+        private int frames;
+        private int firstStart;
+        private int firstEnd;
+        private int idleTicks;
+        // Set once the bundle has left the map; never cleared
+        private boolean closed;
+
+        Bundle() {
+            this.buffer = ByteBuffer.allocate(mtu);
+            reset();
+        }
+
+        boolean fits(int length) {
+            return VoiceBundle.entrySize(length) <= buffer.remaining();
+        }
+
+        void add(ByteBuffer datagram) {
+            VoiceBundle.append(buffer, datagram);
+            if (frames++ == 0) {
+                firstStart = buffer.position() - datagram.remaining();
+                firstEnd = buffer.position();
+            }
+            idleTicks = 0;
+        }
+
+        void send(SocketAddress target) throws IOException {
+            if (frames == 1) {
+                // Nothing to share the datagram with, so skip the bundle framing
+                buffer.limit(firstEnd).position(firstStart);
+            } else {
+                buffer.flip();
+            }
+            try {
+                sender.send(buffer, target);
+                datagramsSent.increment();
+            } finally {
+                reset();
+            }
+        }
+
+        void reset() {
+            buffer.clear();
+            VoiceBundle.start(buffer);
+            frames = 0;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.voicechat.server.network;
+
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.common.network.packet.BasePacket;
+import com.voicechat.server.util.LogUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * UDP receive engine built on {@link DatagramChannel}.
+ * Runs N receive threads (one SO_REUSEPORT channel each where supported, otherwise
+ * sharing a single channel) that decode datagrams and hand them off for routing,
+ * so a slow route never stalls voice ingress. Voice frames go to the server's
+ * {@link RoutingExecutor} lanes when it has them; control packets, and voice frames
+ * when lanes are disabled, go to a bounded worker pool.
+ */
+public class NioVoiceEngine {
+
+    private final VoiceServer server;
+    private final VoiceChatConfig.NetworkConfig config;
+    private final List<DatagramChannel> channels = new ArrayList<>();
+    private final List<Thread> receiveThreads = new ArrayList<>();
+    private ThreadPoolExecutor workers;
+    // Receive buffers, pooled with the view and task that carry a voice frame to routing
+    private VoiceFrame.Pool framePool;
+    private volatile DatagramChannel sendChannel;
+    private volatile boolean running = false;
+
+    // Backpressure counters
+    private final LongAdder packetsReceived = new LongAdder();
+    private final LongAdder packetsRouted = new LongAdder();
+    private final LongAdder packetsRateLimited = new LongAdder();
+    private final LongAdder packetsMalformed = new LongAdder();
+    private final LongAdder packetsDropped = new LongAdder();
+
+    public NioVoiceEngine(VoiceServer server, VoiceChatConfig.NetworkConfig config) {
+        this.server = server;
+        this.config = config;
+    }
+
+    public void start() throws IOException {
+        int port = config.getVoicePort();
+        int threadCount = Math.max(1, config.getReceiveThreads());
+        int workerCount = Math.max(1, config.getWorkerThreads());
+        int queueCapacity = Math.max(1, config.getWorkerQueueCapacity());
+
+        // Enough buffers for every queued, executing and in-flight receive
+        int laneBuffers = Math.max(0, config.getRoutingLanes()) * (config.getRoutingLaneCapacity() + 1);
+        framePool = new VoiceFrame.Pool(config.getMaxPacketSize(),
+            queueCapacity + workerCount + laneBuffers + threadCount,
+            (view, sender) -> {
+                server.routeVoicePacket(view, sender);
+                packetsRouted.increment();
+            });
+
+        AtomicInteger workerIndex = new AtomicInteger();
+        workers = new ThreadPoolExecutor(
+            workerCount, workerCount,
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            r -> {
+                Thread t = new Thread(r, "VoiceServer-Worker-" + workerIndex.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            },
+            (r, executor) -> {
+                packetsDropped.increment();
+                if (r instanceof VoiceFrame) {
+                    ((VoiceFrame) r).recycle();
+                }
+            }
+        );
+
+        running = true;
+
+        try {
+            DatagramChannel first = openChannel(port, threadCount > 1);
+            channels.add(first);
+
+            boolean reusePort = threadCount > 1 && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+            for (int i = 1; i < threadCount && reusePort; i++) {
+                channels.add(openChannel(port, true));
+            }
+
+            for (int i = 0; i < threadCount; i++) {
+                // Without SO_REUSEPORT every thread blocks on the shared channel
+                DatagramChannel channel = channels.get(reusePort ? i : 0);
+                Thread t = new Thread(() -> receiveLoop(channel), "VoiceServer-Receiver-" + i);
+                t.setDaemon(true);
+                receiveThreads.add(t);
+            }
+            sendChannel = first;
+            receiveThreads.forEach(Thread::start);
+
+            LogUtils.info("NIO voice engine started on port " + port + " with " + threadCount
+                + " receive threads (" + (reusePort ? "SO_REUSEPORT" : "shared channel") + ") and "
+                + workerCount + " workers");
+
+        } catch (IOException e) {
+            stop();
+            throw e;
+        }
+    }
+
+    private DatagramChannel openChannel(int port, boolean reusePort) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            if (reusePort && channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            channel.configureBlocking(true);
+            channel.bind(new InetSocketAddress(port));
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void receiveLoop(DatagramChannel channel) {
+        while (running) {
+            VoiceFrame frame = framePool.acquire();
+            ByteBuffer buffer = frame.buffer();
+            boolean handedOff = false;
+
+            try {
+                SocketAddress sender = channel.receive(buffer);
+                if (sender == null) {
+                    continue;
+                }
+                packetsReceived.increment();
+
+                buffer.flip();
+
+                // Check rate limit
+                if (!server.allowPacket(buffer, sender)) {
+                    packetsRateLimited.increment();
+                    continue;
+                }
+
+                if (!server.screenPacket(buffer)) {
+                    packetsMalformed.increment();
+                    continue;
+                }
+
+                if (VoiceServer.isVoiceData(buffer)) {
+                    // Voice frames travel to the worker inside their pooled frame
+                    if (!frame.bind(sender)) {
+                        packetsMalformed.increment();
+                        continue;
+                    }
+                    handedOff = true;
+                    if (!server.submitVoicePacket(frame.view(), frame)) {
+                        // No lanes, or the speaker's lane is full
+                        if (server.getRoutingExecutor() != null) {
+                            packetsDropped.increment();
+                            frame.recycle();
+                        } else {
+                            workers.execute(frame);
+                        }
+                    }
+                    continue;
+                }
+
+                if (!server.admitHandshake(buffer, sender)) {
+                    // Answered with a cookie challenge, counted by the server's cookies
+                    continue;
+                }
+
+                BasePacket packet = server.decodePacket(buffer);
+                if (packet == null) {
+                    packetsMalformed.increment();
+                    continue;
+                }
+
+                // Rejected tasks are counted by the pool's rejection handler
+                workers.execute(() -> {
+                    server.dispatchPacket(packet, sender);
+                    packetsRouted.increment();
+                });
+
+            } catch (ClosedChannelException e) {
+                // Channel closed by stop()
+                break;
+            } catch (IOException e) {
+                if (running) {
+                    LogUtils.warn("Packet receive error: " + e.getMessage());
+                }
+            } catch (Exception e) {
+                LogUtils.warn("Unexpected error in receive loop: " + e.getMessage());
+            } finally {
+                if (!handedOff) {
+                    frame.recycle();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a datagram from the engine's port. DatagramChannel sends are
+     * thread-safe, so any worker may call this.
+     */
+    public void send(ByteBuffer datagram, SocketAddress target) throws IOException {
+        DatagramChannel channel = sendChannel;
+        if (channel == null) {
+            throw new ClosedChannelException();
+        }
+        channel.send(datagram, target);
+    }
+
+    public void stop() {
+        running = false;
+        sendChannel = null;
+
+        // Closing a channel wakes any thread blocked in receive()
+        for (DatagramChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LogUtils.warn("Error closing voice channel: " + e.getMessage());
+            }
+        }
+        channels.clear();
+
+        for (Thread t : receiveThreads) {
+            try {
+                t.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        receiveThreads.clear();
+
+        if (workers != null) {
+            workers.shutdown();
+            try {
+                if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                    workers.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                workers.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            workers = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getPacketsReceived() {
+        return packetsReceived.sum();
+    }
+
+    public long getPacketsRouted() {
+        return packetsRouted.sum();
+    }
+
+    public long getPacketsRateLimited() {
+        return packetsRateLimited.sum();
+    }
+
+    public long getPacketsMalformed() {
+        return packetsMalformed.sum();
+    }
+
+    /**
+     * Packets decoded but dropped because the worker queue or a routing lane was full.
+     */
+    public long getPacketsDropped() {
+        return packetsDropped.sum();
+    }
+
+    /**
+     * Receive frames currently free in the pool.
+     */
+    public int getFramesAvailable() {
+        VoiceFrame.Pool pool = framePool;
+        return pool == null ? 0 : pool.getAvailable();
+    }
+
+    /**
+     * Receives that found the frame pool empty and had to allocate.
+     */
+    public long getFrameMisses() {
+        VoiceFrame.Pool pool = framePool;
+        return pool == null ? 0 : pool.getMisses();
+    }
+
+    public int getQueueDepth() {
+        ThreadPoolExecutor pool = workers;
+        RoutingExecutor lanes = server.getRoutingExecutor();
+        return (pool == null ? 0 : pool.getQueue().size()) + (lanes == null ? 0 : lanes.getQueueDepth());
+    }
+}
@@ -0,0 +1,267 @@
+package com.voicechat.server.network;
+
+import com.voicechat.server.util.LogUtils;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs routing work on a fixed set of single-threaded lanes, sharded by speaker.
+ * Every frame from one speaker lands on the same lane, so a speaker's frames are
+ * routed in arrival order while different speakers route in parallel.
+ *
+ * <p>Each lane is fed by a bounded lock-free multi-producer single-consumer ring:
+ * receive threads claim a slot with one CAS on the tail and the lane thread drains
+ * it without any atomic read-modify-write. An idle lane spins briefly, then parks
+ * until the next producer unparks it. A full lane rejects work instead of blocking
+ * the receive thread.</p>
+ */
+public class RoutingExecutor {
+
+    // Empty polls before an idle lane parks
+    private static final int SPIN_LIMIT = 200;
+    // Upper bound on a park, in case an unpark is missed during shutdown
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Lane[] lanes;
+    private final LongAdder tasksRejected = new LongAdder();
+    private volatile boolean running = false;
+
+    /**
+     * @param laneCapacity tasks each lane can queue, rounded up to a power of two
+     */
+    public RoutingExecutor(String name, int laneCount, int laneCapacity) {
+        if (laneCount <= 0 || laneCapacity <= 0) {
+            throw new IllegalArgumentException("Lane count and capacity must be positive");
+        }
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(name + "-" + i, laneCapacity);
+        }
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * Queues a task on the speaker's lane. Safe to call from any thread.
+     * @return false if the executor is stopped or the lane is full; the caller
+     *         still owns whatever the task would have released
+     */
+    public boolean execute(long speakerKey, Runnable task) {
+        if (!running) {
+            tasksRejected.increment();
+            return false;
+        }
+        Lane lane = lanes[laneFor(speakerKey)];
+        if (!lane.offer(task)) {
+            tasksRejected.increment();
+            return false;
+        }
+        if (lane.parked) {
+            LockSupport.unpark(lane.thread);
+        }
+        return true;
+    }
+
+    /**
+     * @return the lane index for a speaker key
+     */
+    public int laneFor(long speakerKey) {
+        // Fibonacci hashing spreads sequential keys such as session ids
+        long mixed = speakerKey * 0x9E3779B97F4A7C15L;
+        return (int) ((mixed >>> 32) % lanes.length);
+    }
+
+    /**
+     * Shard key for a player, the same whichever packet layout named them.
+     */
+    public static long speakerKey(UUID playerId) {
+        return speakerKey(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+    }
+
+    public static long speakerKey(long mostSignificantBits, long leastSignificantBits) {
+        return mostSignificantBits ^ leastSignificantBits;
+    }
+
+    /**
+     * Stops accepting work, runs whatever is already queued and waits for the lanes
+     * to exit.
+     */
+    public void stop(long timeout, TimeUnit unit) {
+        running = false;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.thread);
+        }
+        for (Lane lane : lanes) {
+            try {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                lane.thread.join(Math.max(1, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (lane.thread.isAlive()) {
+                LogUtils.warn("Routing lane " + lane.thread.getName() + " did not stop in time");
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Tasks queued across all lanes
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Tasks refused because a lane was full or the executor was stopped
+     */
+    public long getTasksRejected() {
+        return tasksRejected.sum();
+    }
+
+    public long getTasksCompleted() {
+        long completed = 0;
+        for (Lane lane : lanes) {
+            completed += lane.head;
+        }
+        return completed;
+    }
+
+    /**
+     * One lane: a bounded MPSC ring and the thread that drains it. Each slot carries
+     * a sequence number; a producer owns a slot once its CAS on the tail succeeds and
+     * publishes the task by advancing the slot's sequence, which the consumer waits
+     * for before reading the task.
+     */
+    private final class Lane implements Runnable {
+        private final Runnable[] tasks;
+        private final AtomicLongArray sequence;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private final Thread thread;
+        // Written by the lane thread only; volatile so other threads can read depth
+        private volatile long head;
+        private volatile boolean parked;
+
+        Lane(String name, int requestedCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity) - 1) << 1;
+            tasks = new Runnable[capacity];
+            sequence = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                sequence.set(i, i);
+            }
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        boolean offer(Runnable task) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) position & mask;
+                long difference = sequence.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        tasks[index] = task;
+                        // Publishes the task to the consumer
+                        sequence.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    // The slot still holds a task from one lap ago
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        private Runnable poll() {
+            long position = head;
+            int index = (int) position & mask;
+            if (sequence.get(index) != position + 1) {
+                return null;
+            }
+            Runnable task = tasks[index];
+            tasks[index] = null;
+            // Hands the slot back to producers for the next lap
+            sequence.set(index, position + tasks.length);
+            head = position + 1;
+            return task;
+        }
+
+        int size() {
+            long size = tail.get() - head;
+            return (int) Math.max(0, Math.min(tasks.length, size));
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (true) {
+                Runnable task = poll();
+                if (task != null) {
+                    runTask(task);
+                    idle = 0;
+                    continue;
+                }
+                if (!running) {
+                    break;
+                }
+                if (++idle < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+
+                // Producers check the flag after publishing, so re-check before sleeping
+                parked = true;
+                if (sequence.get((int) head & mask) != head + 1 && running) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                parked = false;
+                idle = 0;
+            }
+
+            // Work accepted just before stop()
+            Runnable task;
+            while ((task = poll()) != null) {
+                runTask(task);
+            }
+        }
+
+        private void runTask(Runnable task) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LogUtils.warn("Routing task failed on " + thread.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.voicechat.server.network;
+
+import com.voicechat.common.network.packet.VoicePacketView;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A receive buffer pooled together with the view that parses it and the task that
+ * routes it, so a voice datagram travels from a receive thread to a worker or lane
+ * without allocating. The frame is its own routing task: running it routes the
+ * frame and returns it to its pool. A frame that is not run must be
+ * {@link #recycle() recycled} by whoever holds it.
+ */
+final class VoiceFrame implements Runnable {
+
+    /**
+     * Routes a bound frame; the frame is recycled afterwards.
+     */
+    interface Handler {
+        void route(VoicePacketView view, SocketAddress sender);
+    }
+
+    private final Pool pool;
+    private final ByteBuffer buffer;
+    private final VoicePacketView view = new VoicePacketView();
+    private SocketAddress sender;
+
+    private VoiceFrame(Pool pool) {
+        this.pool = pool;
+        this.buffer = ByteBuffer.allocateDirect(pool.bufferCapacity);
+    }
+
+    /**
+     * @return the receive buffer, cleared when the frame was acquired
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    VoicePacketView view() {
+        return view;
+    }
+
+    /**
+     * Parses the datagram between the buffer's position and limit.
+     * @return false if it is not a well-formed voice frame
+     */
+    boolean bind(SocketAddress sender) {
+        this.sender = sender;
+        return view.wrap(buffer);
+    }
+
+    @Override
+    public void run() {
+        try {
+            pool.handler.route(view, sender);
+        } finally {
+            recycle();
+        }
+    }
+
+    /**
+     * Unbinds the frame and returns it to its pool. The caller must not touch it afterwards.
+     */
+    void recycle() {
+        view.release();
+        sender = null;
+        pool.free.offer(this);
+    }
+
+    /**
+     * Bounded pool of frames. Acquiring from an empty pool allocates a new frame;
+     * recycling into a full pool drops it. Thread-safe.
+     */
+    static final class Pool {
+        private final int bufferCapacity;
+        private final Handler handler;
+        private final BlockingQueue<VoiceFrame> free;
+        private final LongAdder misses = new LongAdder();
+
+        Pool(int bufferCapacity, int maxPooled, Handler handler) {
+            if (bufferCapacity <= 0 || maxPooled <= 0) {
+                throw new IllegalArgumentException("Buffer capacity and pool size must be positive");
+            }
+            this.bufferCapacity = bufferCapacity;
+            this.handler = handler;
+            this.free = new ArrayBlockingQueue<>(maxPooled);
+        }
+
+        VoiceFrame acquire() {
+            VoiceFrame frame = free.poll();
+            if (frame == null) {
+                misses.increment();
+                return new VoiceFrame(this);
+            }
+            frame.buffer.clear();
+            return frame;
+        }
+
+        int getAvailable() {
+            return free.size();
+        }
+
+        /**
+         * Number of acquisitions that had to allocate a new frame.
+         */
+        long getMisses() {
+            return misses.sum();
+        }
+    }
+}
@@ -2,28 +2,86 @@ package com.voicechat.server.network;
 
 import com.voicechat.common.audio.ProximityCalculator;
 import com.voicechat.common.config.VoiceChatConfig;
-import com.voicechat.common.data.player.PlayerVoiceState;
-import com.voicechat.common.network.packet.VoiceBroadcastPacket;
+import com.voicechat.common.network.packet.AudioCodec;
+import com.voicechat.common.network.packet.CompactBroadcastTemplate;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.common.network.packet.KeepAlivePacket;
+import com.voicechat.common.network.packet.PlayerSessionPacket;
+import com.voicechat.common.network.packet.VoiceBroadcastTemplate;
 import com.voicechat.common.network.packet.VoiceMode;
 import com.voicechat.common.network.packet.VoicePacket;
+import com.voicechat.common.network.packet.VoicePacketView;
+import com.voicechat.common.network.protocol.ProtocolConstants;
 import com.voicechat.server.VoiceChatPlugin;
+import com.voicechat.server.audio.AudibilityGraph;
 import com.voicechat.server.audio.OcclusionEngine;
+import com.voicechat.server.audio.SilenceSuppressor;
+import com.voicechat.server.audio.SpeakerSelector;
+import com.voicechat.server.manager.PlayerPositionManager;
+import com.voicechat.server.manager.PlayerPositionManager.PlayerPosition;
+import com.voicechat.server.manager.PlayerVoiceManager;
+import com.voicechat.server.network.connection.SessionRegistry;
 import com.voicechat.server.util.LogUtils;
 
+import java.io.IOException;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 public class VoicePacketRouter {
 
-    private final VoiceChatPlugin plugin;
+    private final Supplier<VoiceChatConfig> configProvider;
+    private final PlayerVoiceManager playerManager;
+    private final PlayerPositionManager positionManager;
     private final OcclusionEngine occlusionEngine;
+    private final SilenceSuppressor silenceSuppressor;
+    private final AudibilityGraph audibilityGraph;
+    private final SpeakerSelector speakerSelector;
+    private final DatagramSender sender;
+    // Clients that never handshake, tracked by the address their frames arrive from
     private final Map<UUID, SocketAddress> playerAddresses = new ConcurrentHashMap<>();
+    private final SessionRegistry sessions = new SessionRegistry();
+    private final LongAdder packetsUnbound = new LongAdder();
+    private final LongAdder codecMismatches = new LongAdder();
+    private final LongAdder handshakesRefused = new LongAdder();
+    private final ThreadLocal<RouteContext> routeContexts = ThreadLocal.withInitial(RouteContext::new);
 
     public VoicePacketRouter(VoiceChatPlugin plugin) {
-        this.plugin = plugin;
-        this.occlusionEngine = new OcclusionEngine(plugin);
+        this(
+            plugin::getConfig,
+            plugin.getPlayerManager(),
+            plugin.getPositionManager(),
+            new OcclusionEngine(plugin),
+            // Voice server is created after the router, so resolve it per send
+            new DatagramSender() {
+                @Override
+                public void send(ByteBuffer datagram, SocketAddress target) throws IOException {
+                    plugin.getVoiceServer().send(datagram, target);
+                }
+
+                @Override
+                public void forget(SocketAddress target) {
+                    plugin.getVoiceServer().forget(target);
+                }
+            }
+        );
+    }
+
+    public VoicePacketRouter(Supplier<VoiceChatConfig> config, PlayerVoiceManager playerManager,
+            PlayerPositionManager positionManager, OcclusionEngine occlusionEngine, DatagramSender sender) {
+        this.configProvider = config;
+        this.playerManager = playerManager;
+        this.positionManager = positionManager;
+        this.occlusionEngine = occlusionEngine;
+        this.silenceSuppressor = new SilenceSuppressor(() -> config.get().getAudio());
+        this.audibilityGraph = new AudibilityGraph(config, positionManager, occlusionEngine);
+        this.speakerSelector = new SpeakerSelector(config);
+        this.sender = sender;
     }
 
     public void routeVoicePacket(VoicePacket packet, SocketAddress senderAddress) {
@@ -31,17 +89,101 @@ public class VoicePacketRouter {
             return;
         }
 
-        // Register sender address
-        playerAddresses.put(packet.getSenderId(), senderAddress);
+        SessionRegistry.Session session = sessions.get(packet.getSenderId());
+        if (!acceptLegacySender(session, packet.getSenderId(), senderAddress)) {
+            return;
+        }
+
+        AudibilityGraph.Edges edges = audibilityGraph.getEdges(packet.getSenderId());
+        if (edges != null) {
+            routeEdges(edges, session, packet.getMode(), ByteBuffer.wrap(packet.getOpusData()), packet.getTimestamp());
+            return;
+        }
 
         // Get sender position
-        double[] senderPos = getPlayerPosition(packet.getSenderId());
+        PlayerPosition senderPos = positionManager.getPosition(packet.getSenderId());
         if (senderPos == null) {
             LogUtils.warn("Cannot route packet: sender position unknown");
             return;
         }
 
-        routeVoicePacket(packet, senderPos[0], senderPos[1], senderPos[2]);
+        routeVoicePacket(packet, senderPos.world, senderPos.x, senderPos.y, senderPos.z);
+    }
+
+    /**
+     * Routes a voice frame straight from its receive buffer. The payload is forwarded
+     * as a slice of the view, so the view must not be released until this returns.
+     */
+    public void routeVoicePacket(VoicePacketView view, SocketAddress senderAddress) {
+        if (view == null || !view.isBound() || senderAddress == null) {
+            return;
+        }
+
+        SessionRegistry.Session session;
+        UUID senderId;
+        if (view.isCompact()) {
+            // Bound at handshake: one array read and an address check, no map access
+            session = sessions.getSession(view.getSenderSession());
+            if (session == null || !session.isBoundTo(senderAddress)) {
+                packetsUnbound.increment();
+                LogUtils.debug("Dropping compact voice packet for unbound session from " + senderAddress);
+                return;
+            }
+            session.markSeen();
+            senderId = session.getPlayerId();
+        } else {
+            // Player state is keyed by UUID, so the sender id is materialized once here
+            senderId = view.getSenderId();
+            session = sessions.get(senderId);
+            if (!acceptLegacySender(session, senderId, senderAddress)) {
+                return;
+            }
+        }
+
+        AudibilityGraph.Edges edges = audibilityGraph.getEdges(senderId);
+        if (edges != null) {
+            routeEdges(edges, session, view.getMode(), view.getOpusData(), view.getTimestamp());
+            return;
+        }
+
+        PlayerPosition senderPos = positionManager.getPosition(senderId);
+        if (senderPos == null) {
+            LogUtils.warn("Cannot route packet: sender position unknown");
+            return;
+        }
+
+        route(senderId, session, view.getMode(), view.getOpusData(), view.getTimestamp(),
+            senderPos.world, senderPos.x, senderPos.y, senderPos.z);
+    }
+
+    /**
+     * Checks a frame that names its sender by UUID. A player with a session only
+     * speaks from its bound address. A client that never handshook is dropped when
+     * handshakes are required, since its source address is unproven and its frames
+     * would still be fanned out; otherwise it is tracked by the address its frames
+     * come from, written only when that address changes.
+     * @return false if the frame should be dropped
+     */
+    private boolean acceptLegacySender(SessionRegistry.Session session, UUID senderId, SocketAddress senderAddress) {
+        if (session != null) {
+            if (session.isBoundTo(senderAddress)) {
+                session.markSeen();
+                return true;
+            }
+            packetsUnbound.increment();
+            LogUtils.debug("Dropping voice packet for " + senderId + " from unbound address " + senderAddress);
+            return false;
+        }
+
+        if (configProvider.get().getSecurity().isRequireHandshake()) {
+            packetsUnbound.increment();
+            LogUtils.debug("Dropping voice packet from " + senderId + " without a session");
+            return false;
+        }
+        if (!senderAddress.equals(playerAddresses.get(senderId))) {
+            playerAddresses.put(senderId, senderAddress);
+        }
+        return true;
     }
 
     public void routeVoicePacket(VoicePacket packet, double senderX, double senderY, double senderZ) {
@@ -49,95 +191,325 @@ public class VoicePacketRouter {
             return;
         }
 
-        VoiceChatConfig config = plugin.getConfig();
-        int maxDistance = getMaxDistance(packet.getMode(), config);
+        // Only the world is taken from the tracked position; coordinates come from the caller
+        PlayerPosition senderPos = positionManager.getPosition(packet.getSenderId());
+        if (senderPos == null) {
+            LogUtils.warn("Cannot route packet: sender world unknown");
+            return;
+        }
 
-        // Create a snapshot of players to avoid concurrent modification
-        Map<UUID, PlayerVoiceState> players = plugin.getPlayerManager().getAllPlayers();
+        routeVoicePacket(packet, senderPos.world, senderX, senderY, senderZ);
+    }
 
-        for (Map.Entry<UUID, PlayerVoiceState> entry : players.entrySet()) {
-            try {
-                UUID receiverId = entry.getKey();
+    public void routeVoicePacket(VoicePacket packet, String world,
+            double senderX, double senderY, double senderZ) {
+        if (packet == null || world == null) {
+            return;
+        }
 
-                // Skip sender
-                if (receiverId.equals(packet.getSenderId())) {
-                    continue;
-                }
+        route(packet.getSenderId(), sessions.get(packet.getSenderId()), packet.getMode(),
+            ByteBuffer.wrap(packet.getOpusData()), packet.getTimestamp(), world, senderX, senderY, senderZ);
+    }
 
-                PlayerVoiceState receiverState = entry.getValue();
+    /**
+     * Negotiates the protocol version with a client, binds it to a session id and
+     * the address the handshake came from, and exchanges session announcements with
+     * the compact clients. Only compact clients are told their session id. Clients
+     * retry until answered, so a repeated handshake only repeats the reply. A
+     * handshake for a player whose session is bound to another address is ignored
+     * until that session expires. The server checks the handshake's cookie before
+     * it gets here, so the address is one the client can receive on. A handshake
+     * naming a codec the server does not know is ignored.
+     */
+    public void handleHandshake(HandshakePacket packet, SocketAddress senderAddress) {
+        if (packet == null || senderAddress == null || packet.getPlayerId() == null) {
+            return;
+        }
+        AudioCodec codec = packet.getCodec();
+        if (codec == null) {
+            LogUtils.debug("Ignoring handshake with an unknown codec from " + senderAddress);
+            return;
+        }
 
-                // Check if receiver is deafened
-                if (receiverState.isDeafened()) {
-                    continue;
-                }
+        UUID playerId = packet.getPlayerId();
+        int version = Math.max(ProtocolConstants.LEGACY_PROTOCOL_VERSION,
+            Math.min(packet.getProtocolVersion(), ProtocolConstants.PROTOCOL_VERSION));
+        boolean known = sessions.get(playerId) != null;
+        SessionRegistry.Session session = sessions.register(playerId, version, codec, senderAddress);
+        if (session != null && !session.isBoundTo(senderAddress)) {
+            // Counted, not logged: anyone can send these
+            handshakesRefused.increment();
+            return;
+        }
+        if (session == null) {
+            LogUtils.warn("No session ids left, serving " + playerId + " the legacy protocol");
+            playerAddresses.put(playerId, senderAddress);
+            sendPacket(new HandshakePacket(ProtocolConstants.LEGACY_PROTOCOL_VERSION, playerId, 0, codec),
+                senderAddress);
+            return;
+        }
+        playerAddresses.remove(playerId);
 
-                // Check if sender is muted by receiver
-                if (receiverState.isPlayerMuted(packet.getSenderId())) {
-                    continue;
-                }
+        sendPacket(new HandshakePacket(session.getProtocolVersion(), playerId,
+            session.isCompact() ? session.getId() : 0, codec), senderAddress);
+        if (known) {
+            // A retry after a lost reply; the session was announced the first time
+            return;
+        }
 
-                // Get receiver position
-                double[] receiverPos = getPlayerPosition(receiverId);
-                if (receiverPos == null) {
-                    continue;
+        byte[] joined = PlayerSessionPacket.join(session.getId(), playerId).serialize();
+        for (SessionRegistry.Session other : sessions.getSessions().values()) {
+            if (other == session) {
+                continue;
+            }
+            if (session.isCompact()) {
+                sendPacket(PlayerSessionPacket.join(other.getId(), other.getPlayerId()), senderAddress);
+            }
+            if (other.isCompact()) {
+                sendDatagram(joined, other.getAddress());
+            }
+        }
+    }
+
+    /**
+     * Marks the session alive when a client echoes a keep-alive from its bound address.
+     */
+    public void handleKeepAlive(KeepAlivePacket packet, SocketAddress senderAddress) {
+        if (packet == null || packet.getPlayerId() == null) {
+            return;
+        }
+        SessionRegistry.Session session = sessions.get(packet.getPlayerId());
+        if (session != null && session.isBoundTo(senderAddress)) {
+            session.markSeen();
+        }
+    }
+
+    public void sendKeepAlive(SessionRegistry.Session session) {
+        sendDatagram(new KeepAlivePacket(session.getPlayerId(), System.currentTimeMillis()).serialize(),
+            session.getAddress());
+    }
+
+    /**
+     * Drops a session whose client stopped answering. The player keeps its voice
+     * state; the client handshakes again once it is reachable.
+     */
+    public void expireSession(SessionRegistry.Session session) {
+        // The session may have been closed, and its id reused, since the check was scheduled
+        if (sessions.getSession(session.getId()) != session) {
+            return;
+        }
+        LogUtils.info("Voice session " + session.getId() + " of " + session.getPlayerId() + " timed out");
+        removeSession(session.getPlayerId());
+    }
+
+    private void removeSession(UUID playerId) {
+        SessionRegistry.Session removed = sessions.remove(playerId);
+        if (removed == null) {
+            return;
+        }
+        sender.forget(removed.getAddress());
+
+        byte[] left = PlayerSessionPacket.leave(removed.getId(), playerId).serialize();
+        for (SessionRegistry.Session other : sessions.getSessions().values()) {
+            if (other.isCompact()) {
+                sendDatagram(left, other.getAddress());
+            }
+        }
+    }
+
+    private void sendPacket(HandshakePacket packet, SocketAddress target) {
+        sendDatagram(packet.serialize(), target);
+    }
+
+    private void sendPacket(PlayerSessionPacket packet, SocketAddress target) {
+        sendDatagram(packet.serialize(), target);
+    }
+
+    private void sendDatagram(byte[] data, SocketAddress target) {
+        try {
+            sender.send(ByteBuffer.wrap(data), target);
+        } catch (IOException e) {
+            LogUtils.warn("Failed to send session packet: " + e.getMessage());
+        }
+    }
+
+    private void route(UUID senderId, SessionRegistry.Session session, VoiceMode mode, ByteBuffer opusData,
+            long timestamp, String world, double senderX, double senderY, double senderZ) {
+        VoiceChatConfig config = configProvider.get();
+        int maxDistance = getMaxDistance(mode, config);
+
+        RouteContext ctx = routeContexts.get();
+        ctx.begin(senderId, session, opusData, timestamp, senderX, senderY, senderZ, maxDistance, config);
+        try {
+            // Candidates from the spatial index cells within the mode's radius, culled in one pass
+            PlayerPositionManager.NearbyPlayers nearby = ctx.nearby;
+            int count = positionManager.findPlayersNear(world, senderX, senderY, senderZ, maxDistance, nearby);
+
+            if (!silenceSuppressor.shouldForward(senderId, opusData)) {
+                // Count the receivers in range to report the sends saved
+                int receivers = 0;
+                for (int i = 0; i < count; i++) {
+                    if (!nearby.getPlayer(i).equals(senderId)) {
+                        receivers++;
+                    }
                 }
+                silenceSuppressor.recordSuppressedSends(receivers);
+                return;
+            }
 
-                // Calculate distance
-                double distance = calculateDistance(
-                    senderX, senderY, senderZ,
-                    receiverPos[0], receiverPos[1], receiverPos[2]
-                );
+            // Recorded here too, so the speaker competes once the graph tracks it
+            speakerSelector.recordFrame(senderId, mode, opusData);
+            Set<UUID> shed = speakerSelector.getShedReceivers(senderId);
+            int shedSends = 0;
 
-                // Check if within range
-                if (distance > maxDistance) {
+            for (int i = 0; i < count; i++) {
+                UUID receiverId = nearby.getPlayer(i);
+                if (shed != null && shed.contains(receiverId)) {
+                    shedSends++;
                     continue;
                 }
+                routeToReceiver(ctx, receiverId, nearby.getX(i), nearby.getY(i), nearby.getZ(i));
+            }
+            if (shedSends > 0) {
+                speakerSelector.recordShed(shedSends);
+            }
+        } finally {
+            ctx.end();
+        }
+    }
 
-                // Calculate volume based on distance
-                float volume = ProximityCalculator.calculateVolume(distance, maxDistance);
-
-                // Apply occlusion if enabled
-                if (config.getOcclusion().isEnabled() && receiverState.isOcclusionEnabled()) {
-                    int blockedBlocks = occlusionEngine.countBlockedBlocks(
-                        senderX, senderY, senderZ,
-                        receiverPos[0], receiverPos[1], receiverPos[2]
-                    );
-                    volume = ProximityCalculator.applyOcclusion(
-                        volume,
-                        blockedBlocks,
-                        config.getOcclusion().getAttenuationPerBlock()
-                    );
-                }
+    /**
+     * Routes a frame from a speaker tracked by the audibility graph: receivers,
+     * distances and volumes come from the last tick, so only per-receiver state
+     * (deafen, mute, occlusion preference) is checked here, against the player
+     * manager's snapshot.
+     */
+    private void routeEdges(AudibilityGraph.Edges edges, SessionRegistry.Session session, VoiceMode mode,
+            ByteBuffer opusData, long timestamp) {
+        VoiceChatConfig config = configProvider.get();
+        int maxDistance = getMaxDistance(mode, config);
+        // Receivers are sorted by distance, so the audible ones form a prefix
+        int audible = edges.countWithin(maxDistance);
+
+        RouteContext ctx = routeContexts.get();
+        ctx.begin(edges.getSpeakerId(), session, opusData, timestamp, edges.getX(), edges.getY(), edges.getZ(),
+            maxDistance, config);
+        try {
+            if (!silenceSuppressor.shouldForward(edges.getSpeakerId(), opusData)) {
+                silenceSuppressor.recordSuppressedSends(audible);
+                return;
+            }
 
-                // Skip if volume is too low
-                if (volume <= 0) {
+            UUID speakerId = edges.getSpeakerId();
+            speakerSelector.recordFrame(speakerId, mode, opusData);
+            // Receivers with too many active speakers only get their loudest ones
+            Set<UUID> shed = speakerSelector.getShedReceivers(speakerId);
+            int shedSends = 0;
+
+            boolean occlusionEnabled = config.getOcclusion().isEnabled();
+            for (int i = 0; i < audible; i++) {
+                if (shed != null && shed.contains(edges.getReceiver(i))) {
+                    shedSends++;
                     continue;
                 }
+                routeToReceiver(ctx, edges, i, mode, occlusionEnabled);
+            }
+            if (shedSends > 0) {
+                speakerSelector.recordShed(shedSends);
+            }
+        } finally {
+            ctx.end();
+        }
+    }
+
+    private void routeToReceiver(RouteContext ctx, AudibilityGraph.Edges edges, int index, VoiceMode mode,
+            boolean occlusionEnabled) {
+        try {
+            UUID receiverId = edges.getReceiver(index);
+
+            PlayerVoiceManager.Snapshot players = ctx.players;
+            int receiver = players.indexOf(receiverId);
+            if (receiver < 0 || players.isDeafened(receiver) || players.hasMuted(receiver, ctx.senderId)) {
+                return;
+            }
+
+            float volume = edges.getVolume(index, mode, occlusionEnabled && players.isOcclusionEnabled(receiver));
+            if (volume <= 0) {
+                return;
+            }
+
+            sendToReceiver(ctx, receiverId, volume,
+                edges.getOffsetX(index), edges.getOffsetY(index), edges.getOffsetZ(index));
+
+        } catch (Exception e) {
+            LogUtils.warn("Error routing packet to player: " + e.getMessage());
+        }
+    }
+
+    private void routeToReceiver(RouteContext ctx, UUID receiverId, double receiverX, double receiverY,
+            double receiverZ) {
+        try {
+
+            // Skip sender
+            if (receiverId.equals(ctx.senderId)) {
+                return;
+            }
+
+            PlayerVoiceManager.Snapshot players = ctx.players;
+            int receiver = players.indexOf(receiverId);
+            if (receiver < 0) {
+                return;
+            }
+
+            // Check if receiver is deafened
+            if (players.isDeafened(receiver)) {
+                return;
+            }
+
+            // Check if sender is muted by receiver
+            if (players.hasMuted(receiver, ctx.senderId)) {
+                return;
+            }
 
-                // Create broadcast packet
-                VoiceBroadcastPacket broadcast = new VoiceBroadcastPacket(
-                    packet.getSenderId(),
-                    packet.getOpusData(),
+            // Calculate distance
+            double distance = calculateDistance(
+                ctx.senderX, ctx.senderY, ctx.senderZ,
+                receiverX, receiverY, receiverZ
+            );
+
+            // Calculate volume based on distance
+            float volume = ProximityCalculator.calculateVolume(distance, ctx.maxDistance);
+
+            // Apply occlusion if enabled
+            VoiceChatConfig config = ctx.config;
+            if (config.getOcclusion().isEnabled() && players.isOcclusionEnabled(receiver)) {
+                int blockedBlocks = occlusionEngine.countBlockedBlocks(
+                    ctx.senderX, ctx.senderY, ctx.senderZ,
+                    receiverX, receiverY, receiverZ
+                );
+                volume = ProximityCalculator.applyOcclusion(
                     volume,
-                    senderX, senderY, senderZ,
-                    false
+                    blockedBlocks,
+                    config.getOcclusion().getAttenuationPerBlock()
                 );
+            }
 
-                // Send to receiver
-                sendToPlayer(receiverId, broadcast);
-
-            } catch (Exception e) {
-                LogUtils.warn("Error routing packet to player: " + e.getMessage());
+            // Skip if volume is too low
+            if (volume <= 0) {
+                return;
             }
+
+            // Send the shared encoding with this receiver's volume patched in
+            sendToReceiver(ctx, receiverId, volume,
+                ctx.senderX - receiverX, ctx.senderY - receiverY, ctx.senderZ - receiverZ);
+
+        } catch (Exception e) {
+            LogUtils.warn("Error routing packet to player: " + e.getMessage());
         }
     }
 
     private int getMaxDistance(VoiceMode mode, VoiceChatConfig config) {
-        return switch (mode) {
-            case WHISPER -> config.getAudio().getWhisperDistance();
-            case SHOUT -> config.getAudio().getShoutDistance();
-            default -> config.getAudio().getNormalDistance();
-        };
+        return AudibilityGraph.getDistance(mode, config.getAudio());
     }
 
     private double calculateDistance(double x1, double y1, double z1, double x2, double y2, double z2) {
@@ -147,28 +519,169 @@ public class VoicePacketRouter {
         return Math.sqrt(dx * dx + dy * dy + dz * dz);
     }
 
-    private double[] getPlayerPosition(UUID playerId) {
-        // TODO: Get from Hytale API
-        // For now, return a dummy position
-        return new double[]{0, 0, 0};
-    }
-
-    private void sendToPlayer(UUID playerId, VoiceBroadcastPacket packet) {
-        // TODO: Send via Hytale network or UDP socket
-        SocketAddress address = playerAddresses.get(playerId);
+    /**
+     * Sends the frame in the receiver's negotiated format to its bound address,
+     * or to the last address seen for a client without a session. Frames are not
+     * sent to a receiver whose codec differs from the speaker's, as it would play
+     * them as noise; clients without a session announced no codec and get every frame.
+     * @param offsetX speaker x minus receiver x; likewise for y and z
+     */
+    private void sendToReceiver(RouteContext ctx, UUID receiverId, float volume,
+            double offsetX, double offsetY, double offsetZ) throws IOException {
+        SessionRegistry.Session receiver = sessions.get(receiverId);
+        if (receiver != null && ctx.senderCodec != null && receiver.getCodec() != ctx.senderCodec) {
+            codecMismatches.increment();
+            return;
+        }
+        SocketAddress address = receiver != null ? receiver.getAddress() : playerAddresses.get(receiverId);
         if (address == null) {
             LogUtils.warn("Cannot send packet: player address unknown");
             return;
         }
 
-        // TODO: Implement actual sending
+        if (ctx.senderSession != 0 && receiver != null && receiver.isCompact()) {
+            sender.send(ctx.compactDatagramFor(volume, false, offsetX, offsetY, offsetZ), address);
+        } else {
+            sender.send(ctx.datagramFor(volume, false), address);
+        }
     }
 
     public void removePlayer(UUID playerId) {
+        removeSession(playerId);
         playerAddresses.remove(playerId);
+        silenceSuppressor.removePlayer(playerId);
+        speakerSelector.removePlayer(playerId);
     }
 
     public void clear() {
+        sessions.clear();
         playerAddresses.clear();
+        silenceSuppressor.clear();
+        speakerSelector.clear();
+    }
+
+    public SessionRegistry getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Frames dropped because they named an unassigned session, came from an
+     * address other than the one their session is bound to, or had no session
+     * while handshakes are required
+     */
+    public long getPacketsUnbound() {
+        return packetsUnbound.sum();
+    }
+
+    /**
+     * Sends skipped because the receiver's codec differs from the speaker's
+     */
+    public long getCodecMismatches() {
+        return codecMismatches.sum();
+    }
+
+    /**
+     * Handshakes ignored because the player's session is bound to another address
+     */
+    public long getHandshakesRefused() {
+        return handshakesRefused.sum();
+    }
+
+    public SilenceSuppressor getSilenceSuppressor() {
+        return silenceSuppressor;
+    }
+
+    public OcclusionEngine getOcclusionEngine() {
+        return occlusionEngine;
+    }
+
+    public AudibilityGraph getAudibilityGraph() {
+        return audibilityGraph;
+    }
+
+    public SpeakerSelector getSpeakerSelector() {
+        return speakerSelector;
+    }
+
+    /**
+     * Per-thread state for one routed frame. The broadcast is encoded into each
+     * template at most once, on the first audible receiver of that protocol
+     * version, then patched per send.
+     */
+    private final class RouteContext {
+        private final PlayerPositionManager.NearbyPlayers nearby = new PlayerPositionManager.NearbyPlayers();
+        private VoiceBroadcastTemplate template;
+        private boolean encoded;
+        private CompactBroadcastTemplate compactTemplate;
+        private boolean compactEncoded;
+        // 0 when the sender has no session, so only the UUID form can name it
+        private int senderSession;
+        // Null when the sender has no session and announced no codec
+        private AudioCodec senderCodec;
+
+        private UUID senderId;
+        private ByteBuffer opusData;
+        private long timestamp;
+        private double senderX;
+        private double senderY;
+        private double senderZ;
+        private int maxDistance;
+        private VoiceChatConfig config;
+        // Read once per frame, so every receiver is checked against the same epoch
+        private PlayerVoiceManager.Snapshot players;
+
+        void begin(UUID senderId, SessionRegistry.Session session, ByteBuffer opusData, long timestamp,
+                double senderX, double senderY, double senderZ, int maxDistance, VoiceChatConfig config) {
+            this.senderId = senderId;
+            this.opusData = opusData;
+            this.timestamp = timestamp;
+            this.senderX = senderX;
+            this.senderY = senderY;
+            this.senderZ = senderZ;
+            this.maxDistance = maxDistance;
+            this.config = config;
+            this.players = playerManager.getSnapshot();
+            this.encoded = false;
+            this.compactEncoded = false;
+            this.senderSession = session != null ? session.getId() : 0;
+            this.senderCodec = session != null ? session.getCodec() : null;
+        }
+
+        ByteBuffer compactDatagramFor(float volume, boolean occluded, double offsetX, double offsetY,
+                double offsetZ) {
+            if (!compactEncoded) {
+                int required = opusData.remaining() + CompactBroadcastTemplate.OVERHEAD;
+                if (compactTemplate == null || compactTemplate.getCapacity() < required) {
+                    int capacity = Math.max(required,
+                        config.getNetwork().getMaxPacketSize() + CompactBroadcastTemplate.OVERHEAD);
+                    compactTemplate = new CompactBroadcastTemplate(capacity);
+                }
+                compactTemplate.encode(senderSession, opusData, timestamp);
+                compactEncoded = true;
+            }
+            return compactTemplate.forReceiver(volume, occluded, offsetX, offsetY, offsetZ);
+        }
+
+        ByteBuffer datagramFor(float volume, boolean occluded) {
+            if (!encoded) {
+                int required = opusData.remaining() + VoiceBroadcastTemplate.OVERHEAD;
+                if (template == null || template.getCapacity() < required) {
+                    int capacity = Math.max(required,
+                        config.getNetwork().getMaxPacketSize() + VoiceBroadcastTemplate.OVERHEAD);
+                    template = new VoiceBroadcastTemplate(capacity);
+                }
+                template.encode(senderId, opusData, senderX, senderY, senderZ, timestamp);
+                encoded = true;
+            }
+            return template.forReceiver(volume, occluded);
+        }
+
+        void end() {
+            // Drop references so pooled payload buffers are not retained
+            senderId = null;
+            opusData = null;
+            config = null;
+            players = null;
+        }
     }
 }
@@ -1,33 +1,74 @@
 package com.voicechat.server.network;
 
+import com.voicechat.common.config.VoiceChatConfig;
 import com.voicechat.common.network.packet.BasePacket;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.common.network.packet.KeepAlivePacket;
 import com.voicechat.common.network.packet.VoicePacket;
+import com.voicechat.common.network.packet.VoicePacketView;
+import com.voicechat.common.network.protocol.PacketType;
 import com.voicechat.common.network.serialization.PacketDeserializer;
+import com.voicechat.common.network.serialization.PacketValidator;
 import com.voicechat.server.VoiceChatPlugin;
+import com.voicechat.server.network.connection.SessionRegistry;
+import com.voicechat.server.security.HandshakeCookies;
 import com.voicechat.server.security.RateLimiter;
+import com.voicechat.server.util.CoarseClock;
 import com.voicechat.server.util.LogUtils;
+import com.voicechat.server.util.TimingWheel;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.SocketAddress;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 public class VoiceServer {
 
-    private final VoiceChatPlugin plugin;
-    private DatagramSocket socket;
+    private final Supplier<VoiceChatConfig> configProvider;
+    private final Supplier<VoicePacketRouter> routerProvider;
+    private final Supplier<TimingWheel> timersProvider;
+    private volatile DatagramSocket socket;
+    private volatile NioVoiceEngine nioEngine;
     private ExecutorService executor;
-    private ScheduledExecutorService cleanupExecutor;
-    private RateLimiter rateLimiter;
+    private volatile RateLimiter rateLimiter;
+    private CoarseClock rateClock;
+    private final HandshakeCookies handshakeCookies;
+    // Challenges bypass the egress scheduler; one instance so screening allocates nothing
+    private final DatagramSender challengeSender;
+    private volatile EgressScheduler egressScheduler;
+    private volatile RoutingExecutor routingExecutor;
+    // Legacy listener only: voice frames are copied out of the socket buffer for the lanes
+    private VoiceFrame.Pool laneFrames;
     private volatile boolean running = false;
+    // Datagrams that failed validation, indexed by PacketValidator result code
+    private final LongAdder[] packetsRejected = new LongAdder[PacketValidator.REASONS];
 
     public VoiceServer(VoiceChatPlugin plugin) {
-        this.plugin = plugin;
+        // Router and timers are created around the server, so resolve them when used
+        this(plugin::getConfig, plugin::getPacketRouter, plugin::getTimers, new HandshakeCookies(), null);
+    }
+
+    /**
+     * @param handshakeCookies checked for every handshake while cookies are enabled in the config
+     * @param challengeSender where cookie challenges are sent, or null to send them from the socket
+     */
+    VoiceServer(Supplier<VoiceChatConfig> config, Supplier<VoicePacketRouter> router, Supplier<TimingWheel> timers,
+            HandshakeCookies handshakeCookies, DatagramSender challengeSender) {
+        this.configProvider = config;
+        this.routerProvider = router;
+        this.timersProvider = timers;
+        this.handshakeCookies = handshakeCookies;
+        this.challengeSender = challengeSender != null ? challengeSender : this::sendNow;
+        for (int i = 0; i < packetsRejected.length; i++) {
+            packetsRejected[i] = new LongAdder();
+        }
     }
 
     public void start() {
@@ -36,62 +77,100 @@ public class VoiceServer {
             return;
         }
 
-        int port = plugin.getConfig().getNetwork().getVoicePort();
+        int port = configProvider.get().getNetwork().getVoicePort();
 
         try {
-            socket = new DatagramSocket(port);
-            socket.setSoTimeout(1000); // 1 second timeout for graceful shutdown
             running = true;
 
             // Initialize rate limiter if enabled
-            if (plugin.getConfig().getSecurity().isEnableRateLimiting()) {
+            if (configProvider.get().getSecurity().isEnableRateLimiting()) {
+                // Idle entries are reclaimed lazily, so no cleanup task is needed
+                rateClock = new CoarseClock();
+                rateClock.start(timersProvider.get());
                 rateLimiter = new RateLimiter(
-                    plugin.getConfig().getSecurity().getMaxPacketsPerSecond(),
-                    plugin.getConfig().getSecurity().getBanDuration()
+                    configProvider.get().getSecurity().getMaxPacketsPerSecond(),
+                    configProvider.get().getSecurity().getMaxBytesPerSecond(),
+                    configProvider.get().getSecurity().getBanDuration(),
+                    rateClock
                 );
+            }
+
+            VoiceChatConfig.NetworkConfig network = configProvider.get().getNetwork();
+            if (network.isBundleDatagrams()) {
+                egressScheduler = new EgressScheduler(this::sendNow, network.getBundleMtu());
+                egressScheduler.start(timersProvider.get(), network.getBundleIntervalMs());
+            }
+
+            if (network.getRoutingLanes() > 0) {
+                routingExecutor = new RoutingExecutor("VoiceServer-Lane",
+                    network.getRoutingLanes(), network.getRoutingLaneCapacity());
+                routingExecutor.start();
+            }
+
+            if (configProvider.get().getNetwork().getIoEngine() == VoiceChatConfig.NetworkConfig.IoEngine.NIO) {
+                nioEngine = new NioVoiceEngine(this, configProvider.get().getNetwork());
+                nioEngine.start();
+            } else {
+                if (routingExecutor != null) {
+                    laneFrames = new VoiceFrame.Pool(network.getMaxPacketSize(),
+                        network.getRoutingLanes() * (network.getRoutingLaneCapacity() + 1), this::routeVoicePacket);
+                }
+                socket = new DatagramSocket(port);
+                socket.setSoTimeout(1000); // 1 second timeout for graceful shutdown
 
-                // Schedule periodic cleanup
-                cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-                    Thread t = new Thread(r, "VoiceServer-Cleanup");
+                executor = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "VoiceServer-Listener");
                     t.setDaemon(true);
                     return t;
                 });
-                cleanupExecutor.scheduleAtFixedRate(() -> {
-                    if (rateLimiter != null) {
-                        rateLimiter.cleanup();
-                    }
-                }, 10, 10, TimeUnit.SECONDS);
+                executor.submit(this::listen);
             }
 
-            executor = Executors.newSingleThreadExecutor(r -> {
-                Thread t = new Thread(r, "VoiceServer-Listener");
-                t.setDaemon(true);
-                return t;
-            });
-            executor.submit(this::listen);
-
-            LogUtils.info("UDP server started on port " + port);
+            LogUtils.info("UDP server started on port " + port + (routingExecutor != null
+                ? " with " + routingExecutor.getLaneCount() + " routing lanes" : ""));
 
         } catch (IOException e) {
             LogUtils.error("Failed to start UDP server: " + e.getMessage());
             running = false;
+            stopRateLimiter();
+            if (routingExecutor != null) {
+                routingExecutor.stop(1, TimeUnit.SECONDS);
+                routingExecutor = null;
+            }
+            if (egressScheduler != null) {
+                egressScheduler.stop();
+                egressScheduler = null;
+            }
         }
     }
 
     private void listen() {
-        byte[] buffer = new byte[plugin.getConfig().getNetwork().getMaxPacketSize()];
+        byte[] buffer = new byte[configProvider.get().getNetwork().getMaxPacketSize()];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        VoicePacketView view = new VoicePacketView();
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
 
         while (running) {
             try {
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                packet.setLength(buffer.length);
                 socket.receive(packet);
 
+                wrapped.limit(packet.getLength()).position(0);
+
                 // Check rate limit
-                if (rateLimiter != null && !rateLimiter.allowPacket(packet.getSocketAddress())) {
+                if (!allowPacket(wrapped, packet.getSocketAddress())) {
+                    continue;
+                }
+                if (!screenPacket(wrapped)) {
+                    continue;
+                }
+                if (routingExecutor != null && isVoiceData(wrapped)) {
+                    routeOnLane(wrapped, packet.getSocketAddress());
                     continue;
                 }
 
-                handlePacket(packet);
+                // Everything else runs inline, so the receive buffer can be parsed in place
+                handlePacket(wrapped, view, packet.getSocketAddress());
 
             } catch (java.net.SocketTimeoutException e) {
                 // Normal timeout, continue
@@ -105,33 +184,238 @@ public class VoiceServer {
         }
     }
 
-    private void handlePacket(DatagramPacket datagramPacket) {
+    private void handlePacket(ByteBuffer datagram, VoicePacketView view, SocketAddress senderAddress) {
         try {
-            byte[] data = Arrays.copyOf(datagramPacket.getData(), datagramPacket.getLength());
+            if (isVoiceData(datagram)) {
+                if (view.wrap(datagram)) {
+                    routerProvider.get().routeVoicePacket(view, senderAddress);
+                } else {
+                    LogUtils.warn("Malformed voice packet from " + senderAddress);
+                }
+                return;
+            }
 
-            // Validate packet size
-            if (data.length > plugin.getConfig().getNetwork().getMaxPacketSize()) {
-                LogUtils.warn("Packet too large: " + data.length + " bytes");
+            if (!admitHandshake(datagram, senderAddress)) {
                 return;
             }
+            BasePacket packet = decodePacket(datagram);
+            if (packet != null) {
+                dispatchPacket(packet, senderAddress);
+            }
+
+        } catch (Exception e) {
+            LogUtils.warn("Error handling packet: " + e.getMessage());
+        } finally {
+            view.release();
+        }
+    }
+
+    /**
+     * Copies a voice frame out of the listener's socket buffer and queues it on its
+     * speaker's lane.
+     */
+    private void routeOnLane(ByteBuffer datagram, SocketAddress senderAddress) {
+        VoiceFrame frame = laneFrames.acquire();
+        frame.buffer().put(datagram).flip();
+
+        if (!frame.bind(senderAddress)) {
+            frame.recycle();
+            LogUtils.warn("Malformed voice packet from " + senderAddress);
+            return;
+        }
+        if (!submitVoicePacket(frame.view(), frame)) {
+            frame.recycle();
+        }
+    }
+
+    /**
+     * Queues routing of a voice frame on its speaker's lane.
+     * @return false if there are no lanes or the lane is full; the caller keeps the view
+     */
+    boolean submitVoicePacket(VoicePacketView view, Runnable task) {
+        RoutingExecutor lanes = routingExecutor;
+        return lanes != null && lanes.execute(speakerKey(view), task);
+    }
+
+    /**
+     * Shard key of the frame's speaker. Compact frames are resolved to the player
+     * behind the session, so a client keeps its lane when it switches layout.
+     */
+    private long speakerKey(VoicePacketView view) {
+        if (view.isCompact()) {
+            int sessionId = view.getSenderSession();
+            UUID playerId = routerProvider.get().getSessions().getPlayer(sessionId);
+            return playerId != null ? RoutingExecutor.speakerKey(playerId) : sessionId;
+        }
+        return RoutingExecutor.speakerKey(view.getSenderMostSignificantBits(), view.getSenderLeastSignificantBits());
+    }
+
+    /**
+     * Charges a received datagram to its sender's rate limit. Compact voice frames
+     * from the address their session is bound to are charged to the session's own
+     * buckets; everything else, including frames that merely claim a session, to
+     * the source endpoint. Runs before screening, so it reads the header defensively.
+     * @return true if rate limiting is off or the datagram is within budget
+     */
+    boolean allowPacket(ByteBuffer datagram, SocketAddress senderAddress) {
+        RateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            return true;
+        }
+        int bytes = datagram.remaining();
+        int start = datagram.position();
+        if (bytes >= VoicePacket.COMPACT_HEADER_SIZE && datagram.get(start) == PacketType.VOICE_DATA_COMPACT) {
+            int sessionId = datagram.getShort(start + 1) & 0xFFFF;
+            SessionRegistry.Session session = routerProvider.get().getSessions().getSession(sessionId);
+            if (session != null && session.isBoundTo(senderAddress)) {
+                return limiter.allowPacket(session.getRateBuckets(), bytes, senderAddress);
+            }
+        }
+        return limiter.allowPacket(senderAddress, bytes);
+    }
+
+    private void stopRateLimiter() {
+        if (rateLimiter != null) {
+            rateLimiter.clear();
+            rateLimiter = null;
+        }
+        if (rateClock != null) {
+            rateClock.stop();
+            rateClock = null;
+        }
+    }
+
+    static boolean isVoiceData(ByteBuffer datagram) {
+        if (!datagram.hasRemaining()) {
+            return false;
+        }
+        byte type = datagram.get(datagram.position());
+        return type == PacketType.VOICE_DATA || type == PacketType.VOICE_DATA_COMPACT;
+    }
 
-            BasePacket packet = PacketDeserializer.deserialize(data);
+    /**
+     * Screens a handshake before it is copied or decoded: without a valid cookie for
+     * its source address it is answered with a cookie challenge and goes no further.
+     * Other packet types, and every packet when cookies are disabled, pass.
+     * @return true if the datagram may be decoded and dispatched
+     */
+    boolean admitHandshake(ByteBuffer datagram, SocketAddress senderAddress) {
+        if (!datagram.hasRemaining() || datagram.get(datagram.position()) != PacketType.HANDSHAKE
+                || !configProvider.get().getSecurity().isHandshakeCookies()) {
+            return true;
+        }
+        return handshakeCookies.admit(datagram, senderAddress, challengeSender);
+    }
 
+    static byte[] copyOf(ByteBuffer datagram) {
+        byte[] data = new byte[datagram.remaining()];
+        datagram.get(datagram.position(), data);
+        return data;
+    }
+
+    /**
+     * Checks a datagram's size and layout before anything is copied or allocated
+     * for it, and counts it by reason if it fails. Runs on the receive thread; drops
+     * are counted rather than logged, so a malformed flood does not flood the log.
+     * @return true if the datagram is well formed
+     */
+    boolean screenPacket(ByteBuffer datagram) {
+        int result = PacketValidator.validate(datagram, configProvider.get().getNetwork().getMaxPacketSize());
+        if (result == PacketValidator.VALID) {
+            return true;
+        }
+        packetsRejected[result].increment();
+        return false;
+    }
+
+    /**
+     * Deserializes a datagram that passed {@link #screenPacket}.
+     * @return decoded packet, or null if its type is not one the server decodes
+     */
+    BasePacket decodePacket(ByteBuffer datagram) {
+        try {
+            return PacketDeserializer.deserialize(copyOf(datagram));
+        } catch (IOException e) {
+            LogUtils.debug("Failed to deserialize packet: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Routes a pooled voice frame. Safe to call from any worker thread;
+     * the caller releases the view afterwards.
+     */
+    void routeVoicePacket(VoicePacketView view, SocketAddress senderAddress) {
+        try {
+            routerProvider.get().routeVoicePacket(view, senderAddress);
+        } catch (Exception e) {
+            LogUtils.warn("Error handling packet: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Routes a decoded packet. Safe to call from any worker thread.
+     */
+    void dispatchPacket(BasePacket packet, SocketAddress senderAddress) {
+        try {
             if (packet instanceof VoicePacket) {
                 VoicePacket voicePacket = (VoicePacket) packet;
-                SocketAddress senderAddress = datagramPacket.getSocketAddress();
 
                 // Route packet to nearby players
-                plugin.getPacketRouter().routeVoicePacket(voicePacket, senderAddress);
+                routerProvider.get().routeVoicePacket(voicePacket, senderAddress);
+            } else if (packet instanceof HandshakePacket) {
+                routerProvider.get().handleHandshake((HandshakePacket) packet, senderAddress);
+            } else if (packet instanceof KeepAlivePacket) {
+                routerProvider.get().handleKeepAlive((KeepAlivePacket) packet, senderAddress);
             }
-
-        } catch (IOException e) {
-            LogUtils.warn("Failed to deserialize packet: " + e.getMessage());
         } catch (Exception e) {
             LogUtils.warn("Error handling packet: " + e.getMessage());
         }
     }
 
+    /**
+     * Sends one datagram to a client. The buffer may be reused once this returns.
+     * Compact broadcasts are queued for the next bundle when bundling is enabled.
+     */
+    public void send(ByteBuffer datagram, SocketAddress target) throws IOException {
+        EgressScheduler egress = egressScheduler;
+        if (egress != null && EgressScheduler.isBundleable(datagram)) {
+            egress.enqueue(datagram, target);
+            return;
+        }
+        sendNow(datagram, target);
+    }
+
+    /**
+     * Drops frames still queued for a client that has gone.
+     */
+    public void forget(SocketAddress target) {
+        EgressScheduler egress = egressScheduler;
+        if (egress != null && target != null) {
+            egress.remove(target);
+        }
+    }
+
+    private void sendNow(ByteBuffer datagram, SocketAddress target) throws IOException {
+        NioVoiceEngine engine = nioEngine;
+        if (engine != null) {
+            engine.send(datagram, target);
+            return;
+        }
+
+        DatagramSocket legacySocket = socket;
+        if (legacySocket == null || legacySocket.isClosed()) {
+            throw new IOException("Voice server not running");
+        }
+        if (datagram.hasArray()) {
+            legacySocket.send(new DatagramPacket(datagram.array(),
+                datagram.arrayOffset() + datagram.position(), datagram.remaining(), target));
+        } else {
+            byte[] data = copyOf(datagram);
+            legacySocket.send(new DatagramPacket(data, data.length, target));
+        }
+    }
+
     public void stop() {
         if (!running) {
             return;
@@ -140,11 +424,27 @@ public class VoiceServer {
         running = false;
 
         try {
+            // Route frames already on the lanes, then send queued bundles, while the socket is still open
+            if (routingExecutor != null) {
+                routingExecutor.stop(5, TimeUnit.SECONDS);
+                routingExecutor = null;
+            }
+            laneFrames = null;
+            if (egressScheduler != null) {
+                egressScheduler.stop();
+                egressScheduler = null;
+            }
+
             // Close socket
             if (socket != null && !socket.isClosed()) {
                 socket.close();
             }
 
+            if (nioEngine != null) {
+                nioEngine.stop();
+                nioEngine = null;
+            }
+
             // Shutdown executors
             if (executor != null && !executor.isShutdown()) {
                 executor.shutdown();
@@ -158,23 +458,8 @@ public class VoiceServer {
                 }
             }
 
-            if (cleanupExecutor != null && !cleanupExecutor.isShutdown()) {
-                cleanupExecutor.shutdown();
-                try {
-                    if (!cleanupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                        cleanupExecutor.shutdownNow();
-                    }
-                } catch (InterruptedException e) {
-                    cleanupExecutor.shutdownNow();
-                    Thread.currentThread().interrupt();
-                }
-            }
-
-            // Clear rate limiter
-            if (rateLimiter != null) {
-                rateLimiter.clear();
-                rateLimiter = null;
-            }
+            // Clear rate limiter and stop its clock
+            stopRateLimiter();
 
             LogUtils.info("UDP server stopped");
 
@@ -187,7 +472,54 @@ public class VoiceServer {
         return running;
     }
 
+    /**
+     * Datagrams dropped before decoding for one reason
+     * @param reason a {@link PacketValidator} result code other than VALID
+     */
+    public long getPacketsRejected(int reason) {
+        return packetsRejected[reason].sum();
+    }
+
+    /**
+     * Datagrams dropped before decoding, for any reason
+     */
+    public long getPacketsRejected() {
+        long rejected = 0;
+        for (LongAdder counter : packetsRejected) {
+            rejected += counter.sum();
+        }
+        return rejected;
+    }
+
     public RateLimiter getRateLimiter() {
         return rateLimiter;
     }
+
+    /**
+     * @return the handshake cookie check, consulted only while cookies are enabled in the config
+     */
+    public HandshakeCookies getHandshakeCookies() {
+        return handshakeCookies;
+    }
+
+    /**
+     * @return the egress bundler, or null when bundling is disabled
+     */
+    public EgressScheduler getEgressScheduler() {
+        return egressScheduler;
+    }
+
+    /**
+     * @return the routing lanes, or null when frames route on the receive threads
+     */
+    public RoutingExecutor getRoutingExecutor() {
+        return routingExecutor;
+    }
+
+    /**
+     * @return the NIO engine, or null when the legacy listener is in use
+     */
+    public NioVoiceEngine getNioEngine() {
+        return nioEngine;
+    }
 }
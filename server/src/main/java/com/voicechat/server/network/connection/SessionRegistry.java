@@ -0,0 +1,251 @@
+package com.voicechat.server.network.connection;
+
+import com.voicechat.common.network.packet.AudioCodec;
+import com.voicechat.common.network.protocol.CompactEncoding;
+import com.voicechat.common.network.protocol.ProtocolConstants;
+import com.voicechat.server.security.RateLimiter;
+import com.voicechat.server.util.TimingWheel;
+
+import java.net.SocketAddress;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sessions established at handshake. The handshake binds a player's UUID to the
+ * address it came from and a 16-bit session id, once; afterwards frames are
+ * resolved to their sender by an array lookup on the session id and checked
+ * against the bound address, so the packet path never hashes a UUID or writes a
+ * map. Protocol v2 clients are also known to everyone else by the session id.
+ * Ids are reused lowest first once released, so they stay small.
+ */
+public class SessionRegistry {
+
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+    // Indexed by session id; 0 is never assigned
+    private final AtomicReferenceArray<Session> byId = new AtomicReferenceArray<>(CompactEncoding.MAX_SESSION_ID + 1);
+    private final BitSet assigned = new BitSet();
+    private volatile Listener listener;
+
+    /**
+     * Sets the listener told about sessions opening and closing, or null for none.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Registers a player at the given protocol version and codec and binds it to an
+     * address, keeping its session id if it already has one. A live session is never
+     * moved to another address: anyone who knows a player's UUID could otherwise
+     * take over its voice. A client whose address changed is served again once its
+     * old session has expired.
+     * @return the player's session, or null if every session id is in use. The
+     * session is returned unchanged, still bound elsewhere, if the player already
+     * has one at another address.
+     */
+    public synchronized Session register(UUID playerId, int protocolVersion, AudioCodec codec,
+            SocketAddress address) {
+        Session existing = sessions.get(playerId);
+        if (existing != null) {
+            if (!existing.isBoundTo(address)) {
+                return existing;
+            }
+            existing.protocolVersion = protocolVersion;
+            existing.codec = codec;
+            existing.markSeen();
+            return existing;
+        }
+
+        int id = assigned.nextClearBit(1);
+        if (id > CompactEncoding.MAX_SESSION_ID) {
+            return null;
+        }
+        assigned.set(id);
+
+        Session session = new Session(id, playerId, protocolVersion, codec, address);
+        byId.set(id, session);
+        sessions.put(playerId, session);
+
+        Listener current = listener;
+        if (current != null) {
+            current.sessionOpened(session);
+        }
+        return session;
+    }
+
+    /**
+     * @return the removed session, or null if the player had none
+     */
+    public synchronized Session remove(UUID playerId) {
+        Session session = sessions.remove(playerId);
+        if (session != null) {
+            byId.set(session.id, null);
+            assigned.clear(session.id);
+            closed(session);
+        }
+        return session;
+    }
+
+    public Session get(UUID playerId) {
+        return sessions.get(playerId);
+    }
+
+    /**
+     * @return the session with the id, or null if it is unassigned
+     */
+    public Session getSession(int sessionId) {
+        if (sessionId <= 0 || sessionId > CompactEncoding.MAX_SESSION_ID) {
+            return null;
+        }
+        return byId.get(sessionId);
+    }
+
+    /**
+     * @return the player holding the session id, or null if it is unassigned
+     */
+    public UUID getPlayer(int sessionId) {
+        Session session = getSession(sessionId);
+        return session != null ? session.playerId : null;
+    }
+
+    public Map<UUID, Session> getSessions() {
+        return Collections.unmodifiableMap(sessions);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public synchronized void clear() {
+        for (Session session : sessions.values()) {
+            byId.set(session.id, null);
+            closed(session);
+        }
+        sessions.clear();
+        assigned.clear();
+    }
+
+    private void closed(Session session) {
+        Listener current = listener;
+        if (current != null) {
+            current.sessionClosed(session);
+        }
+    }
+
+    /**
+     * Told about sessions as they are registered and removed, under the registry's
+     * lock; implementations must be quick and must not call back into the registry.
+     */
+    public interface Listener {
+        void sessionOpened(Session session);
+
+        void sessionClosed(Session session);
+    }
+
+    /**
+     * One player's negotiated protocol state and bound address.
+     */
+    public static final class Session {
+        private final int id;
+        private final UUID playerId;
+        private volatile int protocolVersion;
+        private volatile AudioCodec codec;
+        private volatile SocketAddress address;
+        // Set by any packet from the client, cleared by each keep-alive check
+        private volatile boolean seen = true;
+        private volatile TimingWheel.Timeout keepAlive;
+        private final RateLimiter.Buckets rateBuckets = new RateLimiter.Buckets();
+
+        Session(int id, UUID playerId, int protocolVersion, AudioCodec codec, SocketAddress address) {
+            this.id = id;
+            this.playerId = playerId;
+            this.protocolVersion = protocolVersion;
+            this.codec = codec;
+            this.address = address;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        public int getProtocolVersion() {
+            return protocolVersion;
+        }
+
+        /**
+         * Format of the client's voice frames, as announced in its handshake
+         */
+        public AudioCodec getCodec() {
+            return codec;
+        }
+
+        /**
+         * Address bound at the last handshake; frames from anywhere else are dropped
+         */
+        public SocketAddress getAddress() {
+            return address;
+        }
+
+        /**
+         * Records that the client was heard from. Only writes when the flag is clear,
+         * so per-packet calls do not keep dirtying the cache line.
+         */
+        public void markSeen() {
+            if (!seen) {
+                seen = true;
+            }
+        }
+
+        /**
+         * @return whether the client was heard from since the last call
+         */
+        public boolean consumeSeen() {
+            if (!seen) {
+                return false;
+            }
+            seen = false;
+            return true;
+        }
+
+        /**
+         * Per-session keep-alive timer, if one is running
+         */
+        public TimingWheel.Timeout getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(TimingWheel.Timeout keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        /**
+         * Rate limit buckets for the session's compact frames
+         */
+        public RateLimiter.Buckets getRateBuckets() {
+            return rateBuckets;
+        }
+
+        /**
+         * @return true if the datagram came from the session's bound address
+         */
+        public boolean isBoundTo(SocketAddress sender) {
+            SocketAddress bound = address;
+            return bound == sender || (bound != null && bound.equals(sender));
+        }
+
+        /**
+         * @return true if the client takes compact broadcasts
+         */
+        public boolean isCompact() {
+            return protocolVersion >= ProtocolConstants.COMPACT_PROTOCOL_VERSION;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.voicechat.server.security;
+
+import com.voicechat.common.network.packet.HandshakeCookiePacket;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.server.network.DatagramSender;
+import com.voicechat.server.util.LogUtils;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Stateless handshake cookies, in the manner of a DTLS HelloVerifyRequest or a QUIC
+ * Retry. A handshake without a valid cookie is answered with a
+ * {@link HandshakeCookiePacket} and forgotten; only a handshake that echoes the
+ * cookie reaches the router, where sessions are created and announced. Since the
+ * cookie is only sent to the claimed source address, a sender that spoofs addresses
+ * never gets past this check.
+ *
+ * <p>A cookie is a SipHash-2-4 tag over the source address and port, the player id
+ * and a coarse time window, keyed with a random secret drawn at startup. Cookies are
+ * accepted in the window they were minted and the next one. Checking one reads the
+ * request in place and hashes a handful of longs: no lock, no shared writes other
+ * than the counters and, for IPv4 senders, no allocation, so it can run on every
+ * handshake during a flood.</p>
+ */
+public class HandshakeCookies {
+
+    public static final long WINDOW_MS = 30_000;
+
+    private static final long FAMILY_INET4 = 4L << 48;
+    private static final long FAMILY_INET6 = 6L << 48;
+    // Address and port, two address words, player id, window
+    private static final int WORDS = 6;
+
+    private final long key0;
+    private final long key1;
+    private final LongSupplier clock;
+    // Reused per receive thread; DatagramSender lets the caller reuse the buffer on return
+    private final ThreadLocal<ByteBuffer> challenges =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocate(HandshakeCookiePacket.SIZE));
+
+    private final LongAdder handshakesAdmitted = new LongAdder();
+    private final LongAdder challengesSent = new LongAdder();
+    private final LongAdder cookiesRejected = new LongAdder();
+    private final LongAdder handshakesMalformed = new LongAdder();
+
+    public HandshakeCookies() {
+        this(new SecureRandom(), System::currentTimeMillis);
+    }
+
+    /**
+     * @param random source of the secret key
+     * @param clock wall clock in milliseconds
+     */
+    public HandshakeCookies(Random random, LongSupplier clock) {
+        this.key0 = random.nextLong();
+        this.key1 = random.nextLong();
+        this.clock = clock;
+    }
+
+    /**
+     * Screens a raw handshake datagram before it is decoded. A request without a valid
+     * cookie is answered with a fresh cookie, sent back to its source address.
+     * @param datagram the handshake between position and limit, left unchanged
+     * @param replies where challenges are sent
+     * @return true if the handshake carries a valid cookie and may be dispatched
+     */
+    public boolean admit(ByteBuffer datagram, SocketAddress senderAddress, DatagramSender replies) {
+        int start = datagram.position();
+        if (datagram.remaining() < HandshakePacket.SIZE || senderAddress == null) {
+            // Never answered, so short datagrams cannot draw a reply
+            handshakesMalformed.increment();
+            return false;
+        }
+
+        long mostSignificantBits = datagram.getLong(start + HandshakePacket.PLAYER_ID_OFFSET);
+        long leastSignificantBits = datagram.getLong(start + HandshakePacket.PLAYER_ID_OFFSET + 8);
+        if (datagram.remaining() >= HandshakePacket.SIZE_WITH_COOKIE) {
+            long cookie = datagram.getLong(start + HandshakePacket.COOKIE_OFFSET);
+            if (verify(senderAddress, mostSignificantBits, leastSignificantBits, cookie)) {
+                handshakesAdmitted.increment();
+                return true;
+            }
+            cookiesRejected.increment();
+        }
+
+        // Expired or missing; the challenge is smaller than the request it answers
+        ByteBuffer challenge = challenges.get();
+        challenge.clear();
+        HandshakeCookiePacket.write(challenge, issue(senderAddress, mostSignificantBits, leastSignificantBits));
+        challenge.flip();
+        try {
+            replies.send(challenge, senderAddress);
+            challengesSent.increment();
+        } catch (IOException e) {
+            LogUtils.debug("Failed to send handshake cookie to " + senderAddress + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * @return the cookie for a player handshaking from an address in the current window
+     */
+    public long issue(SocketAddress address, long mostSignificantBits, long leastSignificantBits) {
+        return cookie(address, mostSignificantBits, leastSignificantBits, window());
+    }
+
+    /**
+     * Checks a cookie against the current and previous window. Both tags are always
+     * computed and compared without branching on the tag bits.
+     */
+    public boolean verify(SocketAddress address, long mostSignificantBits, long leastSignificantBits, long cookie) {
+        long window = window();
+        long current = cookie(address, mostSignificantBits, leastSignificantBits, window) ^ cookie;
+        long previous = cookie(address, mostSignificantBits, leastSignificantBits, window - 1) ^ cookie;
+        return (current == 0) | (previous == 0);
+    }
+
+    private long window() {
+        return Math.floorDiv(clock.getAsLong(), WINDOW_MS);
+    }
+
+    private long cookie(SocketAddress address, long mostSignificantBits, long leastSignificantBits, long window) {
+        long endpoint;
+        long high;
+        long low;
+        InetAddress ip = address instanceof InetSocketAddress ? ((InetSocketAddress) address).getAddress() : null;
+        if (ip instanceof Inet4Address) {
+            // Inet4Address hashes to its 32-bit address, so no byte copy is needed
+            endpoint = FAMILY_INET4 | ((InetSocketAddress) address).getPort();
+            high = ip.hashCode() & 0xFFFFFFFFL;
+            low = 0;
+        } else if (ip != null) {
+            // IPv6 only exposes a copy of its 16 bytes
+            byte[] bytes = ip.getAddress();
+            endpoint = FAMILY_INET6 | ((InetSocketAddress) address).getPort();
+            high = 0;
+            low = 0;
+            for (int i = 0; i < 8; i++) {
+                high = high << 8 | (bytes[i] & 0xFF);
+                low = low << 8 | (bytes[i + 8] & 0xFF);
+            }
+        } else {
+            endpoint = address.hashCode() & 0xFFFFFFFFL;
+            high = 0;
+            low = 0;
+        }
+        return sipHash(endpoint, high, low, mostSignificantBits, leastSignificantBits, window);
+    }
+
+    /**
+     * SipHash-2-4 over six 64-bit words, taken as their little-endian bytes.
+     */
+    private long sipHash(long m0, long m1, long m2, long m3, long m4, long m5) {
+        long v0 = key0 ^ 0x736f6d6570736575L;
+        long v1 = key1 ^ 0x646f72616e646f6dL;
+        long v2 = key0 ^ 0x6c7967656e657261L;
+        long v3 = key1 ^ 0x7465646279746573L;
+
+        for (int i = 0; i <= WORDS; i++) {
+            long m;
+            switch (i) {
+                case 0: m = m0; break;
+                case 1: m = m1; break;
+                case 2: m = m2; break;
+                case 3: m = m3; break;
+                case 4: m = m4; break;
+                case 5: m = m5; break;
+                // Final block: message length in bytes in the top byte
+                default: m = (long) (WORDS * 8) << 56; break;
+            }
+            v3 ^= m;
+            for (int round = 0; round < 2; round++) {
+                v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+                v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+                v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+                v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+            }
+            v0 ^= m;
+        }
+
+        v2 ^= 0xff;
+        for (int round = 0; round < 4; round++) {
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+        }
+        return v0 ^ v1 ^ v2 ^ v3;
+    }
+
+    /**
+     * Handshakes that carried a valid cookie
+     */
+    public long getHandshakesAdmitted() {
+        return handshakesAdmitted.sum();
+    }
+
+    /**
+     * Cookie challenges sent to handshakes without a valid cookie
+     */
+    public long getChallengesSent() {
+        return challengesSent.sum();
+    }
+
+    /**
+     * Handshakes whose cookie was forged, expired or sent from another address
+     */
+    public long getCookiesRejected() {
+        return cookiesRejected.sum();
+    }
+
+    /**
+     * Handshakes too short to hold a player id; these are not answered
+     */
+    public long getHandshakesMalformed() {
+        return handshakesMalformed.sum();
+    }
+}
@@ -1,55 +1,136 @@
 package com.voicechat.server.security;
 
+import com.voicechat.server.util.CoarseClock;
 import com.voicechat.server.util.LogUtils;
 
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Rate limiter to prevent voice packet flooding
+ * Rate limiter to prevent voice packet flooding.
+ *
+ * <p>Each sender gets a packet and a byte token bucket, refilled at the configured
+ * per-second rate with one second of burst, and updated with CAS only. Established
+ * sessions carry their own {@link Buckets}, so nothing other clients send can evict
+ * or share them. Everything else is charged to its source endpoint, in a flat
+ * open-addressed {@link AtomicLongArray} keyed by a compact 64-bit endpoint key. Idle
+ * entries are not swept: their slots are reclaimed lazily by the next insert that
+ * probes them. An endpoint that finds no free slot in its probe window is refused
+ * rather than given a shared bucket, so a flood of spoofed sources cannot pool new
+ * clients into one budget. Time comes from a {@link CoarseClock}.</p>
  */
 public class RateLimiter {
 
-    private final int maxPacketsPerSecond;
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_PROBES = 16;
+    // Entries idle longer than this (and not banned) may be reclaimed
+    private static final long IDLE_EXPIRY_MS = 2000;
+    private static final long BURST_MS = 1000;
+
+    // Slot layout: key, packet bucket, byte bucket, ban expiry
+    private static final int STRIDE = 4;
+    private static final int KEY = 0;
+    private static final int PACKETS = 1;
+    private static final int BYTES = 2;
+    private static final int BANNED_UNTIL = 3;
+
+    private static final long EMPTY = 0L;
+    private static final long LOW_32 = 0xFFFFFFFFL;
+    // Tokens are kept in thousandths so one millisecond of refill is never rounded away
+    private static final long TOKEN_SCALE = 1000;
+    // Largest rate whose one-second burst still fits the 32-bit token field
+    private static final long MAX_RATE = LOW_32 / BURST_MS;
+
+    private final long maxPacketsPerSecond;
+    private final long maxBytesPerSecond;
     private final int banDuration;
-    private final Map<SocketAddress, PacketCounter> counters = new ConcurrentHashMap<>();
-    private final Map<SocketAddress, Long> bannedAddresses = new ConcurrentHashMap<>();
+    private final CoarseClock clock;
+    private final int mask;
+    private final AtomicLongArray table;
+
+    private final LongAdder packetsLimited = new LongAdder();
+    private final LongAdder bytesLimited = new LongAdder();
+    private final LongAdder overflowRejections = new LongAdder();
+
+    public RateLimiter(int maxPacketsPerSecond, int maxBytesPerSecond, int banDuration, CoarseClock clock) {
+        this(maxPacketsPerSecond, maxBytesPerSecond, banDuration, DEFAULT_CAPACITY, clock);
+    }
 
-    public RateLimiter(int maxPacketsPerSecond, int banDuration) {
-        this.maxPacketsPerSecond = maxPacketsPerSecond;
+    /**
+     * @param capacity number of endpoint slots, rounded up to a power of two
+     * @param clock started clock the buckets are refilled by
+     */
+    public RateLimiter(int maxPacketsPerSecond, int maxBytesPerSecond, int banDuration,
+            int capacity, CoarseClock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        this.maxPacketsPerSecond = Math.max(1, Math.min(MAX_RATE, maxPacketsPerSecond));
+        this.maxBytesPerSecond = Math.max(1, Math.min(MAX_RATE, maxBytesPerSecond));
         this.banDuration = banDuration;
+        this.clock = clock;
+
+        int size = Integer.highestOneBit(Math.max(MAX_PROBES, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.table = new AtomicLongArray(size * STRIDE);
     }
 
     /**
-     * Check if a packet from the given address should be allowed
+     * Check if a datagram of the given size from the address should be allowed
      */
-    public boolean allowPacket(SocketAddress address) {
+    public boolean allowPacket(SocketAddress address, int bytes) {
         if (address == null) {
             return false;
         }
+        return allowPacket(endpointKey(address), bytes, address);
+    }
 
-        // Check if banned
-        Long banExpiry = bannedAddresses.get(address);
-        if (banExpiry != null) {
-            if (System.currentTimeMillis() < banExpiry) {
-                return false;
-            } else {
-                // Ban expired
-                bannedAddresses.remove(address);
-            }
+    /**
+     * Check a datagram against the buckets of a precomputed endpoint key
+     */
+    public boolean allowPacket(long key, int bytes) {
+        return allowPacket(key, bytes, null);
+    }
+
+    /**
+     * Check a datagram against a session's own buckets. The caller has already
+     * matched the datagram to the session's bound address.
+     */
+    public boolean allowPacket(Buckets buckets, int bytes, SocketAddress address) {
+        return allowPacket(buckets.state, 0, clock.millis(), bytes, address, 0L);
+    }
+
+    private boolean allowPacket(long key, int bytes, SocketAddress address) {
+        long now = clock.millis();
+        int slot = findSlot(key, now);
+        if (slot < 0) {
+            overflowRejections.increment();
+            return false;
+        }
+        return allowPacket(table, slot, now, bytes, address, key);
+    }
+
+    private boolean allowPacket(AtomicLongArray array, int slot, long now, int bytes,
+            SocketAddress address, long key) {
+        long bannedUntil = array.get(slot + BANNED_UNTIL);
+        if (bannedUntil > now) {
+            return false;
         }
 
-        // Get or create counter
-        PacketCounter counter = counters.computeIfAbsent(address, k -> new PacketCounter());
+        if (!tryConsume(array, slot + PACKETS, now, maxPacketsPerSecond, 1)) {
+            packetsLimited.increment();
+            ban(array, slot, bannedUntil, now, address, key);
+            return false;
+        }
 
-        // Check rate limit
-        if (counter.increment() > maxPacketsPerSecond) {
-            // Rate limit exceeded, ban the address
-            bannedAddresses.put(address, System.currentTimeMillis() + banDuration);
-            LogUtils.warn("Rate limit exceeded for " + address + ", banned for " + (banDuration / 1000) + " seconds");
+        // The packet token is not refunded when the byte budget rejects; both budgets err towards limiting
+        if (!tryConsume(array, slot + BYTES, now, maxBytesPerSecond, Math.max(0, bytes))) {
+            bytesLimited.increment();
+            ban(array, slot, bannedUntil, now, address, key);
             return false;
         }
 
@@ -57,54 +138,177 @@ public class RateLimiter {
     }
 
     /**
-     * Clean up old counters (should be called periodically)
+     * Bucket word: last refill time in the high 32 bits, tokens (in thousandths) in
+     * the low 32 bits. A rate of N per second refills N thousandths per millisecond.
+     * A zero word is a bucket that has never been drawn from, and starts full.
+     */
+    private boolean tryConsume(AtomicLongArray array, int index, long now, long ratePerSecond, long units) {
+        long capacity = ratePerSecond * BURST_MS;
+        long cost = units * TOKEN_SCALE;
+
+        for (;;) {
+            long state = array.get(index);
+            long elapsed = (now - (state >>> 32)) & LOW_32;
+            long tokens = state == 0L ? capacity : state & LOW_32;
+
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + Math.min(elapsed, BURST_MS) * ratePerSecond);
+            }
+
+            if (tokens < cost) {
+                return false;
+            }
+
+            long next = ((now & LOW_32) << 32) | (tokens - cost);
+            if (array.compareAndSet(index, state, next)) {
+                return true;
+            }
+        }
+    }
+
+    private void ban(AtomicLongArray array, int slot, long previous, long now, SocketAddress address, long key) {
+        if (banDuration <= 0) {
+            return;
+        }
+        // Only the thread that installs the ban logs it
+        if (array.compareAndSet(slot + BANNED_UNTIL, previous, now + banDuration)) {
+            String endpoint = address != null ? address.toString() : Long.toHexString(key);
+            LogUtils.warn("Rate limit exceeded for " + endpoint + ", banned for " + (banDuration / 1000) + " seconds");
+        }
+    }
+
+    /**
+     * Linear probe for the key. Slots are never emptied once claimed, so probe chains
+     * stay intact; idle slots are taken over by a CAS on their key instead.
+     * @return the key's slot, or -1 if every slot in its probe window is in use
      */
-    public void cleanup() {
-        long now = System.currentTimeMillis();
+    private int findSlot(long key, long now) {
+        int home = mix(key);
+        int reclaimable = -1;
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = ((home + probe) & mask) * STRIDE;
+            long current = table.get(slot + KEY);
 
-        // Remove expired bans
-        bannedAddresses.entrySet().removeIf(entry -> entry.getValue() < now);
+            if (current == key) {
+                return slot;
+            }
+
+            if (current == EMPTY) {
+                if (table.compareAndSet(slot + KEY, EMPTY, key)) {
+                    initSlot(slot, now);
+                    return slot;
+                }
+                if (table.get(slot + KEY) == key) {
+                    return slot;
+                }
+                continue;
+            }
+
+            if (reclaimable < 0 && isExpired(slot, now)) {
+                reclaimable = slot;
+            }
+        }
 
-        // Remove old counters
-        counters.entrySet().removeIf(entry -> {
-            PacketCounter counter = entry.getValue();
-            return now - counter.lastReset > 2000; // Remove if inactive for 2 seconds
-        });
+        if (reclaimable >= 0) {
+            long previous = table.get(reclaimable + KEY);
+            // A concurrent insert of the same key may claim another slot; the duplicate simply expires
+            if (isExpired(reclaimable, now) && table.compareAndSet(reclaimable + KEY, previous, key)) {
+                initSlot(reclaimable, now);
+                return reclaimable;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isExpired(int slot, long now) {
+        long lastSeen = table.get(slot + PACKETS) >>> 32;
+        return ((now - lastSeen) & LOW_32) > IDLE_EXPIRY_MS && table.get(slot + BANNED_UNTIL) <= now;
+    }
+
+    private void initSlot(int slot, long now) {
+        long time = (now & LOW_32) << 32;
+        table.set(slot + PACKETS, time | (maxPacketsPerSecond * BURST_MS));
+        table.set(slot + BYTES, time | (maxBytesPerSecond * BURST_MS));
+        table.set(slot + BANNED_UNTIL, 0L);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Packs an IPv4 address and port into one key without allocating; other
+     * addresses fold their hash into the same space.
+     */
+    public static long endpointKey(SocketAddress address) {
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress inet = (InetSocketAddress) address;
+            InetAddress ip = inet.getAddress();
+            if (ip != null) {
+                // Inet4Address hashes to its 32-bit address
+                long family = ip instanceof Inet4Address ? 1L << 62 : 1L << 61;
+                return Long.MIN_VALUE | family | (ip.hashCode() & LOW_32) << 16 | inet.getPort();
+            }
+        }
+        return Long.MIN_VALUE | (address.hashCode() & LOW_32);
     }
 
     /**
      * Remove a specific address from tracking
      */
     public void removeAddress(SocketAddress address) {
-        counters.remove(address);
-        bannedAddresses.remove(address);
+        long key = endpointKey(address);
+        int home = mix(key);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = ((home + probe) & mask) * STRIDE;
+            long current = table.get(slot + KEY);
+            if (current == EMPTY) {
+                return;
+            }
+            if (current == key) {
+                // Lift any ban and backdate the bucket so the slot reads as idle
+                long idleSince = (clock.millis() - IDLE_EXPIRY_MS - 1) & LOW_32;
+                table.set(slot + BANNED_UNTIL, 0L);
+                table.set(slot + PACKETS, idleSince << 32 | (maxPacketsPerSecond * BURST_MS));
+                return;
+            }
+        }
     }
 
     /**
      * Clear all tracking data
      */
     public void clear() {
-        counters.clear();
-        bannedAddresses.clear();
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, 0L);
+        }
     }
 
-    /**
-     * Counter for tracking packets per second
-     */
-    private static class PacketCounter {
-        private final AtomicInteger count = new AtomicInteger(0);
-        private volatile long lastReset = System.currentTimeMillis();
+    public long getPacketsLimited() {
+        return packetsLimited.sum();
+    }
 
-        public int increment() {
-            long now = System.currentTimeMillis();
+    public long getBytesLimited() {
+        return bytesLimited.sum();
+    }
 
-            // Reset counter every second
-            if (now - lastReset >= 1000) {
-                count.set(0);
-                lastReset = now;
-            }
+    /**
+     * Datagrams refused because their endpoint found no free slot in the table
+     */
+    public long getOverflowRejections() {
+        return overflowRejections.sum();
+    }
 
-            return count.incrementAndGet();
-        }
+    /**
+     * Packet and byte buckets owned by one session rather than a table slot. They
+     * start full and are dropped with the session, so a reused session id starts
+     * with a fresh budget.
+     */
+    public static final class Buckets {
+        // Same layout as a table slot; the key word is unused
+        private final AtomicLongArray state = new AtomicLongArray(STRIDE);
     }
 }
@@ -1,16 +1,105 @@
 package com.voicechat.server.task;
 
+import com.voicechat.common.config.VoiceChatConfig;
 import com.voicechat.server.VoiceChatPlugin;
-import com.voicechat.server.network.connection.ConnectionManager;
+import com.voicechat.server.network.VoicePacketRouter;
+import com.voicechat.server.network.connection.SessionRegistry;
+import com.voicechat.server.util.TimingWheel;
 
-public class KeepAliveTask extends ScheduledTask {
+/**
+ * Per-session keep-alive and timeout. Every session gets its own timer on the
+ * timing wheel, firing once per keep-alive interval: it sends the client a
+ * keep-alive to echo and checks whether anything arrived from the session since the
+ * last firing. A session silent for the whole timeout is expired. Timers are
+ * started and cancelled as sessions open and close, so no session map is scanned.
+ */
+public class KeepAliveTask implements SessionRegistry.Listener {
+
+    private final VoicePacketRouter router;
+    private final long intervalMs;
+    private final int maxMissed;
+    private volatile TimingWheel timers;
 
     public KeepAliveTask(VoiceChatPlugin plugin) {
-        super(plugin, 5000);
+        this(plugin.getPacketRouter(), plugin.getConfig().getNetwork());
+    }
+
+    private KeepAliveTask(VoicePacketRouter router, VoiceChatConfig.NetworkConfig network) {
+        this(router, network.getKeepAliveInterval(), network.getSessionTimeout());
+    }
+
+    public KeepAliveTask(VoicePacketRouter router, long intervalMs, long timeoutMs) {
+        this.router = router;
+        this.intervalMs = Math.max(1, intervalMs);
+        // Intervals without traffic before the session counts as gone
+        this.maxMissed = (int) Math.max(1, (timeoutMs + this.intervalMs - 1) / this.intervalMs);
+    }
+
+    /**
+     * Starts timers for existing sessions and for every session opened from now on.
+     */
+    public void start(TimingWheel timers) {
+        this.timers = timers;
+        SessionRegistry sessions = router.getSessions();
+        sessions.setListener(this);
+        for (SessionRegistry.Session session : sessions.getSessions().values()) {
+            if (session.getKeepAlive() == null) {
+                sessionOpened(session);
+            }
+        }
+    }
+
+    public void stop() {
+        SessionRegistry sessions = router.getSessions();
+        sessions.setListener(null);
+        timers = null;
+        for (SessionRegistry.Session session : sessions.getSessions().values()) {
+            sessionClosed(session);
+        }
+    }
+
+    public boolean isRunning() {
+        return timers != null;
+    }
+
+    @Override
+    public void sessionOpened(SessionRegistry.Session session) {
+        TimingWheel wheel = timers;
+        if (wheel != null) {
+            session.setKeepAlive(wheel.scheduleAtFixedRate(new Check(session), intervalMs, intervalMs));
+        }
     }
 
     @Override
-    public void run() {
-        // TODO: Send keep-alive packets to all connected clients
+    public void sessionClosed(SessionRegistry.Session session) {
+        TimingWheel.Timeout timer = session.getKeepAlive();
+        if (timer != null) {
+            timer.cancel();
+            session.setKeepAlive(null);
+        }
+    }
+
+    /**
+     * One session's timer; runs on the wheel thread only.
+     */
+    private final class Check implements Runnable {
+        private final SessionRegistry.Session session;
+        private int missed;
+
+        Check(SessionRegistry.Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public void run() {
+            if (session.consumeSeen()) {
+                missed = 0;
+            } else if (++missed >= maxMissed) {
+                sessionClosed(session);
+                router.expireSession(session);
+                return;
+            }
+            router.sendKeepAlive(session);
+        }
     }
 }
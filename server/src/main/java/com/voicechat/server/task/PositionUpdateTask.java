@@ -1,15 +1,112 @@
 package com.voicechat.server.task;
 
+import com.voicechat.common.config.VoiceChatConfig;
 import com.voicechat.server.VoiceChatPlugin;
+import com.voicechat.server.network.VoicePacketRouter;
+import com.voicechat.server.util.LogUtils;
+import com.voicechat.server.util.TimingWheel;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-tick occlusion snapshot, audibility graph and speaker selection. The wheel
+ * only triggers the update; the raycasts run on the task's own thread, so egress
+ * flushes and keep-alives on the wheel are not held up by them. A tick that comes
+ * while the previous update is still running is skipped rather than queued.
+ */
 public class PositionUpdateTask extends ScheduledTask {
 
+    private final AtomicBoolean updating = new AtomicBoolean();
+    private final Runnable update = this::update;
+    private volatile ExecutorService executor;
+    private volatile long ticksSkipped;
+
     public PositionUpdateTask(VoiceChatPlugin plugin) {
         super(plugin, 50);
     }
 
+    @Override
+    public synchronized void start(TimingWheel timers) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "VoiceChat-PositionUpdate");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        super.start(timers);
+    }
+
+    @Override
+    public synchronized void stop() {
+        super.stop();
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Runs on the timing wheel: hands the update to the task's thread.
+     */
     @Override
     public void run() {
+        ExecutorService current = executor;
+        if (current == null) {
+            return;
+        }
+        if (!updating.compareAndSet(false, true)) {
+            // Only the wheel thread writes the counter
+            ticksSkipped++;
+            return;
+        }
+        try {
+            current.execute(update);
+        } catch (RejectedExecutionException e) {
+            // Stopping
+            updating.set(false);
+        }
+    }
+
+    private void update() {
         // TODO: Update player positions from Hytale API
+
+        try {
+            // Raycasts this tick read the snapshot, never the live world
+            VoiceChatConfig.AudioConfig audio = plugin.getConfig().getAudio();
+            VoicePacketRouter router = plugin.getPacketRouter();
+            router.getOcclusionEngine().refreshSnapshot(
+                plugin.getPositionManager().getAllPositions(),
+                Math.max(audio.getNormalDistance(), audio.getShoutDistance())
+            );
+
+            // Recompute audible receivers for players that moved, against the new snapshot
+            router.getAudibilityGraph().rebuild();
+            // Then re-rank active speakers for receivers over the forwarding limit
+            router.getSpeakerSelector().update(router.getAudibilityGraph());
+        } catch (Exception e) {
+            LogUtils.warn("Position update failed: " + e.getMessage());
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    /**
+     * Ticks skipped because the previous update had not finished
+     */
+    public long getTicksSkipped() {
+        return ticksSkipped;
     }
 }
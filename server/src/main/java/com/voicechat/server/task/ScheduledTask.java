@@ -1,42 +1,36 @@
 package com.voicechat.server.task;
 
 import com.voicechat.server.VoiceChatPlugin;
+import com.voicechat.server.util.TimingWheel;
 
+/**
+ * Periodic server task, run at a fixed rate on the plugin's {@link TimingWheel}.
+ */
 public abstract class ScheduledTask implements Runnable {
 
     protected final VoiceChatPlugin plugin;
     private final long intervalMs;
-    private volatile boolean running = false;
-    private Thread thread;
+    private volatile TimingWheel.Timeout timer;
 
     public ScheduledTask(VoiceChatPlugin plugin, long intervalMs) {
         this.plugin = plugin;
         this.intervalMs = intervalMs;
     }
 
-    public void start() {
-        running = true;
-        thread = new Thread(() -> {
-            while (running) {
-                try {
-                    run();
-                    Thread.sleep(intervalMs);
-                } catch (InterruptedException e) {
-                    break;
-                }
-            }
-        });
-        thread.setDaemon(true);
-        thread.start();
+    public synchronized void start(TimingWheel timers) {
+        if (timer == null) {
+            timer = timers.scheduleAtFixedRate(this, intervalMs, intervalMs);
+        }
     }
 
-    public void stop() {
-        running = false;
-        if (thread != null)
-            thread.interrupt();
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
     }
 
     public boolean isRunning() {
-        return running;
+        return timer != null;
     }
 }
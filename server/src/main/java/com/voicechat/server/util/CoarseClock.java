@@ -0,0 +1,41 @@
+package com.voicechat.server.util;
+
+/**
+ * Millisecond clock cached in a volatile field, so hot paths read time with a plain
+ * volatile load instead of a system call. It has no thread of its own: once started
+ * it is advanced every tick by a timer on the given {@link TimingWheel}, so it is at
+ * most one tick stale. Time is measured from construction and never goes backwards.
+ */
+public class CoarseClock {
+
+    private final long origin = System.nanoTime();
+    private volatile long millis = 0;
+    private TimingWheel.Timeout ticker;
+
+    public synchronized void start(TimingWheel timers) {
+        if (ticker != null) {
+            return;
+        }
+        advance();
+        // The wheel rounds the period up to its tick
+        ticker = timers.scheduleAtFixedRate(this::advance, 0, 1);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.cancel();
+            ticker = null;
+        }
+    }
+
+    private void advance() {
+        millis = (System.nanoTime() - origin) / 1_000_000L;
+    }
+
+    /**
+     * @return milliseconds since this clock was created, at most one timer tick stale
+     */
+    public long millis() {
+        return millis;
+    }
+}
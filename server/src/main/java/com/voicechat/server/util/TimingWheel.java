@@ -0,0 +1,369 @@
+package com.voicechat.server.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel driving every periodic and per-session timer on one thread.
+ *
+ * <p>Time is cut into ticks; a timer lands in the bucket for its deadline tick,
+ * with a round count for deadlines more than one wheel revolution away. Scheduling
+ * and cancelling are O(1) from any thread: new timers go through a lock-free queue
+ * that the wheel thread drains each tick, and a cancelled timer is unlinked from its
+ * bucket on the next tick. Each tick only visits its own bucket, so the cost per tick
+ * does not grow with the number of timers elsewhere on the wheel.</p>
+ *
+ * <p>Timers fire on the wheel thread with at most one tick of delay, plus whatever
+ * earlier timers on the same tick take. Tasks should be short; the tick lag metrics
+ * show when they are not.</p>
+ */
+public class TimingWheel {
+
+    // Timers moved from the pending queue per tick, so a burst cannot stall a tick
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong activeTimers = new AtomicLong();
+    private final long origin = System.nanoTime();
+    private volatile Thread worker;
+    // Wheel thread only
+    private long tick;
+
+    private volatile long ticks;
+    private volatile long timersFired;
+    private volatile long lastTickLagNanos;
+    private volatile long maxTickLagNanos;
+
+    /**
+     * @param tickMillis timer resolution
+     * @param wheelSize buckets per revolution, rounded up to a power of two
+     */
+    public TimingWheel(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = size - 1;
+    }
+
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        Thread t = new Thread(this::run, name);
+        t.setDaemon(true);
+        worker = t;
+        t.start();
+    }
+
+    /**
+     * Stops the wheel thread. Timers that have not fired are dropped.
+     */
+    public synchronized void stop() {
+        Thread t = worker;
+        worker = null;
+        if (t == null) {
+            return;
+        }
+        LockSupport.unpark(t);
+        if (t != Thread.currentThread()) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return worker != null;
+    }
+
+    /**
+     * Runs a task once after the delay.
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        return add(task, delayMillis, 0);
+    }
+
+    /**
+     * Runs a task every period, first after the initial delay. Runs missed because
+     * the wheel fell behind are skipped rather than run back to back.
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelayMillis, long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        return add(task, initialDelayMillis, TimeUnit.MILLISECONDS.toNanos(periodMillis));
+    }
+
+    private Timeout add(Runnable task, long delayMillis, long periodNanos) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        long deadline = elapsedNanos() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(this, task, deadline, periodNanos);
+        activeTimers.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private long elapsedNanos() {
+        return System.nanoTime() - origin;
+    }
+
+    private void run() {
+        while (worker == Thread.currentThread()) {
+            long deadline = (tick + 1) * tickNanos;
+            long now = elapsedNanos();
+            while (now < deadline) {
+                LockSupport.parkNanos(this, deadline - now);
+                if (worker != Thread.currentThread()) {
+                    return;
+                }
+                now = elapsedNanos();
+            }
+
+            long lag = now - deadline;
+            lastTickLagNanos = lag;
+            if (lag > maxTickLagNanos) {
+                maxTickLagNanos = lag;
+            }
+
+            removeCancelled();
+            transferPending();
+            buckets[(int) (tick & mask)].expire(deadline);
+            tick++;
+            ticks = tick;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state == Timeout.ACTIVE) {
+                // The current bucket has not been expired yet, so it counts as this round
+                place(timeout, tick);
+            }
+        }
+    }
+
+    /**
+     * Puts a timer in the bucket of its deadline tick. Wheel thread only.
+     * @param firstTick the earliest tick whose bucket will still be expired
+     */
+    private void place(Timeout timeout, long firstTick) {
+        // A deadline already passed goes in the earliest bucket still to come
+        long due = Math.max(firstTick, timeout.deadline / tickNanos);
+        timeout.remainingRounds = (due - firstTick) / buckets.length;
+        buckets[(int) (due & mask)].add(timeout);
+    }
+
+    private void fire(Timeout timeout, long tickDeadline) {
+        if (timeout.periodNanos == 0 && !timeout.compareAndSetState(Timeout.ACTIVE, Timeout.EXPIRED)) {
+            return;
+        }
+        try {
+            timeout.task.run();
+        } catch (Throwable t) {
+            LogUtils.warn("Timer task failed on " + name + ": " + t);
+        }
+        timersFired++;
+
+        if (timeout.periodNanos == 0) {
+            activeTimers.decrementAndGet();
+        } else if (timeout.state == Timeout.ACTIVE) {
+            long next = timeout.deadline + timeout.periodNanos;
+            if (next <= tickDeadline) {
+                // Behind by whole periods; skip to the next one still ahead
+                long missed = (tickDeadline - next) / timeout.periodNanos + 1;
+                next += missed * timeout.periodNanos;
+            }
+            timeout.deadline = next;
+            // Fired while the current bucket is being expired, so the next visit is a round away
+            place(timeout, tick + 1);
+        }
+    }
+
+    /**
+     * Timers scheduled and not yet fired (one-shot) or cancelled
+     */
+    public long getActiveTimers() {
+        return activeTimers.get();
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getTimersFired() {
+        return timersFired;
+    }
+
+    /**
+     * How late the last tick started, in microseconds
+     */
+    public long getLastTickLagMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(lastTickLagNanos);
+    }
+
+    /**
+     * Worst tick start delay since the wheel started, in microseconds
+     */
+    public long getMaxTickLagMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxTickLagNanos);
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public static final class Timeout {
+        static final int ACTIVE = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long periodNanos;
+        private volatile int state = ACTIVE;
+
+        // Wheel thread only
+        private long deadline;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        Timeout(TimingWheel wheel, Runnable task, long deadline, long periodNanos) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        /**
+         * Cancels the timer. A periodic task that is running finishes that run.
+         * @return false if the timer already fired (one-shot) or was cancelled
+         */
+        public boolean cancel() {
+            if (!compareAndSetState(ACTIVE, CANCELLED)) {
+                return false;
+            }
+            wheel.activeTimers.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * @return true once a one-shot timer has fired
+         */
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        boolean compareAndSetState(int expected, int state) {
+            return STATE.compareAndSet(this, expected, state);
+        }
+    }
+
+    /**
+     * Doubly linked list of the timers due on one tick of the wheel. Wheel thread only.
+     */
+    private final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.previous != null) {
+                timeout.previous.next = next;
+            }
+            if (next != null) {
+                next.previous = timeout.previous;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Fires the timers due this round and keeps the rest. The list is detached
+         * first, so a periodic timer placed back into this bucket waits a full round.
+         */
+        void expire(long tickDeadline) {
+            Timeout timeout = head;
+            head = null;
+            tail = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.previous = null;
+                timeout.next = null;
+                timeout.bucket = null;
+
+                if (timeout.state == Timeout.CANCELLED) {
+                    // Dropped; its entry in the cancelled queue finds no bucket
+                } else if (timeout.remainingRounds <= 0) {
+                    fire(timeout, tickDeadline);
+                } else {
+                    timeout.remainingRounds--;
+                    add(timeout);
+                }
+                timeout = next;
+            }
+        }
+    }
+}
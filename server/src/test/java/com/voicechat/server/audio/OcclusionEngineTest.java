@@ -0,0 +1,75 @@
+package com.voicechat.server.audio;
+
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.server.manager.PlayerPositionManager.PlayerPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cached occlusion counts must follow block changes: invalidating a block recaptures
+ * its chunk on the next refresh and forces a re-trace of every cached ray that may
+ * cross it, and of no other.
+ */
+class OcclusionEngineTest {
+
+    private static final double RADIUS = 32;
+    // Covers chunks -2..2 on every axis
+    private static final List<PlayerPosition> LISTENERS =
+        List.of(new PlayerPosition(new UUID(0, 1), 8, 8, 8, "world", 0L));
+
+    private final VoiceChatConfig config = new VoiceChatConfig();
+    private final Set<List<Integer>> solid = ConcurrentHashMap.newKeySet();
+    private final OcclusionEngine engine =
+        new OcclusionEngine(config::getOcclusion, (x, y, z) -> solid.contains(List.of(x, y, z)));
+
+    @Test
+    void invalidatedChunkIsRetraced() {
+        engine.refreshSnapshot(LISTENERS, RADIUS);
+        // Along x through chunks 0, 1 and 2
+        assertEquals(0, countAlongX());
+        assertEquals(0, countAlongX());
+        assertEquals(1, engine.getCache().getHits());
+
+        // A wall in chunk 1 is not seen until its chunk is invalidated
+        solid.add(List.of(20, 8, 8));
+        engine.refreshSnapshot(LISTENERS, RADIUS);
+        assertEquals(0, countAlongX());
+
+        long version = engine.getSnapshotVersion();
+        engine.invalidateBlock(20, 8, 8);
+        engine.refreshSnapshot(LISTENERS, RADIUS);
+
+        assertEquals(1, engine.getCache().getInvalidations());
+        assertTrue(engine.getSnapshotVersion() > version);
+        assertEquals(1, countAlongX());
+        assertEquals(2, engine.getCache().getMisses());
+    }
+
+    @Test
+    void rayClearOfChangedChunkStaysCached() {
+        engine.refreshSnapshot(LISTENERS, RADIUS);
+        // Within chunk 0
+        assertEquals(0, engine.countBlockedBlocks(1.5, 8.5, 8.5, 12.5, 8.5, 8.5));
+
+        solid.add(List.of(36, 8, 8));
+        engine.invalidateBlock(36, 8, 8);
+        engine.refreshSnapshot(LISTENERS, RADIUS);
+
+        assertEquals(0, engine.getCache().getInvalidations());
+        assertEquals(0, engine.countBlockedBlocks(1.5, 8.5, 8.5, 12.5, 8.5, 8.5));
+        assertEquals(1, engine.getCache().getHits());
+        // The recaptured chunk is traced with the change
+        assertEquals(1, engine.countBlockedBlocks(1.5, 8.5, 8.5, 40.5, 8.5, 8.5));
+    }
+
+    private int countAlongX() {
+        return engine.countBlockedBlocks(2.5, 8.5, 8.5, 40.5, 8.5, 8.5);
+    }
+}
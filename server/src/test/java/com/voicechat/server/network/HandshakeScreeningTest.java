@@ -0,0 +1,178 @@
+package com.voicechat.server.network;
+
+import com.voicechat.common.config.VoiceChatConfig;
+import com.voicechat.common.network.packet.AudioCodec;
+import com.voicechat.common.network.packet.BasePacket;
+import com.voicechat.common.network.packet.HandshakeCookiePacket;
+import com.voicechat.common.network.packet.HandshakePacket;
+import com.voicechat.common.network.protocol.PacketType;
+import com.voicechat.common.network.protocol.ProtocolConstants;
+import com.voicechat.server.audio.OcclusionEngine;
+import com.voicechat.server.manager.PlayerPositionManager;
+import com.voicechat.server.manager.PlayerVoiceManager;
+import com.voicechat.server.security.HandshakeCookies;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Handshake floods from spoofed source addresses, driven through the receive
+ * threads' screening path: rate limit, validation, the cookie check, then decoding
+ * and dispatch. A sender that cannot receive at its claimed address must not open a
+ * session, and the server must never send more bytes than the flood delivered.
+ */
+class HandshakeScreeningTest {
+
+    private static final int FLOOD = 20_000;
+    // Start of a cookie window, so a test can step into the next one exactly
+    private static final long EPOCH = 1_000 * HandshakeCookies.WINDOW_MS;
+
+    private final VoiceChatConfig config = new VoiceChatConfig();
+    private final AtomicLong now = new AtomicLong(EPOCH);
+    private final HandshakeCookies cookies = new HandshakeCookies(new Random(1), now::get);
+    private final VoicePacketRouter router;
+    private final VoiceServer server;
+    private long bytesReceived;
+    private long bytesSent;
+    private ByteBuffer lastChallenge;
+
+    HandshakeScreeningTest() {
+        router = new VoicePacketRouter(() -> config, new PlayerVoiceManager(),
+            new PlayerPositionManager(config.getAudio().getNormalDistance()),
+            new OcclusionEngine(config::getOcclusion, (x, y, z) -> false),
+            (datagram, target) -> bytesSent += datagram.remaining());
+        server = new VoiceServer(() -> config, () -> router, () -> null, cookies, (challenge, target) -> {
+            bytesSent += challenge.remaining();
+            lastChallenge = ByteBuffer.allocate(challenge.remaining()).put(challenge.duplicate()).flip();
+        });
+    }
+
+    @Test
+    void spoofedBareHandshakesOpenNoSessions() throws UnknownHostException {
+        Random random = new Random(2);
+        for (int i = 0; i < FLOOD; i++) {
+            byte[] handshake = new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION,
+                new UUID(random.nextLong(), random.nextLong()), 0, AudioCodec.OPUS).serialize();
+            assertFalse(receive(handshake, spoofed(random)));
+        }
+
+        assertEquals(0, router.getSessions().size());
+        assertEquals(FLOOD, cookies.getChallengesSent());
+        assertTrue(bytesSent <= bytesReceived, bytesSent + " bytes sent for " + bytesReceived + " received");
+    }
+
+    @Test
+    void forgedCookiesOpenNoSessions() throws UnknownHostException {
+        Random random = new Random(3);
+        for (int i = 0; i < FLOOD; i++) {
+            byte[] handshake = new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION,
+                new UUID(random.nextLong(), random.nextLong()), 0, AudioCodec.OPUS, random.nextLong()).serialize();
+            assertFalse(receive(handshake, spoofed(random)));
+        }
+
+        assertEquals(0, router.getSessions().size());
+        assertEquals(FLOOD, cookies.getCookiesRejected());
+        assertEquals(FLOOD, cookies.getChallengesSent());
+        assertTrue(bytesSent <= bytesReceived, bytesSent + " bytes sent for " + bytesReceived + " received");
+    }
+
+    @Test
+    void cookieFromAnotherAddressIsRejected() throws UnknownHostException {
+        UUID player = new UUID(0, 1);
+        long cookie = challenge(player, address(10, 0, 0, 1, 40000));
+
+        assertFalse(receive(handshake(player, cookie), address(10, 0, 0, 2, 40000)));
+        assertFalse(receive(handshake(player, cookie), address(10, 0, 0, 1, 40001)));
+        assertEquals(0, router.getSessions().size());
+    }
+
+    @Test
+    void cookieIsAcceptedInItsWindowAndTheNext() throws UnknownHostException {
+        SocketAddress source = address(10, 0, 0, 1, 40000);
+        UUID current = new UUID(0, 1);
+        UUID previous = new UUID(0, 2);
+        UUID expired = new UUID(0, 3);
+        long currentCookie = challenge(current, source);
+        long previousCookie = challenge(previous, source);
+        long expiredCookie = challenge(expired, source);
+
+        now.set(EPOCH + HandshakeCookies.WINDOW_MS - 1);
+        assertTrue(receive(handshake(current, currentCookie), source));
+
+        now.set(EPOCH + 2 * HandshakeCookies.WINDOW_MS - 1);
+        assertTrue(receive(handshake(previous, previousCookie), source));
+
+        now.set(EPOCH + 2 * HandshakeCookies.WINDOW_MS);
+        assertFalse(receive(handshake(expired, expiredCookie), source));
+        // Answered with a fresh cookie, which is accepted
+        assertTrue(receive(handshake(expired, lastChallenge.getLong(1)), source));
+
+        assertEquals(3, router.getSessions().size());
+        assertEquals(3, cookies.getHandshakesAdmitted());
+        assertEquals(1, cookies.getCookiesRejected());
+    }
+
+    @Test
+    void handshakesPassWhenCookiesAreDisabled() throws UnknownHostException {
+        config.getSecurity().setHandshakeCookies(false);
+
+        assertTrue(receive(new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION, new UUID(0, 1), 0,
+            AudioCodec.OPUS).serialize(), address(10, 0, 0, 1, 40000)));
+        assertEquals(1, router.getSessions().size());
+        assertEquals(0, cookies.getChallengesSent());
+    }
+
+    /**
+     * One datagram through the receive path, as the NIO engine runs it.
+     * @return true if it was decoded and dispatched
+     */
+    private boolean receive(byte[] data, SocketAddress source) {
+        ByteBuffer datagram = ByteBuffer.wrap(data);
+        bytesReceived += datagram.remaining();
+        if (!server.allowPacket(datagram, source) || !server.screenPacket(datagram)
+                || !server.admitHandshake(datagram, source)) {
+            return false;
+        }
+        BasePacket packet = server.decodePacket(datagram);
+        if (packet == null) {
+            return false;
+        }
+        server.dispatchPacket(packet, source);
+        return true;
+    }
+
+    /**
+     * Sends a bare handshake and returns the cookie it was challenged with.
+     */
+    private long challenge(UUID player, SocketAddress source) {
+        lastChallenge = null;
+        assertFalse(receive(new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION, player, 0,
+            AudioCodec.OPUS).serialize(), source));
+        assertEquals(HandshakeCookiePacket.SIZE, lastChallenge.remaining());
+        assertEquals(PacketType.HANDSHAKE_COOKIE, lastChallenge.get(0));
+        return lastChallenge.getLong(1);
+    }
+
+    private static byte[] handshake(UUID player, long cookie) {
+        return new HandshakePacket(ProtocolConstants.PROTOCOL_VERSION, player, 0, AudioCodec.OPUS, cookie).serialize();
+    }
+
+    private static SocketAddress spoofed(Random random) throws UnknownHostException {
+        return address(10, random.nextInt(256), random.nextInt(256), random.nextInt(256), 1024 + random.nextInt(60000));
+    }
+
+    private static SocketAddress address(int a, int b, int c, int d, int port) throws UnknownHostException {
+        return new InetSocketAddress(InetAddress.getByAddress(new byte[] {(byte) a, (byte) b, (byte) c, (byte) d}), port);
+    }
+}